@@ -2,6 +2,7 @@ package org.zkoss.zkforge.clipboard;
 
 import org.zkoss.zk.au.*;
 import org.zkoss.zk.ui.event.Events;
+import org.zkoss.zkforge.core.AsyncEventDecoder;
 
 public class ClipboardAuService implements AuService {
 
@@ -9,11 +10,28 @@ public class ClipboardAuService implements AuService {
     public boolean service(AuRequest request, boolean everError) {
         final String cmd = request.getCommand();
         if (ClipboardEvent.EVENT_NAME.equals(cmd)) {
-            ClipboardEvent event = ClipboardEvent.getEvent(request);
-            Events.postEvent(event);
+            // decoding an image may take a while, so it can run outside the desktop lock
+            String desktopId = request.getDesktop().getId();
+            AsyncEventDecoder.post(request, (data, target) -> ClipboardEvent.getEvent(data, target, desktopId));
             return true; // Handled - stop further processing
         }
 
         return false; // Not handled - continue to next handler
     }
+
+    /**
+     * Answer a request rejected by {@link org.zkoss.zkforge.core.AdmissionControl} with a
+     * {@link ClipboardError#REJECTED} result.
+     */
+    static void reject(AuRequest request) {
+        Object action = request.getData() == null ? null : request.getData().get("action");
+        ClipboardResult result = ClipboardAction.READ_IMAGE.name().equals(action) ? new ClipboardImage() : new ClipboardText();
+        for (ClipboardAction value : ClipboardAction.values()) {
+            if (value.name().equals(action)) {
+                result.setAction(value);
+            }
+        }
+        result.setError(new ClipboardError(ClipboardError.REJECTED, "Too many or too large clipboard requests"));
+        Events.postEvent(new ClipboardEvent(result, request.getComponent()));
+    }
 }
\ No newline at end of file
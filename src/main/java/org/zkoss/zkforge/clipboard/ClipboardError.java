@@ -2,7 +2,7 @@ package org.zkoss.zkforge.clipboard;
 
 import com.google.gson.annotations.Expose;
 
-import java.util.Map;
+import java.io.Serializable;
 
 /**
  * Represents a clipboard operation error with structured error information.
@@ -11,8 +11,11 @@ import java.util.Map;
  * @see <a href="https://www.w3.org/TR/clipboard-apis/">W3C Clipboard APIs</a>
  * @see <a href="https://developer.mozilla.org/en-US/docs/Web/API/Clipboard_API">MDN Clipboard API</a>
  */
-public class ClipboardError {
+public class ClipboardError implements Serializable {
+    private static final long serialVersionUID = 1L;
     public static final int SERVER_ERROR = 0;         // server error
+    public static final int PERMISSION_DENIED = -1;   // known to be denied, the browser was not asked
+    public static final int REJECTED = -2;            // over a limit of AdmissionControl, not processed
 
     @Expose
     protected final int code;
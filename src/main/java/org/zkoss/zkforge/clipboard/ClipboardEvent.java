@@ -5,13 +5,16 @@ import com.google.gson.GsonBuilder;
 import org.zkoss.zk.au.AuRequest;
 import org.zkoss.zk.ui.Component;
 import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zkforge.core.ImageHeader;
 
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.Map;
 
 public class ClipboardEvent extends Event {
     public static final String EVENT_NAME = "onClipboardAction";
     private ClipboardResult result;
+    /** binds results only when {@link ClipboardResultReader} can't read them */
     protected static final Gson GSON = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
 
     /**
@@ -38,7 +41,26 @@ public class ClipboardEvent extends Event {
     }
 
     public static ClipboardEvent getEvent(AuRequest request) {
-        Map<String, Object> data = request.getData();
+        return getEvent(request.getData(), request.getComponent());
+    }
+
+    /**
+     * Creates the event from the AU request data. It may run outside the desktop's execution,
+     * see {@link org.zkoss.zkforge.core.AsyncEventDecoder}.
+     *
+     * @param data the AU request data
+     * @param target the component that receives the event, or null to broadcast to the desktop
+     */
+    public static ClipboardEvent getEvent(Map<String, Object> data, Component target) {
+        return getEvent(data, target, null);
+    }
+
+    /**
+     * Creates the event from the AU request data, resolving a text spooled by the desktop.
+     *
+     * @param desktopId the id of the desktop sending the request, which owns its spooled texts and stored images
+     */
+    public static ClipboardEvent getEvent(Map<String, Object> data, Component target, String desktopId) {
         if (data == null) {
             ClipboardResult errorResult = new ClipboardText();
             errorResult.setError(new ClipboardError(ClipboardError.SERVER_ERROR, "No data received from request"));
@@ -46,11 +68,17 @@ public class ClipboardEvent extends Event {
         }
 
         ClipboardResult result = parseResponse(data);
+        if (result instanceof ClipboardText && result.isSuccess() && data.get("textId") != null) {
+            attachSpooledText(data, (ClipboardText) result, desktopId);
+        }
+        if (result instanceof ClipboardImage) {
+            ((ClipboardImage) result).setDesktopId(desktopId);
+        }
         if (result == null) {
             result = new ClipboardText();
             result.setError(new ClipboardError(ClipboardError.SERVER_ERROR, "Failed to parse clipboard response"));
         }
-        return new ClipboardEvent(result, request.getComponent());
+        return new ClipboardEvent(result, target);
     }
 
     /**
@@ -119,8 +147,26 @@ public class ClipboardEvent extends Event {
         return ClipboardAction.READ_IMAGE.toString().equals(data.get("action"));
     }
 
+    /**
+     * Attach the text uploaded in chunks, the request only carries its id and length.
+     */
+    private static void attachSpooledText(Map<String, Object> data, ClipboardText result, String desktopId) {
+        SpooledText spooled = desktopId == null ? null : SpooledTextRegistry.get(desktopId, data.get("textId").toString());
+        Object length = data.get("length");
+        if (spooled == null || !(length instanceof Number) || spooled.getLength() != ((Number) length).longValue()) {
+            result.setError(new ClipboardError(ClipboardError.SERVER_ERROR, "Clipboard text was not received completely"));
+            return;
+        }
+        spooled.close();
+        result.setSpooled(desktopId, spooled);
+    }
+
     private static ClipboardResult parseTextResponse(Map<String, Object> data) {
-        return GSON.fromJson(GSON.toJson(data), ClipboardText.class);
+        try {
+            return ClipboardResultReader.readText(data);
+        } catch (IllegalArgumentException e) {
+            return GSON.fromJson(GSON.toJson(data), ClipboardText.class);
+        }
     }
 
     /**
@@ -130,18 +176,71 @@ public class ClipboardEvent extends Event {
      * @return ClipboardImage containing image details
      */
     private static ClipboardImage parseImageResponse(Map<String, Object> data) {
-        ClipboardImage result = GSON.fromJson(GSON.toJson(data), ClipboardImage.class);
+        ClipboardImage result;
+        try {
+            result = ClipboardResultReader.readImage(data);
+        } catch (IllegalArgumentException e) {
+            // imageData is not deserialized by Gson, leave it out instead of serializing it again
+            Map<String, Object> metadata = new HashMap<>(data);
+            metadata.remove("imageData");
+            result = GSON.fromJson(GSON.toJson(metadata), ClipboardImage.class);
+        }
 
         decodeImageData(data, result);
 
         return result;
     }
 
+    /**
+     * Verify the image's header against the browser's claims and the pixel limit, and take the sniffed format, so
+     * {@link ClipboardImage#isSupportedFormat()} no longer depends on the client.
+     *
+     * @return the reason to reject the image, or null if it is accepted
+     */
+    private static String checkImageHeader(byte[] imageBytes, ClipboardImage result) {
+        ImageHeader header = ImageHeader.sniff(imageBytes);
+        if (header == null) {
+            return "Unsupported or malformed image data";
+        }
+        long maxPixels = ClipboardHelper.getMaxImagePixels();
+        if (maxPixels >= 0 && header.getPixelCount() > maxPixels) {
+            return "Image declares " + header.getPixelCount() + " pixels, more than " + maxPixels;
+        }
+        String mimeType = "image/jpg".equals(result.getMimeType()) ? ImageHeader.JPEG : result.getMimeType();
+        if (mimeType != null && !mimeType.equals(header.getMimeType())) {
+            return "Image data is " + header.getMimeType() + ", not " + result.getMimeType();
+        }
+        if (result.getSize() > 0 && result.getSize() != imageBytes.length) {
+            return "Image has " + imageBytes.length + " bytes, not " + result.getSize();
+        }
+        // 0 when the browser couldn't load the image to measure it
+        if (result.getWidth() > 0 && result.getHeight() > 0 && !header.hasDimensions(result.getWidth(), result.getHeight())) {
+            return "Image is " + header.getWidth() + "x" + header.getHeight() + ", not "
+                    + result.getWidth() + "x" + result.getHeight();
+        }
+        result.setMimeType(header.getMimeType());
+        if (result.getWidth() == 0 || result.getHeight() == 0) {
+            result.setDimensions(header.getWidth(), header.getHeight());
+        }
+        return null;
+    }
+
     private static void decodeImageData(Map<String, Object> data, ClipboardImage result) {
         if (data.get("imageData") != null) {
+            String base64Data = data.get("imageData").toString();
+            long maxImageSize = ClipboardHelper.getMaxImageSize();
+            // reject by the encoded length, before allocating the decoded bytes
+            if (maxImageSize >= 0 && base64Data.length() / 4L * 3 > maxImageSize) {
+                result.setError(new ClipboardError(ClipboardError.SERVER_ERROR, "Image exceeds " + maxImageSize + " bytes"));
+                return;
+            }
             try {
-                String base64Data = data.get("imageData").toString();
                 byte[] imageBytes = Base64.getDecoder().decode(base64Data);
+                String problem = checkImageHeader(imageBytes, result);
+                if (problem != null) {
+                    result.setError(new ClipboardError(ClipboardError.SERVER_ERROR, problem));
+                    return;
+                }
                 result.setImageData(imageBytes);
             } catch (IllegalArgumentException e) {
                 ClipboardError error = new ClipboardError(ClipboardError.SERVER_ERROR, "Invalid image data format");
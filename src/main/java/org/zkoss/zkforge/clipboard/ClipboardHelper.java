@@ -1,9 +1,12 @@
 package org.zkoss.zkforge.clipboard;
 
+import org.zkoss.lang.Library;
 import org.zkoss.zk.ui.*;
-import org.zkoss.zk.ui.select.Selectors;
+import org.zkoss.zk.ui.event.Events;
 import org.zkoss.zk.ui.util.Clients;
-import org.zkoss.zul.*;
+import org.zkoss.zkforge.core.*;
+
+import java.util.*;
 
 /**
  * Static helper class that provides Java access to the browser's Clipboard API.
@@ -30,12 +33,69 @@ import org.zkoss.zul.*;
  * <p>Results are delivered asynchronously via {@link ClipboardEvent} posted to the desktop.
  * Components can listen for these events to handle clipboard results.</p>
  * 
+ * <p>A pasted image larger than the library property {@value #MAX_IMAGE_SIZE} (bytes, default 10 MB, -1 for
+ * unlimited) is rejected with a {@link ClipboardError} before its base64 data is decoded.</p>
+ *
+ * <p>The format and dimensions of a pasted image are read from its header with {@link ImageHeader}, without decoding
+ * it. An image that is not PNG, JPEG, GIF or WebP, whose header contradicts the MIME type, size or dimensions the
+ * browser reported, or that declares more pixels than {@value #MAX_IMAGE_PIXELS} (default 50,000,000, -1 for
+ * unlimited) is rejected with a {@link ClipboardError}, so its data never reaches an image decoder.</p>
+ *
+ * <p>Text longer than the library property {@value #LARGE_TEXT_THRESHOLD} (chars, default 1,000,000, -1 to always
+ * send text in the AU request) is uploaded in chunks of {@value #TEXT_CHUNK_SIZE} chars (default 1,000,000),
+ * gzip-compressed when the browser supports {@code CompressionStream} and {@value #COMPRESS_TEXT} is not false, and
+ * spooled to a temporary file; see {@link ClipboardText#getCharSequence()} and {@link ClipboardText#getReader()}. A
+ * text longer than {@value #MAX_TEXT_LENGTH} (chars, default 100,000,000, -1 for unlimited) is rejected. A desktop
+ * holds at most {@value #MAX_SPOOLED_TEXTS} spooled texts (default 4, -1 for unlimited) until they are
+ * {@link ClipboardText#release() released}, and a text whose upload receives no chunk for
+ * {@value #SPOOLED_TEXT_TIMEOUT} seconds (default 60) is deleted.</p>
+ *
+ * <p>A {@link ClipboardImage} replicated with the session only carries the key of its data in the
+ * {@link BrowserApiHelper#getContentStore() content store}, and the data is removed from the store when the desktop is
+ * cleaned up. The default {@link InMemoryContentStore} only keeps the data on the local node, so after a failover
+ * {@link ClipboardImage#getImageData()} returns null unless a store shared by the nodes is installed.</p>
+ *
+ * <p>Once the browser reported the {@code clipboard-read} permission as denied, see {@link BrowserPermissions},
+ * reads fail at once with {@link ClipboardError#PERMISSION_DENIED} without asking the browser.</p>
+ *
  * <p>Based on <a href="https://developer.mozilla.org/en-US/docs/Web/API/Clipboard_API">MDN Clipboard API</a></p>
  */
 public class ClipboardHelper {
     protected static final String CLIPBOARD_HELPER_KEY = "browserkit.clipboardhelper";
     protected static final String CLIPBOARD_HELPER_JS_PATH = "~./js/ClipboardHelper.js";
-    protected static ClipboardAuService auService;
+    public static final String MAX_IMAGE_SIZE = "org.zkoss.zkforge.clipboard.maxImageSize";
+    public static final String MAX_IMAGE_PIXELS = "org.zkoss.zkforge.clipboard.maxImagePixels";
+    public static final String LARGE_TEXT_THRESHOLD = "org.zkoss.zkforge.clipboard.largeTextThreshold";
+    public static final String TEXT_CHUNK_SIZE = "org.zkoss.zkforge.clipboard.textChunkSize";
+    public static final String COMPRESS_TEXT = "org.zkoss.zkforge.clipboard.compressText";
+    public static final String MAX_TEXT_LENGTH = "org.zkoss.zkforge.clipboard.maxTextLength";
+    public static final String MAX_SPOOLED_TEXTS = "org.zkoss.zkforge.clipboard.maxSpooledTexts";
+    public static final String SPOOLED_TEXT_TIMEOUT = "org.zkoss.zkforge.clipboard.spooledTextTimeout";
+    protected static final ClipboardAuService auService = new ClipboardAuService();
+
+    static {
+        BrowserApiHelper.registerCommand(ClipboardEvent.EVENT_NAME, CLIPBOARD_HELPER_KEY, auService,
+                ClipboardAuService::reject);
+        BrowserApiHelper.registerResources(CLIPBOARD_HELPER_KEY, new DesktopResources() {
+            @Override
+            public void release(Desktop desktop) {
+                SpooledTextRegistry.close(desktop.getId());
+                StoredImageRegistry.release(desktop.getId());
+            }
+
+            @Override
+            public List<String> findAlive(Desktop desktop) {
+                List<String> alive = new ArrayList<>(2);
+                if (SpooledTextRegistry.isOpen(desktop.getId())) {
+                    alive.add("spooled texts of " + desktop.getId());
+                }
+                if (StoredImageRegistry.isHolding(desktop.getId())) {
+                    alive.add("stored images of " + desktop.getId());
+                }
+                return alive;
+            }
+        });
+    }
 
     /**
      * Write text to the system clipboard.
@@ -90,8 +150,13 @@ public class ClipboardHelper {
     public static void readTextTo(Component targetComponent) {
         ensureExecutionAvailable();
         String uuid = targetComponent == null? null : targetComponent.getUuid();
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        if (failIfDenied(desktop, new ClipboardText(), ClipboardAction.READ, targetComponent)) return;
         Clients.evalJavaScript("ClipboardHelper.setTargetComponentUuid('" + uuid + "')");
-        Clients.evalJavaScript("ClipboardHelper.readText()");
+        Clients.evalJavaScript("ClipboardHelper.readText({uri:'" + desktop.getUpdateURI(ClipboardTextExtension.PATH)
+                + "',threshold:" + Library.getIntProperty(LARGE_TEXT_THRESHOLD, 1_000_000)
+                + ",chunkSize:" + Math.max(2, Library.getIntProperty(TEXT_CHUNK_SIZE, 1_000_000))
+                + ",gzip:" + !"false".equals(Library.getProperty(COMPRESS_TEXT)) + "})");
     }
 
     /**
@@ -116,10 +181,27 @@ public class ClipboardHelper {
     public static void readImageTo(Component targetComponent) {
         ensureExecutionAvailable();
         String uuid = targetComponent == null ? null : targetComponent.getUuid();
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        if (failIfDenied(desktop, new ClipboardImage(), ClipboardAction.READ_IMAGE, targetComponent)) return;
         Clients.evalJavaScript("ClipboardHelper.setTargetComponentUuid('" + uuid + "')");
         Clients.evalJavaScript("ClipboardHelper.readImage()");
     }
 
+    /**
+     * Post the result with a permission error instead of asking the browser, if it reported reading as denied.
+     *
+     * @return true if the result was posted
+     */
+    private static boolean failIfDenied(Desktop desktop, ClipboardResult result, ClipboardAction action, Component target) {
+        if (!BrowserPermissions.isDenied(desktop, BrowserPermissions.CLIPBOARD_READ)) {
+            return false;
+        }
+        result.setAction(action);
+        result.setError(new ClipboardError(ClipboardError.PERMISSION_DENIED, "Clipboard read permission denied"));
+        Events.postEvent(new ClipboardEvent(result, target));
+        return true;
+    }
+
     /**
      * Initialize clipboard helper for the current desktop if not already initialized.
      * This method ensures the AU service and JavaScript are properly set up.
@@ -127,59 +209,48 @@ public class ClipboardHelper {
      * You should call this method in a Composer's life cycle method e.g. {@link org.zkoss.zk.ui.util.Composer#doAfterCompose(Component)}.
      */
     public static void init() {
-        ensureExecutionAvailable();
-        Desktop desktop = Executions.getCurrent().getDesktop();
-        // Check if already initialized for this desktop
-        if (desktop.getAttribute(CLIPBOARD_HELPER_KEY) != null) {
-            return;
+        if (BrowserApiHelper.init(CLIPBOARD_HELPER_KEY, CLIPBOARD_HELPER_JS_PATH)) {
+            Desktop desktop = Executions.getCurrent().getDesktop();
+            BrowserApiHelper.addAuExtension(desktop.getWebApp(), ClipboardTextExtension.PATH, ClipboardTextExtension::new);
+            SpooledTextRegistry.open(desktop.getId());
+            BrowserPermissions.watch(BrowserPermissions.CLIPBOARD_READ);
+            if (AsyncEventDecoder.isEnabled()) {
+                desktop.enableServerPush(true);
+            }
         }
-        // Mark as initialized
-        desktop.setAttribute(CLIPBOARD_HELPER_KEY, true);
-
-        addAuService();
-        addHelperScript();
-    }
-
-    private static void addAuService() {
-        Desktop desktop = Executions.getCurrent().getDesktop();
-        if (auService == null) {
-            auService = new ClipboardAuService();
-        }
-        desktop.addListener(auService);
-    }
-
-    protected static void addHelperScript() {
-        Desktop desktop = Executions.getCurrent().getDesktop();
-        Script clipboardHelperScript = new Script();
-        clipboardHelperScript.setId(CLIPBOARD_HELPER_KEY);
-        clipboardHelperScript.setSrc(CLIPBOARD_HELPER_JS_PATH);
-        clipboardHelperScript.setPage(desktop.getFirstPage());
     }
 
     /**
      * Dispose clipboard helper for the current desktop.
-     * Removes the AU service listener and JavaScript helper for this desktop.
+     * Removes the AU service listener and JavaScript helper for this desktop, and deletes the spooled large texts.
      * 
      * @throws IllegalStateException if called outside an execution context
      */
     public static void dispose() {
-        ensureExecutionAvailable();
-        Desktop desktop = Executions.getCurrent().getDesktop();
-        
-        // Mark as not initialized
-        desktop.removeAttribute(CLIPBOARD_HELPER_KEY);
-        
-        if (auService != null) {
-            desktop.removeListener(auService);
-        }
-        
-        Selectors.find(desktop.getFirstPage(), "#" + CLIPBOARD_HELPER_KEY)
-                .forEach(Component::detach);
+        BrowserApiHelper.dispose(CLIPBOARD_HELPER_KEY);
     }
 
     protected static void ensureExecutionAvailable() {
-        if (Executions.getCurrent() == null) {
-            throw new IllegalStateException("This method can only be called when an Execution is available");
-        }
+        BrowserApiHelper.ensureExecutionAvailable();
+    }
+
+    static long getMaxImageSize() {
+        return Library.getIntProperty(MAX_IMAGE_SIZE, 10 * 1024 * 1024);
+    }
+
+    static long getMaxImagePixels() {
+        return Library.getIntProperty(MAX_IMAGE_PIXELS, 50_000_000);
+    }
+
+    static long getMaxTextLength() {
+        return Library.getIntProperty(MAX_TEXT_LENGTH, 100_000_000);
+    }
+
+    static int getMaxSpooledTexts() {
+        return Library.getIntProperty(MAX_SPOOLED_TEXTS, 4);
+    }
+
+    static long getSpooledTextTimeoutMillis() {
+        return Library.getIntProperty(SPOOLED_TEXT_TIMEOUT, 60) * 1000L;
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,21 @@
 package org.zkoss.zkforge.clipboard;
 
 import com.google.gson.annotations.Expose;
+import org.zkoss.zkforge.core.*;
+
+import java.io.*;
 
 /**
  * Result object for image-based clipboard operations. Read-only.
  * 
  * <p>Contains image-specific properties such as MIME type, image dimensions, and binary image data.</p>
+ *
+ * <p>When serialized, the image data is put in the {@link BrowserApiHelper#getContentStore() content store} and
+ * only its key is written. The image read back loads the data from the store on first access. The data is removed
+ * from the store when the desktop that received the image is cleaned up.</p>
  */
 public class ClipboardImage extends ClipboardResult {
+    private static final long serialVersionUID = 1L;
     @Expose
     private String mimeType;
     
@@ -20,6 +28,10 @@ public class ClipboardImage extends ClipboardResult {
     private int height;
     @Expose
     private long size;
+    /** the key of the image data in the content store, once written */
+    private transient String contentKey;
+    /** the desktop that received the image, which releases its data in the content store, or null */
+    private transient String desktopId;
 
     /**
      * Gets the MIME type of the clipboard image.
@@ -33,9 +45,13 @@ public class ClipboardImage extends ClipboardResult {
     /**
      * Gets the binary image data from the clipboard.
      * 
-     * @return the image data as a byte array, or null if no image data or error occurred
+     * @return the image data as a byte array, or null if no image data or error occurred, or the content store
+     * no longer has the data of a deserialized image
      */
     public byte[] getImageData() {
+        if (imageData == null && contentKey != null) {
+            imageData = BrowserApiHelper.getContentStore().get(contentKey);
+        }
         return imageData;
     }
 
@@ -46,6 +62,20 @@ public class ClipboardImage extends ClipboardResult {
      */
     void setImageData(byte[] imageData) {
         this.imageData = imageData;
+        this.contentKey = null;
+    }
+
+    /**
+     * Sets the image size in bytes.
+     *
+     * @param size the size of the image data
+     */
+    void setSize(long size) {
+        this.size = size;
+    }
+
+    void setDesktopId(String desktopId) {
+        this.desktopId = desktopId;
     }
 
     /**
@@ -54,7 +84,8 @@ public class ClipboardImage extends ClipboardResult {
      * @return true if image data is available and the operation succeeded, false otherwise
      */
     public boolean hasImageData() {
-        return isSuccess() && imageData != null && imageData.length > 0;
+        byte[] data = getImageData();
+        return isSuccess() && data != null && data.length > 0;
     }
 
     /**
@@ -87,6 +118,8 @@ public class ClipboardImage extends ClipboardResult {
 
     /**
      * Checks if the image is of a supported format based on MIME type.
+     * With image data, the MIME type is the one sniffed from the data's header, see
+     * {@link org.zkoss.zkforge.core.ImageHeader}.
      * 
      * @return true if the image format is supported, false otherwise
      */
@@ -114,6 +147,36 @@ public class ClipboardImage extends ClipboardResult {
         this.height = height;
     }
     
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal(out);
+        CompactData.writeString(out, mimeType);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeLong(size);
+        if (contentKey == null && imageData != null) {
+            contentKey = desktopId == null ? BrowserApiHelper.getContentStore().put(imageData)
+                    : StoredImageRegistry.put(desktopId, imageData);
+        }
+        CompactData.writeString(out, contentKey);
+        CompactData.writeString(out, desktopId);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.readExternal(in);
+        mimeType = CompactData.readString(in);
+        width = in.readInt();
+        height = in.readInt();
+        size = in.readLong();
+        contentKey = CompactData.readString(in);
+        desktopId = CompactData.readString(in);
+        imageData = null;
+        if (contentKey != null && desktopId != null) {
+            StoredImageRegistry.add(desktopId, contentKey);
+        }
+    }
+
     private boolean isSupportedMimeType(String mimeType) {
         if (mimeType == null) return false;
         return mimeType.equals("image/png") || 
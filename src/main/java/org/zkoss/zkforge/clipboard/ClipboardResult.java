@@ -1,14 +1,23 @@
 package org.zkoss.zkforge.clipboard;
 
 import com.google.gson.annotations.Expose;
+import org.zkoss.zkforge.core.CompactData;
+
+import java.io.*;
 
 /**
  * Abstract base class for all clipboard operation results.
  * 
  * <p>Success is indicated when {@code getError()} returns {@code null}.
  * Use {@code isSuccess()} for convenient success checking.</p>
+ *
+ * <p>Results are {@link Externalizable} with a compact encoding, so they can be kept in a desktop or session that is
+ * replicated. Subclasses write their fields after calling {@code super.writeExternal(out)}.</p>
  */
-public abstract class ClipboardResult {
+public abstract class ClipboardResult implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    /** the version of the external form, written first */
+    private static final int VERSION = 1;
     @Expose
     private ClipboardAction action;
     @Expose
@@ -40,4 +49,44 @@ public abstract class ClipboardResult {
     public void setError(ClipboardError error) {
         this.error = error;
     }
+
+    void setAction(ClipboardAction action) {
+        this.action = action;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeByte(action == null ? -1 : action.ordinal()); // new actions must be appended to the enum
+        if (error == null) {
+            out.writeByte(0);
+        } else if (error.getClass() == ClipboardError.class) {
+            out.writeByte(1);
+            out.writeInt(error.getCode());
+            CompactData.writeString(out, error.getMessage());
+        } else {
+            out.writeByte(2); // a subclass, with its own fields
+            out.writeObject(error);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new InvalidClassException(getClass().getName(), "Unknown version: " + version);
+        }
+        int ordinal = in.readByte();
+        action = ordinal < 0 ? null : ClipboardAction.values()[ordinal];
+        switch (in.readUnsignedByte()) {
+            case 0:
+                error = null;
+                break;
+            case 1:
+                error = new ClipboardError(in.readInt(), CompactData.readString(in));
+                break;
+            default:
+                error = (ClipboardError) in.readObject();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package org.zkoss.zkforge.clipboard;
+
+import java.util.Map;
+
+/**
+ * Reads clipboard results straight from the AU request data parsed by ZK, without reflection.
+ *
+ * <p>Replaces serializing the data to JSON again and binding it with Gson, which costs reflective field access on
+ * every event and building the type adapters on the first one. A value of an unexpected type throws
+ * {@link IllegalArgumentException}, then {@link ClipboardEvent} falls back to Gson, which coerces more leniently.</p>
+ */
+class ClipboardResultReader {
+
+    static ClipboardText readText(Map<String, Object> data) {
+        ClipboardText result = new ClipboardText();
+        readResult(data, result);
+        result.setText(toString(data.get("text")));
+        return result;
+    }
+
+    /**
+     * @return the image's metadata, without its data
+     */
+    static ClipboardImage readImage(Map<String, Object> data) {
+        ClipboardImage result = new ClipboardImage();
+        readResult(data, result);
+        result.setMimeType(toString(data.get("mimeType")));
+        result.setDimensions((int) toLong(data.get("width")), (int) toLong(data.get("height")));
+        result.setSize(toLong(data.get("size")));
+        return result;
+    }
+
+    private static void readResult(Map<String, Object> data, ClipboardResult result) {
+        Object action = data.get("action");
+        if (action != null) {
+            result.setAction(ClipboardAction.valueOf(action.toString()));
+        }
+        Object error = data.get("error");
+        if (error instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) error;
+            result.setError(new ClipboardError((int) toLong(map.get("code")), toString(map.get("message"))));
+        } else if (error != null) {
+            throw new IllegalArgumentException("error is not an object: " + error);
+        }
+    }
+
+    private static String toString(Object value) {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        throw new IllegalArgumentException("not a string: " + value);
+    }
+
+    private static long toLong(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        throw new IllegalArgumentException("not a number: " + value);
+    }
+}
@@ -1,22 +1,119 @@
 package org.zkoss.zkforge.clipboard;
 
 import com.google.gson.annotations.Expose;
+import org.zkoss.zk.ui.UiException;
+import org.zkoss.zkforge.core.CompactData;
+
+import java.io.*;
 
 /**
  * Result object for text-based clipboard operations. Read-only.
+ *
+ * <p>A large text is spooled to a temporary file instead of being held as a String, see
+ * {@link ClipboardHelper#LARGE_TEXT_THRESHOLD}. Read it with {@link #getCharSequence()} or {@link #getReader()},
+ * and call {@link #release()} when done to delete the file.</p>
+ *
+ * <p>When serialized, a spooled text only writes its id, the file stays on the node that received it; the text read
+ * back on another node has no content.</p>
  */
 public class ClipboardText extends ClipboardResult {
+    private static final long serialVersionUID = 1L;
     @Expose
     private String text;
+    private transient SpooledText spooled;
+    private transient String desktopId;
 
     /**
      * Gets the text content from clipboard operations.
+     * A spooled text is loaded into one String by this method, prefer {@link #getCharSequence()} for large texts.
      * 
      * @return the clipboard text content, or null if no text is available
      */
     public String getText() {
+        if (text == null && spooled != null) {
+            try {
+                text = spooled.asCharSequence().toString();
+            } catch (IOException e) {
+                throw new UiException(e);
+            }
+        }
         return text;
     }
 
+    /**
+     * @return the text, a view mapped from the temporary file for a spooled text, or null if no text is available
+     */
+    public CharSequence getCharSequence() throws IOException {
+        return spooled == null ? text : spooled.asCharSequence();
+    }
+
+    /**
+     * @return a new reader of the text, streaming from the temporary file for a spooled text, or null if no text is
+     * available
+     */
+    public Reader getReader() throws IOException {
+        if (spooled != null) {
+            return spooled.openReader();
+        }
+        return text == null ? null : new StringReader(text);
+    }
+
+    /**
+     * @return the number of chars of the text
+     */
+    public long getLength() {
+        if (spooled != null) {
+            return spooled.getLength();
+        }
+        return text == null ? 0 : text.length();
+    }
 
-}
\ No newline at end of file
+    /**
+     * @return true if the text was uploaded in chunks and spooled to a temporary file
+     */
+    public boolean isSpooled() {
+        return spooled != null;
+    }
+
+    /**
+     * Delete the temporary file of a spooled text. Otherwise, it is deleted when the clipboard helper is disposed.
+     */
+    public void release() {
+        if (spooled != null) {
+            SpooledTextRegistry.delete(desktopId, spooled.getTextId());
+        }
+    }
+
+    void setText(String text) {
+        this.text = text;
+    }
+
+    void setSpooled(String desktopId, SpooledText spooled) {
+        this.desktopId = desktopId;
+        this.spooled = spooled;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal(out);
+        if (spooled != null) {
+            out.writeBoolean(true);
+            CompactData.writeString(out, desktopId);
+            CompactData.writeString(out, spooled.getTextId());
+        } else {
+            out.writeBoolean(false);
+            CompactData.writeString(out, text);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.readExternal(in);
+        if (in.readBoolean()) {
+            desktopId = CompactData.readString(in);
+            spooled = SpooledTextRegistry.get(desktopId, CompactData.readString(in));
+        } else {
+            text = CompactData.readString(in);
+        }
+    }
+}
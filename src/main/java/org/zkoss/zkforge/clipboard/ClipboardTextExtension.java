@@ -0,0 +1,73 @@
+package org.zkoss.zkforge.clipboard;
+
+import org.zkoss.zkforge.core.DesktopAuExtension;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The endpoint receiving the chunks of large clipboard texts, mounted under ZK's update URI, e.g.
+ * {@code /zkau/browserkit/clipboard}.
+ *
+ * <p>{@code POST ?dtid=&textId=&index=&gzip=} with the UTF-8 chunk as the request body, gzip-compressed when
+ * {@code gzip=true}, appends a chunk. Chunks of a text are sent one after another, in order; after the last one the
+ * client fires {@link ClipboardEvent} with the text id instead of the text.</p>
+ *
+ * <p>The first chunk of a new text is refused with 429 (Too Many Requests) when the desktop already holds
+ * {@link ClipboardHelper#MAX_SPOOLED_TEXTS} texts, see {@link SpooledTextRegistry}.</p>
+ */
+public class ClipboardTextExtension extends DesktopAuExtension {
+    public static final String PATH = "/browserkit/clipboard";
+
+    @Override
+    public void service(HttpServletRequest request, HttpServletResponse response, String pi) throws ServletException, IOException {
+        if (!"POST".equals(request.getMethod())) {
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        String desktopId = request.getParameter("dtid");
+        String textId = request.getParameter("textId");
+        if (desktopId == null || textId == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "dtid and textId are required");
+            return;
+        }
+        if (getDesktop(request, desktopId) == null || !SpooledTextRegistry.isOpen(desktopId)) {
+            response.sendError(HttpServletResponse.SC_GONE, "Desktop not found or not accepting texts: " + desktopId);
+            return;
+        }
+        int index;
+        try {
+            index = Integer.parseInt(request.getParameter("index"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "index must be a number");
+            return;
+        }
+        SpooledText text;
+        try {
+            text = SpooledTextRegistry.getOrCreate(desktopId, textId);
+        } catch (IllegalStateException e) {
+            response.sendError(429, e.getMessage());
+            return;
+        }
+        if (text == null) {
+            response.sendError(HttpServletResponse.SC_GONE, "Desktop is not accepting texts: " + desktopId);
+            return;
+        }
+        try (InputStream body = "true".equals(request.getParameter("gzip"))
+                ? new GZIPInputStream(request.getInputStream()) : request.getInputStream()) {
+            text.append(index, body, ClipboardHelper.getMaxTextLength());
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        } catch (IllegalStateException e) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            SpooledTextRegistry.delete(desktopId, textId);
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+        } catch (IOException e) {
+            SpooledTextRegistry.delete(desktopId, textId);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.zkoss.zkforge.clipboard;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Text uploaded in chunks and spooled to a temporary file instead of the heap, see
+ * {@link ClipboardHelper#LARGE_TEXT_THRESHOLD}.
+ *
+ * <p>Chunks arrive as UTF-8 in order and are stored as UTF-16BE, two bytes per char, so the complete text can be
+ * memory-mapped as a {@link CharSequence} with random access, or streamed with a {@link Reader}, without ever
+ * creating one giant String. Call {@link #delete()} when done with the text; the file is deleted at the latest when
+ * the clipboard helper of the desktop is disposed.</p>
+ */
+public class SpooledText implements Closeable {
+    protected static final int BUFFER_SIZE = 8192;
+    private final String textId;
+    private final Path path;
+    private final FileChannel channel;
+    private int nextIndex;
+    private long length;
+    private volatile boolean closed;
+    private volatile long lastAppend = System.currentTimeMillis();
+    private CharSequence chars;
+
+    public SpooledText(String textId) throws IOException {
+        this.textId = textId;
+        this.path = Files.createTempFile("browserkit-", ".text");
+        this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Decode one UTF-8 chunk and append it.
+     *
+     * @param index the chunk index, chunks must arrive in order starting from 0
+     * @param utf8 the chunk content
+     * @param maxLength the maximal length of the whole text in chars, -1 for unlimited
+     * @throws IllegalStateException if the chunk is out of order or the text was closed
+     * @throws IllegalArgumentException if the text grows beyond maxLength
+     */
+    public synchronized void append(int index, InputStream utf8, long maxLength) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Text was closed: " + textId);
+        }
+        if (index != nextIndex) {
+            throw new IllegalStateException("Expected chunk " + nextIndex + " of " + textId + " but got " + index);
+        }
+        lastAppend = System.currentTimeMillis();
+        Reader reader = new InputStreamReader(utf8, StandardCharsets.UTF_8);
+        char[] buffer = new char[BUFFER_SIZE];
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE * 2); // big-endian, as UTF-16BE
+        int count;
+        while ((count = reader.read(buffer)) > 0) {
+            // checked while decoding, so a compressed chunk can't expand beyond the limit
+            if (maxLength >= 0 && length + count > maxLength) {
+                throw new IllegalArgumentException("Text exceeds " + maxLength + " chars");
+            }
+            // copy the chars as they are, a surrogate pair may be split between two reads
+            bytes.clear();
+            bytes.asCharBuffer().put(buffer, 0, count);
+            bytes.limit(count * 2);
+            long position = length * 2;
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+            length += count;
+            lastAppend = System.currentTimeMillis();
+        }
+        nextIndex++;
+    }
+
+    /**
+     * @return true if the upload was not completed and received no chunk for the timeout, i.e. the client gave up
+     */
+    boolean isAbandoned(long now, long timeoutMillis) {
+        return !closed && now - lastAppend > timeoutMillis;
+    }
+
+    /**
+     * @return the number of chars received so far
+     */
+    public synchronized long getLength() {
+        return length;
+    }
+
+    /**
+     * @return a read-only view of the whole text mapped from the file, use it after the upload completed
+     * @throws IllegalStateException if the text is longer than a mapping can hold ({@link Integer#MAX_VALUE} chars / 2)
+     */
+    public synchronized CharSequence asCharSequence() throws IOException {
+        if (chars == null) {
+            if (length * 2 > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Text too long to map: " + length + " chars");
+            }
+            chars = channel.map(FileChannel.MapMode.READ_ONLY, 0, length * 2).asCharBuffer();
+        }
+        return chars;
+    }
+
+    /**
+     * @return a new reader streaming the text from the file
+     */
+    public Reader openReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_16BE),
+                BUFFER_SIZE);
+    }
+
+    public String getTextId() {
+        return textId;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Stop accepting chunks. The content stays readable until {@link #delete()}.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+    }
+
+    /**
+     * Close the file and delete it. A mapped view may keep the content readable until it is garbage-collected.
+     */
+    public synchronized void delete() {
+        closed = true;
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            path.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.zkoss.zkforge.clipboard;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the large clipboard texts being uploaded or held by every desktop that initialized {@link ClipboardHelper}.
+ *
+ * <p>The upload endpoint runs outside any ZK execution, so the state is kept here (keyed by desktop id) instead of in
+ * desktop attributes. A desktop accepts chunks only after {@link #open(String)} and until {@link #close(String)}, which
+ * deletes all its spooled texts.</p>
+ *
+ * <p>The text ids are chosen by the client, so a desktop holds at most {@link ClipboardHelper#MAX_SPOOLED_TEXTS}
+ * texts, and a new text first deletes the texts of the desktop whose upload was abandoned before its
+ * {@link ClipboardEvent} arrived, see {@link ClipboardHelper#SPOOLED_TEXT_TIMEOUT}.</p>
+ */
+public class SpooledTextRegistry {
+    private static final Map<String, Map<String, SpooledText>> desktops = new ConcurrentHashMap<>();
+
+    public static void open(String desktopId) {
+        desktops.computeIfAbsent(desktopId, id -> new ConcurrentHashMap<>());
+    }
+
+    public static boolean isOpen(String desktopId) {
+        return desktops.containsKey(desktopId);
+    }
+
+    /**
+     * Stop accepting chunks for the desktop and delete its spooled texts.
+     */
+    public static void close(String desktopId) {
+        Map<String, SpooledText> texts = desktops.remove(desktopId);
+        if (texts != null) {
+            texts.values().forEach(SpooledText::delete);
+            texts.clear();
+        }
+    }
+
+    /**
+     * @return the text, or null if no chunk of it was received yet
+     */
+    public static SpooledText get(String desktopId, String textId) {
+        Map<String, SpooledText> texts = desktops.get(desktopId);
+        return texts == null ? null : texts.get(textId);
+    }
+
+    /**
+     * Get or create a text on its first chunk.
+     *
+     * @return the text, or null if the desktop doesn't accept texts
+     * @throws IllegalStateException if the desktop already holds {@link ClipboardHelper#MAX_SPOOLED_TEXTS} texts
+     */
+    public static SpooledText getOrCreate(String desktopId, String textId) throws IOException {
+        Map<String, SpooledText> texts = desktops.get(desktopId);
+        if (texts == null) {
+            return null;
+        }
+        SpooledText text = texts.get(textId);
+        if (text != null) {
+            return text;
+        }
+        synchronized (texts) {
+            text = texts.get(textId);
+            if (text != null) {
+                return text;
+            }
+            deleteAbandoned(texts);
+            int maxTexts = ClipboardHelper.getMaxSpooledTexts();
+            if (maxTexts >= 0 && texts.size() >= maxTexts) {
+                throw new IllegalStateException("Desktop holds " + texts.size() + " spooled texts: " + desktopId);
+            }
+            text = new SpooledText(textId);
+            texts.put(textId, text);
+        }
+        // closed meanwhile, close() may have missed the new text
+        if (desktops.get(desktopId) != texts) {
+            texts.remove(textId, text);
+            text.delete();
+            return null;
+        }
+        return text;
+    }
+
+    private static void deleteAbandoned(Map<String, SpooledText> texts) {
+        long now = System.currentTimeMillis();
+        long timeout = ClipboardHelper.getSpooledTextTimeoutMillis();
+        texts.values().removeIf(text -> {
+            if (!text.isAbandoned(now, timeout)) return false;
+            text.delete();
+            return true;
+        });
+    }
+
+    /**
+     * Remove a text from the registry and delete its file.
+     */
+    public static void delete(String desktopId, String textId) {
+        Map<String, SpooledText> texts = desktops.get(desktopId);
+        SpooledText text = texts == null ? null : texts.remove(textId);
+        if (text != null) {
+            text.delete();
+        }
+    }
+}
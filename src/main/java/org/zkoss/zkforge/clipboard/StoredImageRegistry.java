@@ -0,0 +1,60 @@
+package org.zkoss.zkforge.clipboard;
+
+import org.zkoss.zkforge.core.BrowserApiHelper;
+
+import java.util.*;
+
+/**
+ * Tracks the keys under which the clipboard images of each desktop were put in the
+ * {@link BrowserApiHelper#getContentStore() content store}, so they are removed from the store when the desktop is
+ * cleaned up.
+ *
+ * <p>The store may give equal images of different desktops the same key, so a key is removed only once no desktop
+ * holds it. Storing and releasing hold the registry's lock, so a key is never removed while another desktop stores
+ * the same content.</p>
+ */
+class StoredImageRegistry {
+    /** key: desktop id, value: the content keys of its images */
+    private static final Map<String, Set<String>> desktops = new HashMap<>();
+    /** key: content key, value: the ids of the desktops holding it */
+    private static final Map<String, Set<String>> owners = new HashMap<>();
+
+    /**
+     * Put the image data of the desktop in the content store.
+     *
+     * @return the key of the data
+     */
+    static synchronized String put(String desktopId, byte[] imageData) {
+        String contentKey = BrowserApiHelper.getContentStore().put(imageData);
+        add(desktopId, contentKey);
+        return contentKey;
+    }
+
+    /**
+     * Record that the desktop holds an image stored before, e.g. one replicated from another node.
+     */
+    static synchronized void add(String desktopId, String contentKey) {
+        desktops.computeIfAbsent(desktopId, id -> new HashSet<>()).add(contentKey);
+        owners.computeIfAbsent(contentKey, key -> new HashSet<>()).add(desktopId);
+    }
+
+    /**
+     * Remove the images of the desktop from the content store, unless another desktop holds them too.
+     */
+    static synchronized void release(String desktopId) {
+        Set<String> contentKeys = desktops.remove(desktopId);
+        if (contentKeys == null) return;
+        for (String contentKey : contentKeys) {
+            Set<String> holders = owners.get(contentKey);
+            holders.remove(desktopId);
+            if (holders.isEmpty()) {
+                owners.remove(contentKey);
+                BrowserApiHelper.getContentStore().remove(contentKey);
+            }
+        }
+    }
+
+    static synchronized boolean isHolding(String desktopId) {
+        return desktops.containsKey(desktopId);
+    }
+}
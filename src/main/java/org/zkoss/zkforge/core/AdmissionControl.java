@@ -0,0 +1,168 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.lang.Library;
+import org.zkoss.zk.au.AuRequest;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.ext.Scope;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the AU requests of helpers per desktop, per session and per node (JVM), by request count and by size.
+ * {@link HelperAuService} checks every helper request here before the helper parses it; a rejected request is
+ * counted and, for helpers registering a rejection handler, answered with the helper's error event, e.g. a
+ * {@code ClipboardError}, so the caller is not left waiting.
+ *
+ * <p>Each limit is a {@link TokenBucket} whose burst capacity equals one second of its rate. Limits are library
+ * properties and opt-in; 0 (the default) or a negative value disables a limit:</p>
+ * <ul>
+ *     <li>{@value #DESKTOP_REQUESTS} and {@value #DESKTOP_BYTES} per second</li>
+ *     <li>{@value #SESSION_REQUESTS} and {@value #SESSION_BYTES} per second</li>
+ *     <li>{@value #NODE_REQUESTS} and {@value #NODE_BYTES} per second</li>
+ * </ul>
+ * The size of a request is estimated from the length of its string values, e.g. a base64 image. A request larger than
+ * a byte limit is admitted when the bucket is full and empties it, so set the byte limits above the largest expected
+ * request, e.g. a pasted image of {@code maxImageSize} takes 4/3 of its size as base64.
+ */
+public class AdmissionControl {
+    public static final String DESKTOP_REQUESTS = "org.zkoss.zkforge.admission.desktop.requestsPerSecond";
+    public static final String DESKTOP_BYTES = "org.zkoss.zkforge.admission.desktop.bytesPerSecond";
+    public static final String SESSION_REQUESTS = "org.zkoss.zkforge.admission.session.requestsPerSecond";
+    public static final String SESSION_BYTES = "org.zkoss.zkforge.admission.session.bytesPerSecond";
+    public static final String NODE_REQUESTS = "org.zkoss.zkforge.admission.node.requestsPerSecond";
+    public static final String NODE_BYTES = "org.zkoss.zkforge.admission.node.bytesPerSecond";
+    protected static final String REQUEST_BUCKET_KEY = "browserkit.admission.requests";
+    protected static final String BYTE_BUCKET_KEY = "browserkit.admission.bytes";
+    private static final Limit desktopLimit = new Limit(DESKTOP_REQUESTS, 0, DESKTOP_BYTES, 0);
+    private static final Limit sessionLimit = new Limit(SESSION_REQUESTS, 0, SESSION_BYTES, 0);
+    private static final Limit nodeLimit = new Limit(NODE_REQUESTS, 0, NODE_BYTES, 0);
+    private static volatile TokenBucket nodeRequests;
+    private static volatile TokenBucket nodeBytes;
+
+    /**
+     * @return true if the request may be processed
+     */
+    public static boolean admit(AuRequest request) {
+        Desktop desktop = request.getDesktop();
+        long size = estimateSize(request.getData());
+        if (!admit(desktop, desktopLimit, size)) {
+            return false;
+        }
+        Session session = desktop.getSession();
+        if (session != null && !admit(session, sessionLimit, size)) {
+            return false;
+        }
+        return admitNode(size);
+    }
+
+    private static boolean admit(Scope scope, Limit limit, long size) {
+        TokenBucket requests = getBucket(scope, REQUEST_BUCKET_KEY, limit.requestsProperty, limit.defaultRequests);
+        if (requests != null && !requests.tryConsume(1)) {
+            limit.rejectedRequests.increment();
+            return false;
+        }
+        TokenBucket bytes = getBucket(scope, BYTE_BUCKET_KEY, limit.bytesProperty, limit.defaultBytes);
+        if (bytes != null && !bytes.tryConsume(size)) {
+            limit.rejectedBytes.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean admitNode(long size) {
+        if (nodeRequests == null || nodeBytes == null) {
+            synchronized (AdmissionControl.class) {
+                if (nodeRequests == null) {
+                    nodeRequests = newBucket(nodeLimit.requestsProperty, nodeLimit.defaultRequests);
+                }
+                if (nodeBytes == null) {
+                    nodeBytes = newBucket(nodeLimit.bytesProperty, nodeLimit.defaultBytes);
+                }
+            }
+        }
+        if (nodeRequests.getCapacity() > 0 && !nodeRequests.tryConsume(1)) {
+            nodeLimit.rejectedRequests.increment();
+            return false;
+        }
+        if (nodeBytes.getCapacity() > 0 && !nodeBytes.tryConsume(size)) {
+            nodeLimit.rejectedBytes.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the bucket stored in the scope, or null if the limit is disabled
+     */
+    private static TokenBucket getBucket(Scope scope, String key, String property, int defaultRate) {
+        TokenBucket bucket = (TokenBucket) scope.getAttribute(key);
+        if (bucket == null) {
+            synchronized (scope) {
+                bucket = (TokenBucket) scope.getAttribute(key);
+                if (bucket == null) {
+                    bucket = newBucket(property, defaultRate);
+                    scope.setAttribute(key, bucket);
+                }
+            }
+        }
+        return bucket.getCapacity() > 0 ? bucket : null;
+    }
+
+    private static TokenBucket newBucket(String property, int defaultRate) {
+        int rate = Math.max(0, Library.getIntProperty(property, defaultRate));
+        return new TokenBucket(rate, rate);
+    }
+
+    /**
+     * @return the approximate size in bytes of the request data, counting string values by their length
+     */
+    protected static long estimateSize(Map<String, Object> data) {
+        if (data == null) return 0;
+        long size = 0;
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            Object value = entry.getValue();
+            size += entry.getKey().length() + (value instanceof String ? ((String) value).length() : 16);
+        }
+        return size;
+    }
+
+    public static long getRejectedByDesktop() {
+        return desktopLimit.getRejected();
+    }
+
+    public static long getRejectedBySession() {
+        return sessionLimit.getRejected();
+    }
+
+    public static long getRejectedByNode() {
+        return nodeLimit.getRejected();
+    }
+
+    /**
+     * @return the number of requests rejected because of their size, in any scope
+     */
+    public static long getRejectedBySize() {
+        return desktopLimit.rejectedBytes.sum() + sessionLimit.rejectedBytes.sum() + nodeLimit.rejectedBytes.sum();
+    }
+
+    private static class Limit {
+        private final String requestsProperty;
+        private final int defaultRequests;
+        private final String bytesProperty;
+        private final int defaultBytes;
+        private final LongAdder rejectedRequests = new LongAdder();
+        private final LongAdder rejectedBytes = new LongAdder();
+
+        private Limit(String requestsProperty, int defaultRequests, String bytesProperty, int defaultBytes) {
+            this.requestsProperty = requestsProperty;
+            this.defaultRequests = defaultRequests;
+            this.bytesProperty = bytesProperty;
+            this.defaultBytes = defaultBytes;
+        }
+
+        private long getRejected() {
+            return rejectedRequests.sum() + rejectedBytes.sum();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.lang.Library;
+import org.zkoss.zk.au.AuRequest;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.event.*;
+
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Turns AU requests of helpers into events, either synchronously or off the request thread.
+ *
+ * <p>By default, an AuService parses the request data (e.g. decodes a base64 image) on the servlet thread while the
+ * desktop is locked, then posts the event. In asynchronous mode, the AuService returns right after copying the
+ * request data; the parsing runs on an executor outside the desktop lock, and only the finished event is posted back
+ * to the desktop with server push ({@link Executions#schedule(Desktop, EventListener, Event)}). This shortens the time
+ * each AU request holds the desktop, e.g. under paste-heavy workloads.</p>
+ *
+ * <p>Enable it with the library property {@value #ASYNC_DECODING} set to true, which uses virtual threads when the
+ * JVM supports them (Java 21+) or a cached thread pool otherwise, or by {@link #setExecutor(Executor)}.
+ * Helpers enable server push on their desktops when the mode is on. A desktop without server push falls back to
+ * synchronous decoding.</p>
+ *
+ * <p>The requests of one desktop are decoded one after another in arrival order, and their events are posted in that
+ * order, since later stages keep per-desktop state that depends on it, e.g. {@code PositionFilter} and
+ * {@code GeofenceWatcher}. Different desktops are decoded in parallel.</p>
+ */
+public class AsyncEventDecoder {
+    public static final String ASYNC_DECODING = "org.zkoss.zkforge.asyncDecoding";
+    /** desktop attribute holding the desktop's {@link SerialQueue}, not replicated, a new one is created on demand */
+    protected static final String DECODE_QUEUE_KEY = "browserkit.decodequeue";
+    private static volatile Executor executor;
+    private static volatile boolean executorResolved;
+
+    /**
+     * Set the executor running the decoding, null to decode synchronously.
+     * Overrides the library property {@value #ASYNC_DECODING}.
+     */
+    public static void setExecutor(Executor executor) {
+        AsyncEventDecoder.executor = executor;
+        executorResolved = true;
+    }
+
+    /**
+     * @return the executor running the decoding, or null if decoding synchronously
+     */
+    public static Executor getExecutor() {
+        if (!executorResolved) {
+            synchronized (AsyncEventDecoder.class) {
+                if (!executorResolved) {
+                    executor = Boolean.parseBoolean(Library.getProperty(ASYNC_DECODING)) ? newDefaultExecutor() : null;
+                    executorResolved = true;
+                }
+            }
+        }
+        return executor;
+    }
+
+    public static boolean isEnabled() {
+        return getExecutor() != null;
+    }
+
+    /**
+     * Decode the request into an event and post it, asynchronously if enabled and possible for the desktop.
+     *
+     * @param request the AU request, must be called in {@link org.zkoss.zk.au.AuService#service(AuRequest, boolean)}
+     * @param decoder creates the event from a copy of the request data and the request's target component
+     */
+    public static <E extends Event> void post(AuRequest request, BiFunction<Map<String, Object>, Component, E> decoder) {
+        postAll(request, (data, target) -> Collections.singletonList(decoder.apply(data, target)));
+    }
+
+    /**
+     * Decode the request into events and post them in order, asynchronously if enabled and possible for the desktop.
+     *
+     * @param request the AU request, must be called in {@link org.zkoss.zk.au.AuService#service(AuRequest, boolean)}
+     * @param decoder creates the events from a copy of the request data and the request's target component
+     */
+    public static void postAll(AuRequest request,
+                               BiFunction<Map<String, Object>, Component, ? extends List<? extends Event>> decoder) {
+        Map<String, Object> data = request.getData();
+        Component target = request.getComponent();
+        Map<String, Object> copy = data == null || getExecutor() == null ? data : new HashMap<>(data);
+        postAll(request.getDesktop(), () -> decoder.apply(copy, target));
+    }
+
+    /**
+     * Decode events for the desktop and post them in order, after the events of the requests already queued for it,
+     * asynchronously if enabled and possible for the desktop. Unlike {@link #postAll(AuRequest, BiFunction)}, the data
+     * need not come from a request of the desktop, e.g. a fix received by another desktop of the session.
+     *
+     * @param desktop the desktop receiving the events, must be called in its execution
+     * @param decoder creates the events, must not depend on data that changes after this call
+     */
+    public static void postAll(Desktop desktop, Supplier<? extends List<? extends Event>> decoder) {
+        Executor executor = getExecutor();
+        if (executor == null || !desktop.isServerPushEnabled()) {
+            decoder.get().forEach(Events::postEvent);
+            return;
+        }
+        getQueue(desktop, executor).execute(() -> {
+            if (!desktop.isAlive()) {
+                return; // destroyed while queued, skip decoding for nobody
+            }
+            List<? extends Event> events = decoder.get();
+            try {
+                for (Event event : events) {
+                    Executions.schedule(desktop, Events::postEvent, event);
+                }
+            } catch (DesktopUnavailableException e) {
+                // the desktop was destroyed while decoding, nobody is waiting for the events
+            }
+        });
+    }
+
+    /**
+     * @return the queue decoding the desktop's requests in order, called in the desktop's execution
+     */
+    private static SerialQueue getQueue(Desktop desktop, Executor executor) {
+        SerialQueue queue = (SerialQueue) desktop.getAttribute(DECODE_QUEUE_KEY);
+        if (queue == null || queue.executor != executor) {
+            queue = new SerialQueue(executor);
+            desktop.setAttribute(DECODE_QUEUE_KEY, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Runs its tasks one at a time, in the order they were added, on the shared executor. It holds no thread while
+     * empty.
+     */
+    private static class SerialQueue implements Executor {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final Executor executor;
+
+        private SerialQueue(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    running.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+            } finally {
+                running.set(false);
+                schedule(); // tasks added after the last poll, or left by a failed task
+            }
+        }
+    }
+
+    /**
+     * @return a virtual-thread-per-task executor when available, otherwise a cached pool of daemon threads
+     */
+    protected static Executor newDefaultExecutor() {
+        try {
+            MethodHandle factory = MethodHandles.publicLookup().findStatic(Executors.class,
+                    "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+            return (Executor) factory.invoke();
+        } catch (Throwable e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "browserkit-decoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
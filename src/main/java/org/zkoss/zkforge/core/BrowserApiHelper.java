@@ -0,0 +1,227 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.zk.au.*;
+import org.zkoss.zk.au.http.*;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.select.Selectors;
+import org.zkoss.zul.Script;
+
+import javax.servlet.ServletException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.*;
+
+/**
+ * Shared lifecycle plumbing for the browser API helpers (e.g. ClipboardHelper, GeolocationHelper).
+ *
+ * <p>A helper is identified by a key (e.g. {@code "browserkit.clipboardhelper"}). Initializing a helper on a desktop
+ * marks it as initialized, installs the shared {@link HelperAuService} once per desktop and loads the helper's
+ * JavaScript. A helper class typically looks like:</p>
+ * <pre>{@code
+ * public class SomeHelper {
+ *     static {
+ *         BrowserApiHelper.registerCommand(SomeEvent.EVENT_NAME, SOME_HELPER_KEY, new SomeAuService());
+ *     }
+ *     public static void init() {
+ *         BrowserApiHelper.init(SOME_HELPER_KEY, SOME_HELPER_JS_PATH);
+ *     }
+ *     public static void dispose() {
+ *         BrowserApiHelper.dispose(SOME_HELPER_KEY);
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>A helper keeping state outside the desktop's attributes registers its {@link DesktopResources}, released by
+ * {@link #dispose(String)} and by {@link HelperCleanup} when the desktop is destroyed.</p>
+ */
+public class BrowserApiHelper {
+    /** desktop attribute holding the keys of the helpers initialized on the desktop */
+    protected static final String HELPERS_KEY = "browserkit.helpers";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    /** the names of the classes that registered commands or resources, see {@link #initRegistrants(String[])} */
+    private static final Set<String> registrants = ConcurrentHashMap.newKeySet();
+    private static volatile ContentStore contentStore;
+
+    /**
+     * Register the handler of an AU command sent by a helper's JavaScript.
+     * Call it once per JVM, e.g. in the helper's static initializer.
+     */
+    public static void registerCommand(String command, String helperKey, AuService handler) {
+        registrants.add(STACK_WALKER.getCallerClass().getName());
+        HelperAuService.getInstance().register(command, helperKey, handler);
+    }
+
+    /**
+     * Register the handler of an AU command, and a handler answering the requests rejected by
+     * {@link AdmissionControl}, e.g. by posting an error event.
+     * Call it once per JVM, e.g. in the helper's static initializer.
+     */
+    public static void registerCommand(String command, String helperKey, AuService handler, Consumer<AuRequest> rejected) {
+        registrants.add(STACK_WALKER.getCallerClass().getName());
+        HelperAuService.getInstance().register(command, helperKey, handler, rejected);
+    }
+
+    /**
+     * Register the resources a helper keeps for each desktop outside its attributes.
+     * Call it once per JVM, e.g. in the helper's static initializer.
+     */
+    public static void registerResources(String helperKey, DesktopResources resources) {
+        registrants.add(STACK_WALKER.getCallerClass().getName());
+        HelperCleanup.getInstance().register(helperKey, resources);
+    }
+
+    /**
+     * Release the registered resources when the desktop is destroyed, e.g. for resources created without
+     * initializing a helper. {@link #init(String, String)} does it for the helper's desktop.
+     */
+    public static void watchCleanup(Desktop desktop) {
+        HelperCleanup.getInstance().watch(desktop);
+    }
+
+    /**
+     * Mount an endpoint under ZK's update URI once per web application, e.g. {@code /zkau/browserkit/upload}.
+     * Its URI for a desktop is {@code desktop.getUpdateURI(path)}.
+     *
+     * @param path the path starting with "/"
+     * @param extension creates the endpoint if the path is not mounted yet
+     */
+    public static synchronized void addAuExtension(WebApp webApp, String path, Supplier<? extends AuExtension> extension) {
+        if (DHtmlUpdateServlet.getAuExtension(webApp, path) != null) {
+            return;
+        }
+        try {
+            DHtmlUpdateServlet.addAuExtension(webApp, path, extension.get());
+        } catch (ServletException e) {
+            throw new UiException(e);
+        }
+    }
+
+    /**
+     * Use another content store, e.g. one shared by the nodes of a cluster.
+     */
+    public static void setContentStore(ContentStore contentStore) {
+        BrowserApiHelper.contentStore = contentStore;
+    }
+
+    /**
+     * @return the store holding large contents referred to by replicated results, see {@link ContentStore}
+     */
+    public static ContentStore getContentStore() {
+        if (contentStore == null) {
+            synchronized (BrowserApiHelper.class) {
+                if (contentStore == null) {
+                    Iterator<ContentStore> providers = ServiceLoader.load(ContentStore.class).iterator();
+                    contentStore = providers.hasNext() ? providers.next() : new InMemoryContentStore();
+                }
+            }
+        }
+        return contentStore;
+    }
+
+    /**
+     * Initialize a helper for the current desktop if not already initialized.
+     *
+     * @param helperKey the helper key, also used as the id of the helper's script component
+     * @param scriptPath the path of the helper's JavaScript, e.g. {@code "~./js/ClipboardHelper.js"}
+     * @return true if the helper is initialized by this call, false if it was initialized before
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static boolean init(String helperKey, String scriptPath) {
+        ensureExecutionAvailable();
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        Set<String> helpers = getHelpers(desktop);
+        if (helpers.contains(helperKey)) {
+            return false;
+        }
+        if (helpers.isEmpty()) {
+            desktop.addListener(HelperAuService.getInstance());
+        }
+        watchCleanup(desktop);
+        helpers.add(helperKey);
+        addHelperScript(desktop, helperKey, scriptPath);
+        return true;
+    }
+
+    /**
+     * Dispose a helper for the current desktop.
+     * Its AU commands are no longer handled, its JavaScript is removed and its {@link DesktopResources} released.
+     * The shared AuService is removed along with the last helper of the desktop.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void dispose(String helperKey) {
+        ensureExecutionAvailable();
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        Set<String> helpers = getHelpers(desktop);
+        if (!helpers.remove(helperKey)) {
+            return;
+        }
+        if (helpers.isEmpty()) {
+            desktop.removeListener(HelperAuService.getInstance());
+        }
+        Selectors.find(desktop.getFirstPage(), "#" + helperKey)
+                .forEach(Component::detach);
+        HelperCleanup.getInstance().release(helperKey, desktop);
+    }
+
+    static String[] getRegistrants() {
+        return registrants.toArray(new String[0]);
+    }
+
+    /**
+     * Initialize the classes that registered commands or resources on the node that serialized a desktop, so their
+     * static initializers register them on this node before the desktop's requests arrive.
+     */
+    static void initRegistrants(String[] classNames) {
+        for (String className : classNames) {
+            if (registrants.contains(className)) continue;
+            try {
+                Class.forName(className, true, getClassLoader());
+            } catch (ClassNotFoundException e) {
+                // not deployed on this node, its commands stay unhandled like before the failover
+            }
+        }
+    }
+
+    private static ClassLoader getClassLoader() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return loader != null ? loader : BrowserApiHelper.class.getClassLoader();
+    }
+
+    public static boolean isInitialized(Desktop desktop, String helperKey) {
+        if (desktop == null) return false;
+        Set<?> helpers = (Set<?>) desktop.getAttribute(HELPERS_KEY);
+        return helpers != null && helpers.contains(helperKey);
+    }
+
+    /**
+     * @return true if the helper is initialized for the desktop of the current execution
+     */
+    public static boolean isInitialized(String helperKey) {
+        Execution execution = Executions.getCurrent();
+        return execution != null && isInitialized(execution.getDesktop(), helperKey);
+    }
+
+    public static void ensureExecutionAvailable() {
+        if (Executions.getCurrent() == null) {
+            throw new IllegalStateException("This method can only be called when an Execution is available");
+        }
+    }
+
+    protected static void addHelperScript(Desktop desktop, String helperKey, String scriptPath) {
+        Script helperScript = new Script();
+        helperScript.setId(helperKey);
+        helperScript.setSrc(scriptPath);
+        helperScript.setPage(desktop.getFirstPage());
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Set<String> getHelpers(Desktop desktop) {
+        Set<String> helpers = (Set<String>) desktop.getAttribute(HELPERS_KEY);
+        if (helpers == null) {
+            helpers = new HashSet<>();
+            desktop.setAttribute(HELPERS_KEY, helpers);
+        }
+        return helpers;
+    }
+}
@@ -0,0 +1,94 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.zk.au.*;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.util.Clients;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the state of browser permissions per desktop, so a helper can fail fast instead of asking the browser when
+ * the user already denied the permission.
+ *
+ * <p>{@link #watch(String)} runs a
+ * <a href="https://developer.mozilla.org/en-US/docs/Web/API/Permissions/query">navigator.permissions.query</a>
+ * once per desktop and permission. The browser reports the state right away and again on each {@code change}, e.g.
+ * when the user resets the permission in the address bar; nothing is sent per helper call. A permission the browser
+ * can't query, e.g. {@code clipboard-read} in Firefox, stays {@link PermissionState#UNKNOWN} and never fails fast.
+ * The reports bypass {@link AdmissionControl}, and reports of permissions the desktop doesn't watch are ignored.</p>
+ */
+public class BrowserPermissions {
+    /** the AU command reporting a permission state */
+    public static final String EVENT_NAME = "onPermissionChange";
+    public static final String GEOLOCATION = "geolocation";
+    public static final String CLIPBOARD_READ = "clipboard-read";
+    /** desktop attribute holding the states by permission name */
+    protected static final String PERMISSIONS_KEY = "browserkit.permissions";
+    private static final String WATCH_SCRIPT = "(function(name){"
+            + "if(!navigator.permissions)return;"
+            + "navigator.permissions.query({name:name}).then(function(status){"
+            + "var send=function(){zAu.send(new zk.Event(zk.Desktop._dt,'" + EVENT_NAME + "',{name:name,state:status.state}));};"
+            + "status.onchange=send;send();"
+            + "}).catch(function(){});" // the permission name is not supported by the browser
+            + "})";
+
+    static {
+        // any helper's desktop may report permissions
+        BrowserApiHelper.registerCommand(EVENT_NAME, null, new PermissionAuService());
+        // a dropped report would keep a stale state, e.g. DENIED after the user granted the permission
+        HelperAuService.getInstance().exempt(EVENT_NAME);
+    }
+
+    /**
+     * Query the permission in the browser of the current desktop and keep its state up to date, once per desktop.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void watch(String name) {
+        BrowserApiHelper.ensureExecutionAvailable();
+        Map<String, PermissionState> states = getStates(Executions.getCurrent().getDesktop());
+        if (states.putIfAbsent(name, PermissionState.UNKNOWN) == null) {
+            Clients.evalJavaScript(WATCH_SCRIPT + "('" + name + "')");
+        }
+    }
+
+    /**
+     * @return the last state reported by the desktop's browser, {@link PermissionState#UNKNOWN} if none
+     */
+    public static PermissionState getState(Desktop desktop, String name) {
+        PermissionState state = getStates(desktop).get(name);
+        return state == null ? PermissionState.UNKNOWN : state;
+    }
+
+    /**
+     * @return true if the desktop's browser reported the permission as denied, so using it can only fail
+     */
+    public static boolean isDenied(Desktop desktop, String name) {
+        return getState(desktop, name) == PermissionState.DENIED;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Map<String, PermissionState> getStates(Desktop desktop) {
+        Map<String, PermissionState> states = (Map<String, PermissionState>) desktop.getAttribute(PERMISSIONS_KEY);
+        if (states == null) {
+            states = new ConcurrentHashMap<>();
+            desktop.setAttribute(PERMISSIONS_KEY, states);
+        }
+        return states;
+    }
+
+    private static class PermissionAuService implements AuService {
+        @Override
+        public boolean service(AuRequest request, boolean everError) {
+            Map<String, Object> data = request.getData();
+            if (data == null) return true; // malformed report, exempt from admission control so handled cheaply
+            Object name = data.get("name");
+            if (name != null) {
+                // only the permissions watched by the desktop, so a client can't grow the map
+                getStates(request.getDesktop()).replace(name.toString(), PermissionState.of(data.get("state")));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.zkoss.zkforge.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads the compact encodings used by the {@link Externalizable} result classes, e.g. when a desktop
+ * holding them is replicated to another node.
+ *
+ * <p>Lengths are variable-length integers, 1 byte up to 127; strings are UTF-8 of any length, unlike
+ * {@link DataOutput#writeUTF(String)}, and may be null.</p>
+ */
+public final class CompactData {
+    private CompactData() {
+    }
+
+    /**
+     * Write a non-negative int in 7-bit groups, least significant first.
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        while (value > 0x7F) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable-length int");
+    }
+
+    /**
+     * Write a string as its UTF-8 length + 1, 0 for null, and the UTF-8 bytes.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
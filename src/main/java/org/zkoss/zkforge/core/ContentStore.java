@@ -0,0 +1,26 @@
+package org.zkoss.zkforge.core;
+
+/**
+ * Holds large binary contents, e.g. pasted images, outside the objects referring to them, so replicating a desktop or
+ * session to another node only copies a short key instead of the content.
+ *
+ * <p>The default is {@link InMemoryContentStore}, which only keeps contents on the local node: after a failover,
+ * the other node can't resolve the keys. To share contents among nodes, e.g. in a distributed cache, call
+ * {@link BrowserApiHelper#setContentStore(ContentStore)} or register the implementation as a service provider in
+ * {@code META-INF/services/org.zkoss.zkforge.core.ContentStore}.</p>
+ */
+public interface ContentStore {
+    /**
+     * Store a content. May be called by many threads at once.
+     *
+     * @return the key of the content, the same content may get the same key
+     */
+    String put(byte[] content);
+
+    /**
+     * @return the content, or null if it is unknown or was evicted
+     */
+    byte[] get(String key);
+
+    void remove(String key);
+}
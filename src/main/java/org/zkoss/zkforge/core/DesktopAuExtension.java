@@ -0,0 +1,44 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.zk.au.http.*;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.http.WebManager;
+import org.zkoss.zk.ui.sys.WebAppCtrl;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Base class of the endpoints that helpers mount under ZK's update URI for traffic that doesn't fit AU requests,
+ * e.g. binary uploads. Such a request runs outside any ZK execution, so the desktop it targets is looked up with
+ * {@link #getDesktop(HttpServletRequest, String)}, which also ensures the desktop belongs to the caller's session.
+ *
+ * @see BrowserApiHelper#addAuExtension(WebApp, String, java.util.function.Supplier)
+ */
+public abstract class DesktopAuExtension implements AuExtension {
+    private ServletContext servletContext;
+
+    @Override
+    public void init(DHtmlUpdateServlet servlet) throws ServletException {
+        servletContext = servlet.getServletContext();
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * @return the desktop of the caller's session, or null if the session or the desktop doesn't exist
+     */
+    protected Desktop getDesktop(HttpServletRequest request, String desktopId) {
+        if (desktopId == null) {
+            return null;
+        }
+        Session session = WebManager.getSession(servletContext, request, false);
+        if (session == null) {
+            return null;
+        }
+        WebAppCtrl webAppCtrl = (WebAppCtrl) session.getWebApp();
+        return webAppCtrl.getDesktopCache(session).getDesktopIfAny(desktopId);
+    }
+}
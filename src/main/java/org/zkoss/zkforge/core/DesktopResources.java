@@ -0,0 +1,27 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.zk.ui.Desktop;
+
+import java.util.*;
+
+/**
+ * Server-side resources a helper keeps for a desktop outside the desktop's attributes, e.g. entries of static
+ * registries, temporary files or subscriptions, which the garbage collector can't reclaim with the desktop.
+ *
+ * @see BrowserApiHelper#registerResources(String, DesktopResources)
+ */
+public interface DesktopResources {
+    /**
+     * Release the desktop's resources. Called by the helper's {@code dispose()} and when the desktop is destroyed,
+     * possibly outside any execution, so it must not update the browser.
+     */
+    void release(Desktop desktop);
+
+    /**
+     * @return a description of each resource of the desktop still alive, checked after a destroyed desktop was
+     * released when {@link HelperCleanup#LEAK_DETECTION} is on
+     */
+    default List<String> findAlive(Desktop desktop) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,122 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.zk.au.*;
+import org.zkoss.zk.ui.Desktop;
+
+import java.io.*;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The single desktop-level AuService shared by all browser-kit helpers.
+ *
+ * <p>Each helper registers the AU commands it handles once per JVM via
+ * {@link BrowserApiHelper#registerCommand(String, String, AuService)}. Every desktop
+ * that initialized at least one helper gets exactly one listener (this instance), which
+ * routes a request to its handler with a single map lookup instead of asking every helper's
+ * AuService in turn.</p>
+ *
+ * <p>A command is only routed when its owning helper is initialized on the request's desktop,
+ * so {@code dispose()} of one helper stops its commands without affecting the others. A routed request must then
+ * pass {@link AdmissionControl} before its handler parses it, unless the command is {@link #exempt(String) exempt};
+ * a rejected request is dropped or answered by the command's rejection handler.</p>
+ *
+ * <p>It is replicated with the desktop like any listener, and deserialized as the instance of the receiving JVM, so
+ * the helpers of a desktop failed over to another node keep receiving their commands. Its serialized form names the
+ * classes that registered commands, which are initialized on the receiving node so their routes exist there too.</p>
+ */
+public class HelperAuService implements AuService, Serializable {
+    private static final long serialVersionUID = 1L;
+    protected static final HelperAuService INSTANCE = new HelperAuService();
+
+    private final transient Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final transient Set<String> exempted = ConcurrentHashMap.newKeySet();
+
+    protected HelperAuService() {
+    }
+
+    public static HelperAuService getInstance() {
+        return INSTANCE;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(BrowserApiHelper.getRegistrants());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        BrowserApiHelper.initRegistrants((String[]) in.readObject());
+    }
+
+    protected Object readResolve() {
+        return getInstance();
+    }
+
+    /**
+     * Route the AU command to the handler.
+     *
+     * @param command the AU command, e.g. the event name sent by {@code zAu.send()}
+     * @param helperKey the key of the helper owning the command, see {@link BrowserApiHelper#init(String, String)},
+     * or null for a command of every desktop with a helper, e.g. {@link BrowserPermissions#EVENT_NAME}
+     * @param handler the handler to call, its {@code service()} receives only requests of this command
+     */
+    public void register(String command, String helperKey, AuService handler) {
+        register(command, helperKey, handler, null);
+    }
+
+    /**
+     * Route the AU command to the handler, and the requests rejected by {@link AdmissionControl} to the rejection
+     * handler, which typically posts the helper's error event so the caller gets an answer.
+     *
+     * @param rejected receives the rejected requests, or null to drop them
+     */
+    public void register(String command, String helperKey, AuService handler, Consumer<AuRequest> rejected) {
+        routes.put(command, new Route(helperKey, handler, rejected));
+    }
+
+    public void unregister(String command) {
+        routes.remove(command);
+    }
+
+    /**
+     * Let the requests of the command bypass {@link AdmissionControl}, for small reports of browser state whose loss
+     * would leave the server with a stale state, e.g. {@link BrowserPermissions#EVENT_NAME}.
+     */
+    public void exempt(String command) {
+        exempted.add(command);
+    }
+
+    @Override
+    public boolean service(AuRequest request, boolean everError) {
+        Route route = routes.get(request.getCommand());
+        if (route == null) {
+            return false; // Not handled - continue to next handler
+        }
+        Desktop desktop = request.getDesktop();
+        if (route.helperKey != null && !BrowserApiHelper.isInitialized(desktop, route.helperKey)) {
+            return false;
+        }
+        if (!exempted.contains(request.getCommand()) && !AdmissionControl.admit(request)) {
+            if (route.rejected != null) {
+                route.rejected.accept(request);
+            }
+            return true; // Rate limited - answered with an error or dropped
+        }
+        return route.handler.service(request, everError);
+    }
+
+    private static final class Route {
+        private final String helperKey;
+        private final AuService handler;
+        private final Consumer<AuRequest> rejected;
+
+        private Route(String helperKey, AuService handler, Consumer<AuRequest> rejected) {
+            this.helperKey = helperKey;
+            this.handler = handler;
+            this.rejected = rejected;
+        }
+    }
+}
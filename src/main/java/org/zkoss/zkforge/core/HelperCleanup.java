@@ -0,0 +1,151 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.lang.Library;
+import org.zkoss.zk.ui.Desktop;
+import org.zkoss.zk.ui.util.DesktopCleanup;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Releases the resources of helpers when a desktop is destroyed, e.g. its tab closed or it timed out, so nothing
+ * depends on the application calling the helpers' {@code dispose()}.
+ *
+ * <p>Every desktop that initialized a helper gets this listener once. On cleanup, it releases the
+ * {@link DesktopResources} of all helpers for the desktop: incomplete uploads and spooled texts are deleted, frame
+ * channels closed, notification mailboxes and location subscriptions removed. Pending asynchronous decoding of the
+ * desktop's requests is skipped, see {@link AsyncEventDecoder}.</p>
+ *
+ * <p>With the library property {@value #LEAK_DETECTION} set to true, the resources are checked again after the
+ * release and each one still alive is counted by {@link #getLeaks()} and passed to the
+ * {@link #setLeakListener(BiConsumer) leak listener}.</p>
+ *
+ * <p>It is replicated with the desktop like any listener, and deserialized as the instance of the receiving JVM, so a
+ * desktop failed over to another node is still cleaned up there. Like {@link HelperAuService}, it initializes the
+ * classes that registered resources on the receiving node. The counters are kept per JVM.</p>
+ */
+public class HelperCleanup implements DesktopCleanup, Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final String LEAK_DETECTION = "org.zkoss.zkforge.leakDetection";
+    /** desktop attribute marking desktops watched by this listener */
+    protected static final String WATCHED_KEY = "browserkit.cleanup";
+    protected static final HelperCleanup INSTANCE = new HelperCleanup();
+    private final transient Map<String, DesktopResources> resources = new ConcurrentHashMap<>();
+    private final transient LongAdder activeDesktops = new LongAdder();
+    private final transient LongAdder cleanedDesktops = new LongAdder();
+    private final transient LongAdder failures = new LongAdder();
+    private final transient LongAdder leaks = new LongAdder();
+    private transient volatile BiConsumer<Desktop, String> leakListener;
+
+    protected HelperCleanup() {
+    }
+
+    public static HelperCleanup getInstance() {
+        return INSTANCE;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(BrowserApiHelper.getRegistrants());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        BrowserApiHelper.initRegistrants((String[]) in.readObject());
+    }
+
+    protected Object readResolve() {
+        return getInstance();
+    }
+
+    void register(String helperKey, DesktopResources desktopResources) {
+        resources.put(helperKey, desktopResources);
+    }
+
+    /**
+     * Clean up the desktop when it is destroyed, once per desktop.
+     */
+    void watch(Desktop desktop) {
+        if (desktop.getAttribute(WATCHED_KEY) == null) {
+            desktop.setAttribute(WATCHED_KEY, Boolean.TRUE);
+            desktop.addListener(this);
+            activeDesktops.increment();
+        }
+    }
+
+    /**
+     * Release the resources of one helper for the desktop, e.g. when the helper is disposed.
+     */
+    void release(String helperKey, Desktop desktop) {
+        DesktopResources desktopResources = resources.get(helperKey);
+        if (desktopResources != null) {
+            desktopResources.release(desktop);
+        }
+    }
+
+    @Override
+    public void cleanup(Desktop desktop) {
+        activeDesktops.decrement();
+        cleanedDesktops.increment();
+        // release every helper, some resources exist without an initialized helper, e.g. location subscriptions
+        for (DesktopResources desktopResources : resources.values()) {
+            try {
+                desktopResources.release(desktop);
+            } catch (RuntimeException e) {
+                failures.increment(); // e.g. the session is already invalidated, release the others anyway
+            }
+        }
+        if (Boolean.parseBoolean(Library.getProperty(LEAK_DETECTION))) {
+            detectLeaks(desktop);
+        }
+    }
+
+    protected void detectLeaks(Desktop desktop) {
+        BiConsumer<Desktop, String> listener = leakListener;
+        for (DesktopResources desktopResources : resources.values()) {
+            for (String resource : desktopResources.findAlive(desktop)) {
+                leaks.increment();
+                if (listener != null) {
+                    listener.accept(desktop, resource);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receive the resources found alive after a desktop was cleaned up, when {@value #LEAK_DETECTION} is on.
+     *
+     * @param leakListener receives the desktop and a description of the resource, or null
+     */
+    public void setLeakListener(BiConsumer<Desktop, String> leakListener) {
+        this.leakListener = leakListener;
+    }
+
+    /**
+     * @return the number of desktops with helpers that are not destroyed yet
+     */
+    public long getActiveDesktops() {
+        return activeDesktops.sum();
+    }
+
+    public long getCleanedDesktops() {
+        return cleanedDesktops.sum();
+    }
+
+    /**
+     * @return the number of releases that threw an exception
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the number of resources found alive after cleanup, see {@value #LEAK_DETECTION}
+     */
+    public long getLeaks() {
+        return leaks.sum();
+    }
+}
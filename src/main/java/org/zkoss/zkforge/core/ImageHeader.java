@@ -0,0 +1,267 @@
+package org.zkoss.zkforge.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The format and dimensions of a PNG, JPEG, GIF or WebP image, read from its magic bytes and header only.
+ *
+ * <p>Sniffing reads a few dozen bytes, or for JPEG skips the segments before the frame header, or for GIF skips from
+ * one frame descriptor to the next, without copying or decoding the image. So the format a client claims can be checked, and an image whose declared pixel count is too
+ * large (a decompression bomb: a small file expanding to gigabytes of pixels) rejected before anything like
+ * {@code AImage} or {@code ImageIO} decodes it.</p>
+ */
+public class ImageHeader {
+    public static final String PNG = "image/png";
+    public static final String JPEG = "image/jpeg";
+    public static final String GIF = "image/gif";
+    public static final String WEBP = "image/webp";
+    private final String mimeType;
+    private final int width;
+    private final int height;
+    private final long pixelCount;
+
+    public ImageHeader(String mimeType, int width, int height) {
+        this(mimeType, width, height, (long) width * height);
+    }
+
+    /**
+     * @param pixelCount the number of pixels decoding allocates, more than width times height if a frame of an
+     *                   animation is larger than the image
+     */
+    public ImageHeader(String mimeType, int width, int height, long pixelCount) {
+        this.mimeType = mimeType;
+        this.width = width;
+        this.height = height;
+        this.pixelCount = pixelCount;
+    }
+
+    /**
+     * @return the header, or null if the data is not a PNG, JPEG, GIF or WebP image or its header is truncated
+     */
+    public static ImageHeader sniff(byte[] data) {
+        try {
+            return sniff(new ByteArrayInputStream(data));
+        } catch (IOException e) {
+            return null; // not thrown by a byte array
+        }
+    }
+
+    /**
+     * Read the header from the stream, which is left after the header, or for a GIF after its last frame.
+     *
+     * @return the header, or null if the stream is not a PNG, JPEG, GIF or WebP image or its header is truncated
+     */
+    public static ImageHeader sniff(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in instanceof BufferedInputStream || in instanceof ByteArrayInputStream
+                ? in : new BufferedInputStream(in));
+        try {
+            int first = data.readUnsignedByte();
+            switch (first) {
+                case 0x89:
+                    return readPng(data);
+                case 0xFF:
+                    return readJpeg(data);
+                case 'G':
+                    return readGif(data);
+                case 'R':
+                    return readWebp(data);
+                default:
+                    return null;
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The signature, then the IHDR chunk: length, type, big-endian width and height.
+     */
+    private static ImageHeader readPng(DataInputStream in) throws IOException {
+        if (!matches(in, "PNG\r\n\u001A\n")) return null;
+        in.readInt(); // the chunk length
+        if (!matches(in, "IHDR")) return null;
+        int width = in.readInt();
+        int height = in.readInt();
+        return width < 0 || height < 0 ? null : new ImageHeader(PNG, width, height); // at most 2^31 - 1
+    }
+
+    /**
+     * Segments up to the first start-of-frame, whose header holds the big-endian height and width.
+     */
+    private static ImageHeader readJpeg(DataInputStream in) throws IOException {
+        if (in.readUnsignedByte() != 0xD8) return null; // start of image
+        while (true) {
+            if (in.readUnsignedByte() != 0xFF) return null;
+            int marker = in.readUnsignedByte();
+            while (marker == 0xFF) { // fill bytes
+                marker = in.readUnsignedByte();
+            }
+            if (marker == 0x01 || marker >= 0xD0 && marker <= 0xD8) {
+                continue; // standalone markers without a length
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return null; // end of image or start of scan without a frame
+            }
+            int length = in.readUnsignedShort();
+            if (length < 2) return null;
+            // SOF0-SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                in.readUnsignedByte(); // the sample precision
+                int height = in.readUnsignedShort();
+                int width = in.readUnsignedShort();
+                return new ImageHeader(JPEG, width, height);
+            }
+            skipFully(in, length - 2);
+        }
+    }
+
+    /**
+     * The signature, then the little-endian width and height of the logical screen. A frame may be larger than the
+     * screen and decoders allocate it in full, so the blocks are walked to the trailer for the largest frame.
+     */
+    private static ImageHeader readGif(DataInputStream in) throws IOException {
+        if (!matches(in, "IF8")) return null;
+        int version = in.readUnsignedByte();
+        if (version != '7' && version != '9' || in.readUnsignedByte() != 'a') return null;
+        int width = readLittleEndian(in, 2);
+        int height = readLittleEndian(in, 2);
+        long pixelCount = (long) width * height;
+        try {
+            int flags = in.readUnsignedByte();
+            skipFully(in, 2); // the background color and the pixel aspect ratio
+            skipColorTable(in, flags);
+            while (true) {
+                int block = in.readUnsignedByte();
+                if (block == 0x2C) { // image descriptor
+                    skipFully(in, 4); // the frame's left and top
+                    int frameWidth = readLittleEndian(in, 2);
+                    int frameHeight = readLittleEndian(in, 2);
+                    pixelCount = Math.max(pixelCount, (long) frameWidth * frameHeight);
+                    skipColorTable(in, in.readUnsignedByte());
+                    in.readUnsignedByte(); // the LZW minimum code size
+                    skipSubBlocks(in);
+                } else if (block == 0x21) { // extension
+                    in.readUnsignedByte(); // the label
+                    skipSubBlocks(in);
+                } else {
+                    break; // the trailer (3B), or garbage a decoder stops at too
+                }
+            }
+        } catch (EOFException e) {
+            // a truncated image, decoders render the frames read so far
+        }
+        return new ImageHeader(GIF, width, height, pixelCount);
+    }
+
+    /**
+     * Skip the global or local color table, present if the high bit of the flags is set.
+     */
+    private static void skipColorTable(DataInputStream in, int flags) throws IOException {
+        if ((flags & 0x80) != 0) {
+            skipFully(in, 3 << (flags & 0x07) + 1);
+        }
+    }
+
+    /**
+     * Skip data sub-blocks, each preceded by its size, up to the empty block.
+     */
+    private static void skipSubBlocks(DataInputStream in) throws IOException {
+        int size;
+        while ((size = in.readUnsignedByte()) != 0) {
+            skipFully(in, size);
+        }
+    }
+
+    /**
+     * The RIFF container, then the first chunk: VP8 (lossy), VP8L (lossless) or VP8X (extended) with the canvas size.
+     */
+    private static ImageHeader readWebp(DataInputStream in) throws IOException {
+        if (!matches(in, "IFF")) return null;
+        in.readInt(); // the file size
+        if (!matches(in, "WEBP")) return null;
+        byte[] chunk = new byte[4];
+        in.readFully(chunk);
+        String type = new String(chunk, StandardCharsets.US_ASCII);
+        in.readInt(); // the chunk size
+        switch (type) {
+            case "VP8 ":
+                skipFully(in, 3); // the frame tag
+                if (in.readUnsignedByte() != 0x9D || in.readUnsignedByte() != 0x01 || in.readUnsignedByte() != 0x2A) {
+                    return null;
+                }
+                return new ImageHeader(WEBP, readLittleEndian(in, 2) & 0x3FFF, readLittleEndian(in, 2) & 0x3FFF);
+            case "VP8L":
+                if (in.readUnsignedByte() != 0x2F) return null;
+                int bits = readLittleEndian(in, 4);
+                return new ImageHeader(WEBP, (bits & 0x3FFF) + 1, (bits >>> 14 & 0x3FFF) + 1);
+            case "VP8X":
+                skipFully(in, 4); // the flags and reserved bytes
+                return new ImageHeader(WEBP, readLittleEndian(in, 3) + 1, readLittleEndian(in, 3) + 1);
+            default:
+                return null;
+        }
+    }
+
+    private static boolean matches(DataInputStream in, String expected) throws IOException {
+        for (int i = 0; i < expected.length(); i++) {
+            if (in.readUnsignedByte() != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readLittleEndian(DataInputStream in, int bytes) throws IOException {
+        int value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value |= in.readUnsignedByte() << 8 * i;
+        }
+        return value;
+    }
+
+    private static void skipFully(DataInputStream in, int bytes) throws IOException {
+        if (in.skipBytes(bytes) < bytes) {
+            throw new EOFException();
+        }
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of pixels the image declares, what decoding it allocates at least; for a GIF, that of the
+     * logical screen or of its largest frame, whichever is larger
+     */
+    public long getPixelCount() {
+        return pixelCount;
+    }
+
+    /**
+     * @return true if the claimed dimensions are the header's, or swapped, as browsers apply the EXIF orientation of a
+     * JPEG
+     */
+    public boolean hasDimensions(int width, int height) {
+        return this.width == width && this.height == height
+                || JPEG.equals(mimeType) && this.width == height && this.height == width;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageHeader{" +
+                "mimeType='" + mimeType + '\'' +
+                ", width=" + width +
+                ", height=" + height +
+                ", pixelCount=" + pixelCount +
+                '}';
+    }
+}
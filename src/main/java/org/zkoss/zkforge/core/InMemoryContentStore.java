@@ -0,0 +1,80 @@
+package org.zkoss.zkforge.core;
+
+import org.zkoss.lang.Library;
+
+import java.security.*;
+import java.util.*;
+
+/**
+ * A content store for a single node, keeping contents on the heap under the SHA-256 of the content, so replicating
+ * the same image again stores it once.
+ *
+ * <p>The total size is bounded by the library property {@value #MAX_SIZE} in bytes (default 64 MB); beyond it the
+ * least recently used contents are evicted and their keys no longer resolve.</p>
+ */
+public class InMemoryContentStore implements ContentStore {
+    public static final String MAX_SIZE = "org.zkoss.zkforge.contentStore.maxSize";
+    private final long maxSize;
+    private final LinkedHashMap<String, byte[]> contents = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    public InMemoryContentStore() {
+        this(Library.getIntProperty(MAX_SIZE, 64 * 1024 * 1024));
+    }
+
+    public InMemoryContentStore(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public String put(byte[] content) {
+        String key = digest(content);
+        synchronized (contents) {
+            if (contents.putIfAbsent(key, content) == null) {
+                size += content.length;
+                Iterator<byte[]> eldest = contents.values().iterator();
+                // keep the new content even if it alone exceeds the limit
+                while (size > maxSize && contents.size() > 1) {
+                    size -= eldest.next().length;
+                    eldest.remove();
+                }
+            }
+        }
+        return key;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        synchronized (contents) {
+            return contents.get(key);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        synchronized (contents) {
+            byte[] content = contents.remove(key);
+            if (content != null) {
+                size -= content.length;
+            }
+        }
+    }
+
+    /**
+     * @return the total size of the contents in bytes
+     */
+    public long getSize() {
+        synchronized (contents) {
+            return size;
+        }
+    }
+
+    private static String digest(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM supports SHA-256
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.zkoss.zkforge.core;
+
+/**
+ * The state of a browser permission, see
+ * <a href="https://developer.mozilla.org/en-US/docs/Web/API/PermissionStatus/state">PermissionStatus.state</a>.
+ */
+public enum PermissionState {
+    GRANTED,
+    DENIED,
+    /** the browser asks the user on the next use */
+    PROMPT,
+    /** not reported yet, or the browser can't query the permission */
+    UNKNOWN;
+
+    static PermissionState of(Object state) {
+        if (state != null) {
+            for (PermissionState value : values()) {
+                if (value.name().equalsIgnoreCase(state.toString())) {
+                    return value;
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,51 @@
+package org.zkoss.zkforge.core;
+
+import java.io.*;
+
+/**
+ * A thread-safe token bucket: it holds at most {@code capacity} tokens and refills {@code ratePerSecond} tokens per
+ * second. A consumption larger than the capacity is allowed when the bucket is full and empties it, so a single
+ * large request is not rejected forever, and doesn't put the bucket in debt blocking the following ones for longer
+ * than a full refill.
+ *
+ * <p>Serializable, as buckets are kept in desktop and session attributes; a deserialized bucket refills from the time
+ * it is read.</p>
+ */
+public class TokenBucket implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final double capacity;
+    private final double ratePerNano;
+    private double tokens;
+    /** {@link System#nanoTime()} is only comparable within one JVM */
+    private transient long lastRefill;
+
+    public TokenBucket(double capacity, double ratePerSecond) {
+        this.capacity = capacity;
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @return true if the tokens are consumed, false if not enough tokens are left and nothing is consumed
+     */
+    public synchronized boolean tryConsume(double amount) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+        if (tokens < Math.min(amount, capacity)) {
+            return false;
+        }
+        tokens -= Math.min(amount, capacity);
+        return true;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lastRefill = System.nanoTime();
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+}
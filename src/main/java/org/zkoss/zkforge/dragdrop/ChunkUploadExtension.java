@@ -0,0 +1,136 @@
+package org.zkoss.zkforge.dragdrop;
+
+import org.zkoss.zkforge.core.DesktopAuExtension;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * The endpoint receiving the chunks of dropped files, mounted under ZK's update URI, e.g. {@code /zkau/browserkit/upload}.
+ *
+ * <ul>
+ *     <li>{@code POST ?dtid=&fileId=&index=&chunkSize=&size=&name=} with the chunk bytes as the request body stores a
+ *     chunk of a file announced by {@link DropFilesEvent}; {@code chunkSize} must be the configured
+ *     {@link DragDropHelper#CHUNK_SIZE}</li>
+ *     <li>{@code GET ?dtid=&fileId=} returns the upload status, e.g. {@code {"received":1024,"missing":[3,4]}}, or
+ *     {@code {"received":0}} without {@code missing} if no chunk has arrived yet; the browser resumes an interrupted
+ *     upload by sending only the missing chunks. An upload neither announced nor in progress is 410 (Gone).</li>
+ * </ul>
+ *
+ * <p>A chunk of a file not announced (yet) is refused with 404 (Not Found) and a {@code Retry-After} header, since the
+ * chunks may overtake the announcing AU request. A chunk received before, e.g. retried after its response was lost, is acknowledged with 204 (No Content) without
+ * writing it again; a chunk of an aborted upload is refused with 410 (Gone).</p>
+ *
+ * <p>A chunk is rejected with 429 (Too Many Requests) and a {@code Retry-After} header when the desktop or the node
+ * reaches its concurrency limit, see {@link UploadRegistry}.</p>
+ */
+public class ChunkUploadExtension extends DesktopAuExtension {
+    public static final String PATH = "/browserkit/upload";
+    protected static final int RETRY_AFTER_SECONDS = 1;
+
+    @Override
+    public void service(HttpServletRequest request, HttpServletResponse response, String pi) throws ServletException, IOException {
+        String desktopId = request.getParameter("dtid");
+        String fileId = request.getParameter("fileId");
+        if (desktopId == null || fileId == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "dtid and fileId are required");
+            return;
+        }
+        if (getDesktop(request, desktopId) == null || !UploadRegistry.isOpen(desktopId)) {
+            response.sendError(HttpServletResponse.SC_GONE, "Desktop not found or not accepting files: " + desktopId);
+            return;
+        }
+        if ("GET".equals(request.getMethod())) {
+            ChunkedUpload upload = UploadRegistry.get(desktopId, fileId);
+            if (upload == null && !UploadRegistry.isAnnounced(desktopId, fileId)) {
+                response.sendError(HttpServletResponse.SC_GONE, "Upload not found: " + fileId);
+                return;
+            }
+            writeStatus(response, upload);
+        } else if ("POST".equals(request.getMethod())) {
+            receiveChunk(request, response, desktopId, fileId);
+        } else {
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        }
+    }
+
+    protected void receiveChunk(HttpServletRequest request, HttpServletResponse response, String desktopId, String fileId) throws IOException {
+        int index;
+        int chunkSize;
+        long size;
+        try {
+            index = Integer.parseInt(request.getParameter("index"));
+            chunkSize = Integer.parseInt(request.getParameter("chunkSize"));
+            size = Long.parseLong(request.getParameter("size"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "index, chunkSize and size must be numbers");
+            return;
+        }
+        if (chunkSize != DragDropHelper.getChunkSize() || size < 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "chunkSize must be " + DragDropHelper.getChunkSize()
+                    + " and size not negative");
+            return;
+        }
+        long maxFileSize = DragDropHelper.getMaxFileSize();
+        if (maxFileSize >= 0 && size > maxFileSize) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "File exceeds " + maxFileSize + " bytes");
+            return;
+        }
+        if (ChunkedUpload.getChunkCount(size, chunkSize) > ChunkedUpload.MAX_CHUNK_COUNT) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "File has more than "
+                    + ChunkedUpload.MAX_CHUNK_COUNT + " chunks");
+            return;
+        }
+        if (!UploadRegistry.isAnnounced(desktopId, fileId)) {
+            // the onDropFiles request announcing the file may still be on its way
+            response.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "File was not announced: " + fileId);
+            return;
+        }
+        if (!UploadRegistry.tryAcquire(desktopId)) {
+            response.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            response.sendError(429, "Too many concurrent chunks");
+            return;
+        }
+        try {
+            ChunkedUpload upload = UploadRegistry.getOrCreate(desktopId, fileId);
+            if (upload == null || upload.isAborted()) {
+                response.sendError(HttpServletResponse.SC_GONE, "Upload was closed: " + fileId);
+                return;
+            }
+            if (upload.getSize() != size || upload.getChunkSize() != chunkSize) {
+                response.sendError(HttpServletResponse.SC_CONFLICT, "size or chunkSize differs from the announced file");
+                return;
+            }
+            if (upload.writeChunk(index, request.getInputStream())) {
+                writeStatus(response, upload);
+            } else {
+                response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            }
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            response.sendError(HttpServletResponse.SC_GONE, e.getMessage());
+        } finally {
+            UploadRegistry.release(desktopId);
+        }
+    }
+
+    /**
+     * @param upload null if the file was announced but no chunk has arrived yet
+     */
+    protected void writeStatus(HttpServletResponse response, ChunkedUpload upload) throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        if (upload == null) {
+            response.getWriter().write("{\"received\":0}");
+            return;
+        }
+        String missing = Arrays.stream(upload.getMissingChunks())
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+        response.getWriter().write("{\"received\":" + upload.getBytesReceived() + ",\"missing\":[" + missing + "]}");
+    }
+}
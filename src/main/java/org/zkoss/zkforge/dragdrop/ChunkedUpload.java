@@ -0,0 +1,188 @@
+package org.zkoss.zkforge.dragdrop;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.BitSet;
+
+/**
+ * Server-side state of one dropped file being uploaded in chunks.
+ *
+ * <p>Chunks may arrive in any order and in parallel. Each chunk is streamed from the request body straight into a
+ * {@link FileChannel} at its own offset, so the file is never held in memory. A failed chunk is safe to retry: a chunk
+ * already received is acknowledged without writing it again, and a chunk of an aborted upload is refused.</p>
+ */
+public class ChunkedUpload {
+    /** the maximal number of chunks of one file, 4 TB in chunks of 4 MB */
+    public static final int MAX_CHUNK_COUNT = 1 << 20;
+    private final String fileId;
+    private final String name;
+    private final long size;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final Path path;
+    private final FileChannel channel;
+    private final BitSet receivedChunks;
+    private long bytesReceived;
+    private boolean aborted;
+
+    /**
+     * @throws IllegalArgumentException if the size or chunk size is invalid, or the file has more than
+     * {@link #MAX_CHUNK_COUNT} chunks
+     */
+    public ChunkedUpload(String fileId, String name, long size, int chunkSize) throws IOException {
+        long count = getChunkCount(size, chunkSize);
+        if (count > MAX_CHUNK_COUNT) {
+            throw new IllegalArgumentException("File has more than " + MAX_CHUNK_COUNT + " chunks: " + count);
+        }
+        this.fileId = fileId;
+        this.name = name;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) count;
+        this.receivedChunks = new BitSet(chunkCount);
+        this.path = Files.createTempFile("browserkit-", ".upload");
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Stream one chunk into the file.
+     *
+     * @param index the chunk index, starting from 0
+     * @param in the chunk content, exactly {@link #getChunkLength(int)} bytes
+     * @return false if the chunk was received before, e.g. a retry whose first response was lost; it is not written
+     * again
+     * @throws IOException if the content is shorter than expected or cannot be written
+     * @throws IllegalArgumentException if the index is out of range
+     * @throws IllegalStateException if the upload was aborted
+     */
+    public boolean writeChunk(int index, InputStream in) throws IOException {
+        if (index < 0 || index >= chunkCount) {
+            throw new IllegalArgumentException("Invalid chunk index: " + index);
+        }
+        synchronized (this) {
+            if (aborted) {
+                throw new IllegalStateException("Upload was aborted: " + fileId);
+            }
+            if (receivedChunks.get(index)) {
+                return false;
+            }
+        }
+        long position = (long) index * chunkSize;
+        long length = getChunkLength(index);
+        ReadableByteChannel source = Channels.newChannel(in);
+        long written = 0;
+        try {
+            while (written < length) {
+                long count = channel.transferFrom(source, position + written, length - written);
+                if (count <= 0) {
+                    throw new EOFException("Chunk " + index + " of " + fileId + " ended after " + written + " bytes");
+                }
+                written += count;
+            }
+        } catch (ClosedChannelException e) {
+            // closed meanwhile by abort(), or by the completion of a concurrent retry of this chunk
+            synchronized (this) {
+                if (aborted) {
+                    throw new IllegalStateException("Upload was aborted: " + fileId);
+                }
+                if (receivedChunks.get(index)) {
+                    return false;
+                }
+            }
+            throw e;
+        }
+        return markReceived(index, length);
+    }
+
+    private synchronized boolean markReceived(int index, long length) throws IOException {
+        if (aborted) {
+            throw new IllegalStateException("Upload was aborted: " + fileId);
+        }
+        if (receivedChunks.get(index)) {
+            return false;
+        }
+        receivedChunks.set(index);
+        bytesReceived += length;
+        if (isComplete()) {
+            channel.close();
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of chunks of a file, at least 1 for an empty file
+     * @throws IllegalArgumentException if the size is negative or the chunk size not positive
+     */
+    public static long getChunkCount(long size, int chunkSize) {
+        if (size < 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid size or chunkSize: " + size + ", " + chunkSize);
+        }
+        return Math.max(1, size / chunkSize + (size % chunkSize == 0 ? 0 : 1)); // no overflow near Long.MAX_VALUE
+    }
+
+    public long getChunkLength(int index) {
+        return Math.min(chunkSize, size - (long) index * chunkSize);
+    }
+
+    /**
+     * Close the file and delete the partially uploaded content.
+     * A completed upload is left untouched since it belongs to the application now.
+     */
+    public synchronized void abort() {
+        if (isComplete() || aborted) {
+            return;
+        }
+        aborted = true;
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    public synchronized boolean isComplete() {
+        return receivedChunks.cardinality() == chunkCount;
+    }
+
+    public synchronized boolean isAborted() {
+        return aborted;
+    }
+
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return the indexes of chunks not received yet
+     */
+    public synchronized int[] getMissingChunks() {
+        BitSet missing = (BitSet) receivedChunks.clone();
+        missing.flip(0, chunkCount);
+        return missing.stream().toArray();
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return the file storing the uploaded content, complete only when {@link #isComplete()} returns true
+     */
+    public Path getPath() {
+        return path;
+    }
+}
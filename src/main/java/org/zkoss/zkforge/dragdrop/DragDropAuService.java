@@ -0,0 +1,21 @@
+package org.zkoss.zkforge.dragdrop;
+
+import org.zkoss.zk.au.*;
+import org.zkoss.zk.ui.event.Events;
+
+public class DragDropAuService implements AuService {
+
+    @Override
+    public boolean service(AuRequest request, boolean everError) {
+        final String cmd = request.getCommand();
+        if (DropFilesEvent.EVENT_NAME.equals(cmd)) {
+            Events.postEvent(DropFilesEvent.getEvent(request));
+            return true;
+        }
+        if (UploadProgressEvent.EVENT_NAME.equals(cmd)) {
+            Events.postEvent(UploadProgressEvent.getEvent(request));
+            return true;
+        }
+        return false; // Not handled - continue to next handler
+    }
+}
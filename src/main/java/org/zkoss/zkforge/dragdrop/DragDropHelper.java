@@ -0,0 +1,132 @@
+package org.zkoss.zkforge.dragdrop;
+
+import org.zkoss.lang.Library;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.util.Clients;
+import org.zkoss.zkforge.core.*;
+
+import java.util.*;
+
+/**
+ * Static helper class that lets users drop files from their desktop onto a component, based on the browser's
+ * <a href="https://developer.mozilla.org/en-US/docs/Web/API/HTML_Drag_and_Drop_API">Drag and Drop API</a>.
+ *
+ * <p>Unlike ZK's default upload, a dropped file is never buffered in memory. The browser slices each file into chunks
+ * and uploads them in parallel to {@link ChunkUploadExtension}, which streams every chunk straight to a temporary file.
+ * A failed chunk is retried on its own, and chunks rejected because the server is busy are retried later. An upload
+ * interrupted by network or server errors is resumed later by sending only the chunks the server is missing.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>{@code
+ * DragDropHelper.init();
+ * DragDropHelper.enableDrop(dropArea);
+ *
+ * dropArea.addEventListener(DropFilesEvent.EVENT_NAME, (DropFilesEvent event) -> {
+ *     // file names and sizes are available immediately
+ * });
+ * dropArea.addEventListener(UploadProgressEvent.EVENT_NAME, (UploadProgressEvent event) -> {
+ *     if (event.isComplete()) {
+ *         Files.move(event.getPath(), target);
+ *     }
+ * });
+ * }</pre>
+ *
+ * <p>Limits are configured with library properties in zk.xml:</p>
+ * <ul>
+ *     <li>{@value #CHUNK_SIZE}: chunk size in bytes sent by the browser, default 4 MB</li>
+ *     <li>{@value #PARALLEL_CHUNKS}: chunks uploaded in parallel by one drop, default 3</li>
+ *     <li>{@value #MAX_CONCURRENT_CHUNKS_PER_DESKTOP}: chunks received at the same time per desktop, default 4</li>
+ *     <li>{@value #MAX_CONCURRENT_CHUNKS}: chunks received at the same time on this node, default 64</li>
+ *     <li>{@value #MAX_FILE_SIZE}: maximal file size in bytes, default -1 (unlimited)</li>
+ * </ul>
+ */
+public class DragDropHelper {
+    protected static final String DRAG_DROP_HELPER_KEY = "browserkit.dragdrophelper";
+    protected static final String DRAG_DROP_HELPER_JS_PATH = "~./js/DragDropHelper.js";
+    public static final String CHUNK_SIZE = "org.zkoss.zkforge.dragdrop.chunkSize";
+    public static final String PARALLEL_CHUNKS = "org.zkoss.zkforge.dragdrop.parallelChunks";
+    public static final String MAX_CONCURRENT_CHUNKS_PER_DESKTOP = "org.zkoss.zkforge.dragdrop.maxConcurrentChunksPerDesktop";
+    public static final String MAX_CONCURRENT_CHUNKS = "org.zkoss.zkforge.dragdrop.maxConcurrentChunks";
+    public static final String MAX_FILE_SIZE = "org.zkoss.zkforge.dragdrop.maxFileSize";
+    protected static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    protected static final DragDropAuService auService = new DragDropAuService();
+
+    static {
+        BrowserApiHelper.registerCommand(DropFilesEvent.EVENT_NAME, DRAG_DROP_HELPER_KEY, auService);
+        BrowserApiHelper.registerCommand(UploadProgressEvent.EVENT_NAME, DRAG_DROP_HELPER_KEY, auService);
+        BrowserApiHelper.registerResources(DRAG_DROP_HELPER_KEY, new DesktopResources() {
+            @Override
+            public void release(Desktop desktop) {
+                UploadRegistry.close(desktop.getId());
+            }
+
+            @Override
+            public List<String> findAlive(Desktop desktop) {
+                return UploadRegistry.isOpen(desktop.getId())
+                        ? Collections.singletonList("uploads of " + desktop.getId()) : Collections.emptyList();
+            }
+        });
+    }
+
+    /**
+     * Initialize drag-and-drop helper for the current desktop if not already initialized.
+     * You should call this method in a Composer's life cycle method e.g. {@link org.zkoss.zk.ui.util.Composer#doAfterCompose(Component)}.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void init() {
+        if (BrowserApiHelper.init(DRAG_DROP_HELPER_KEY, DRAG_DROP_HELPER_JS_PATH)) {
+            Desktop desktop = Executions.getCurrent().getDesktop();
+            BrowserApiHelper.addAuExtension(desktop.getWebApp(), ChunkUploadExtension.PATH, ChunkUploadExtension::new);
+            UploadRegistry.open(desktop.getId());
+        }
+    }
+
+    /**
+     * Accept files dropped on the target component. The target receives {@link DropFilesEvent} and
+     * {@link UploadProgressEvent}.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void enableDrop(Component target) {
+        if (!BrowserApiHelper.isInitialized(DRAG_DROP_HELPER_KEY)) return;
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        Clients.evalJavaScript("DragDropHelper.enable('" + target.getUuid() + "','"
+                + desktop.getUpdateURI(ChunkUploadExtension.PATH) + "',"
+                + getChunkSize() + "," + Library.getIntProperty(PARALLEL_CHUNKS, 3) + ")");
+    }
+
+    /**
+     * Stop accepting files dropped on the target component. Uploads in progress continue.
+     */
+    public static void disableDrop(Component target) {
+        if (!BrowserApiHelper.isInitialized(DRAG_DROP_HELPER_KEY)) return;
+        Clients.evalJavaScript("DragDropHelper.disable('" + target.getUuid() + "')");
+    }
+
+    /**
+     * Dispose drag-and-drop helper for the current desktop.
+     * Incomplete uploads are aborted and their temporary files deleted.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void dispose() {
+        BrowserApiHelper.dispose(DRAG_DROP_HELPER_KEY);
+    }
+
+    static int getChunkSize() {
+        return Math.min(Library.getIntProperty(CHUNK_SIZE, 4 * 1024 * 1024), MAX_CHUNK_SIZE);
+    }
+
+    static int getMaxConcurrentChunksPerDesktop() {
+        return Library.getIntProperty(MAX_CONCURRENT_CHUNKS_PER_DESKTOP, 4);
+    }
+
+    static int getMaxConcurrentChunks() {
+        return Library.getIntProperty(MAX_CONCURRENT_CHUNKS, 64);
+    }
+
+    static long getMaxFileSize() {
+        return Long.parseLong(Library.getProperty(MAX_FILE_SIZE, "-1"));
+    }
+}
@@ -0,0 +1,39 @@
+package org.zkoss.zkforge.dragdrop;
+
+import com.google.gson.Gson;
+import org.zkoss.zk.au.AuRequest;
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.event.Event;
+
+import java.util.*;
+
+/**
+ * Sent to the drop target as soon as files are dropped, before their content is uploaded.
+ * The upload progress of each file is reported later by {@link UploadProgressEvent}.
+ */
+public class DropFilesEvent extends Event {
+    public static final String EVENT_NAME = "onDropFiles";
+    protected static final Gson GSON = new Gson();
+    private final List<DroppedFile> files;
+
+    public DropFilesEvent(Component target, List<DroppedFile> files) {
+        super(EVENT_NAME, target);
+        this.files = files;
+    }
+
+    /**
+     * Creates the event and lets the desktop accept the chunks of the dropped files, see {@link UploadRegistry}.
+     */
+    public static DropFilesEvent getEvent(AuRequest request) {
+        Object files = request.getData() == null ? null : request.getData().get("files");
+        DroppedFile[] droppedFiles = files == null ? new DroppedFile[0] : GSON.fromJson(GSON.toJson(files), DroppedFile[].class);
+        for (DroppedFile file : droppedFiles) {
+            UploadRegistry.announce(request.getDesktop().getId(), file);
+        }
+        return new DropFilesEvent(request.getComponent(), Arrays.asList(droppedFiles));
+    }
+
+    public List<DroppedFile> getFiles() {
+        return files;
+    }
+}
@@ -0,0 +1,55 @@
+package org.zkoss.zkforge.dragdrop;
+
+/**
+ * Metadata of a file dropped by the user, reported by the browser before any content is uploaded.
+ * See <a href="https://developer.mozilla.org/en-US/docs/Web/API/File">File</a>.
+ */
+public class DroppedFile {
+    protected String fileId;
+    protected String name;
+    protected long size;
+    protected String type;
+    protected long lastModified;
+
+    /**
+     * @return the id identifying this file in {@link UploadProgressEvent}s
+     */
+    public String getFileId() {
+        return fileId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the file size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the MIME type reported by the browser, may be empty
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the last modified time in milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return "DroppedFile{" +
+                "fileId='" + fileId + '\'' +
+                ", name='" + name + '\'' +
+                ", size=" + size +
+                ", type='" + type + '\'' +
+                '}';
+    }
+}
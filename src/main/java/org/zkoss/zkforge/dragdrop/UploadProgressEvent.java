@@ -0,0 +1,80 @@
+package org.zkoss.zkforge.dragdrop;
+
+import org.zkoss.zk.au.AuRequest;
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.event.Event;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Reports the upload progress of a dropped file. The browser sends it periodically while chunks are acknowledged,
+ * and once more when the file completes or fails. The byte counts come from the server-side {@link ChunkedUpload},
+ * not from the browser.
+ *
+ * <p>When {@link #isComplete()} returns true, {@link #getPath()} points to a temporary file holding the whole content.
+ * The application should move or delete it.</p>
+ */
+public class UploadProgressEvent extends Event {
+    public static final String EVENT_NAME = "onUploadProgress";
+    private final String fileId;
+    private final ChunkedUpload upload;
+    private final String error;
+
+    public UploadProgressEvent(Component target, String fileId, ChunkedUpload upload, String error) {
+        super(EVENT_NAME, target);
+        this.fileId = fileId;
+        this.upload = upload;
+        this.error = error;
+    }
+
+    public static UploadProgressEvent getEvent(AuRequest request) {
+        Map<String, Object> data = request.getData();
+        Object id = data == null ? null : data.get("fileId");
+        String fileId = id == null ? null : id.toString();
+        Object error = data == null ? null : data.get("error");
+        String desktopId = request.getDesktop().getId();
+        ChunkedUpload upload = fileId == null ? null : UploadRegistry.get(desktopId, fileId);
+        if (error != null && upload != null) {
+            upload.abort();
+            UploadRegistry.remove(desktopId, fileId);
+        } else if (upload != null && upload.isComplete()) {
+            UploadRegistry.remove(desktopId, fileId);
+        }
+        return new UploadProgressEvent(request.getComponent(), fileId, upload, error == null ? null : error.toString());
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public long getBytesReceived() {
+        return upload == null ? 0 : upload.getBytesReceived();
+    }
+
+    /**
+     * @return the total file size in bytes, or -1 if no chunk has reached the server yet
+     */
+    public long getSize() {
+        return upload == null ? -1 : upload.getSize();
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isComplete() {
+        return isSuccess() && upload != null && upload.isComplete();
+    }
+
+    /**
+     * @return the uploaded file, or null if the upload is not complete
+     */
+    public Path getPath() {
+        return isComplete() ? upload.getPath() : null;
+    }
+}
@@ -0,0 +1,147 @@
+package org.zkoss.zkforge.dragdrop;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Tracks the chunked uploads of every desktop that enabled file dropping, and enforces the concurrency limits.
+ *
+ * <p>The upload endpoint runs outside any ZK execution, so the state is kept here (keyed by desktop id) instead of in
+ * desktop attributes. A desktop accepts chunks only after {@link #open(String)} and until {@link #close(String)}, and
+ * only of the files it {@link #announce(String, DroppedFile) announced} in a {@link DropFilesEvent}, which went through
+ * the desktop's AU request processing; the upload of a file is created on its first chunk.</p>
+ *
+ * <p>Backpressure: a chunk has to acquire a permit from its desktop and one from the node. When either is exhausted
+ * the endpoint rejects the chunk immediately and the client retries it later, so a busy server never queues request
+ * bodies.</p>
+ */
+public class UploadRegistry {
+    private static final Map<String, DesktopUploads> desktops = new ConcurrentHashMap<>();
+    private static final Semaphore nodePermits = new Semaphore(DragDropHelper.getMaxConcurrentChunks());
+
+    public static void open(String desktopId) {
+        desktops.computeIfAbsent(desktopId, id -> new DesktopUploads());
+    }
+
+    public static boolean isOpen(String desktopId) {
+        return desktops.containsKey(desktopId);
+    }
+
+    /**
+     * Stop accepting chunks for the desktop and abort its incomplete uploads.
+     */
+    public static void close(String desktopId) {
+        DesktopUploads uploads = desktops.remove(desktopId);
+        if (uploads != null) {
+            uploads.files.values().forEach(ChunkedUpload::abort);
+            uploads.files.clear();
+            uploads.announced.clear();
+        }
+    }
+
+    /**
+     * Accept the chunks of a dropped file.
+     *
+     * @return false if the desktop doesn't accept uploads, or the file is too large or has too many chunks
+     */
+    static boolean announce(String desktopId, DroppedFile file) {
+        DesktopUploads uploads = desktops.get(desktopId);
+        long maxFileSize = DragDropHelper.getMaxFileSize();
+        if (uploads == null || file.getFileId() == null || file.getSize() < 0
+                || maxFileSize >= 0 && file.getSize() > maxFileSize
+                || ChunkedUpload.getChunkCount(file.getSize(), DragDropHelper.getChunkSize()) > ChunkedUpload.MAX_CHUNK_COUNT) {
+            return false;
+        }
+        uploads.announced.put(file.getFileId(), file);
+        return true;
+    }
+
+    static boolean isAnnounced(String desktopId, String fileId) {
+        DesktopUploads uploads = desktops.get(desktopId);
+        return uploads != null && uploads.announced.containsKey(fileId);
+    }
+
+    /**
+     * @return the upload of the file, or null if no chunk of it was received yet
+     */
+    public static ChunkedUpload get(String desktopId, String fileId) {
+        DesktopUploads uploads = desktops.get(desktopId);
+        return uploads == null ? null : uploads.files.get(fileId);
+    }
+
+    /**
+     * Get or create the upload of an announced file on first chunk, with the announced name and size and the
+     * configured chunk size.
+     *
+     * @return the upload, or null if the desktop doesn't accept uploads or the file was not announced
+     */
+    public static ChunkedUpload getOrCreate(String desktopId, String fileId) throws IOException {
+        DesktopUploads uploads = desktops.get(desktopId);
+        DroppedFile file = uploads == null ? null : uploads.announced.get(fileId);
+        if (file == null) {
+            return null;
+        }
+        ChunkedUpload upload;
+        try {
+            upload = uploads.files.computeIfAbsent(fileId, id -> {
+                try {
+                    return new ChunkedUpload(id, file.getName(), file.getSize(), DragDropHelper.getChunkSize());
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        } catch (CompletionException e) {
+            throw (IOException) e.getCause();
+        }
+        if (desktops.get(desktopId) != uploads) {
+            upload.abort(); // closed meanwhile, after aborting the uploads it knew
+            return null;
+        }
+        return upload;
+    }
+
+    /**
+     * Remove an upload from the registry, e.g. when the application takes over its file.
+     */
+    public static ChunkedUpload remove(String desktopId, String fileId) {
+        DesktopUploads uploads = desktops.get(desktopId);
+        if (uploads == null) {
+            return null;
+        }
+        uploads.announced.remove(fileId);
+        return uploads.files.remove(fileId);
+    }
+
+    /**
+     * Try to reserve a slot for receiving one chunk. Must be paired with {@link #release(String)} when it returns true.
+     *
+     * @return false if the desktop or the node is receiving as many chunks as allowed
+     */
+    static boolean tryAcquire(String desktopId) {
+        DesktopUploads uploads = desktops.get(desktopId);
+        if (uploads == null || !uploads.permits.tryAcquire()) {
+            return false;
+        }
+        if (!nodePermits.tryAcquire()) {
+            uploads.permits.release();
+            return false;
+        }
+        return true;
+    }
+
+    static void release(String desktopId) {
+        nodePermits.release();
+        DesktopUploads uploads = desktops.get(desktopId);
+        if (uploads != null) {
+            uploads.permits.release();
+        }
+    }
+
+    private static class DesktopUploads {
+        private final Map<String, ChunkedUpload> files = new ConcurrentHashMap<>();
+        /** key: file id */
+        private final Map<String, DroppedFile> announced = new ConcurrentHashMap<>();
+        private final Semaphore permits = new Semaphore(DragDropHelper.getMaxConcurrentChunksPerDesktop());
+    }
+}
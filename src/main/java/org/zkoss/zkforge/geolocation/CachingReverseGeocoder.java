@@ -0,0 +1,155 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the answers of another {@link ReverseGeocoder} by geohash cell, since neighboring positions map to the same
+ * place.
+ *
+ * <p>The first lookup in a cell asks the delegate with its exact position and the answer, including "none", is reused
+ * for every position in the cell until it expires. Concurrent lookups in a cell that is not cached wait for the same
+ * delegate call instead of repeating it. The least recently used cells are evicted beyond the maximal size. A failed
+ * lookup is not cached.</p>
+ *
+ * <pre>{@code
+ * ReverseGeocoder geocoder = new CachingReverseGeocoder(new FileReverseGeocoder(gazetteer, 20_000), 6,
+ *         TimeUnit.HOURS.toMillis(1), 100_000);
+ * Place place = geocoder.reverse(coords.getLatitude(), coords.getLongitude());
+ * }</pre>
+ */
+public class CachingReverseGeocoder implements ReverseGeocoder {
+    private final ReverseGeocoder delegate;
+    private final int precision;
+    private final long timeToLive;
+    private final Map<String, CachedPlace> cache;
+    private final Map<String, CompletableFuture<Place>> pending = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param precision the geohash length of a cell, see {@link Geohash}
+     * @param timeToLive how long an answer is reused, in milliseconds
+     * @param maxSize the maximal number of cached cells
+     */
+    public CachingReverseGeocoder(ReverseGeocoder delegate, int precision, long timeToLive, int maxSize) {
+        if (precision < 1 || precision > Geohash.MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between 1 and " + Geohash.MAX_PRECISION + ": " + precision);
+        }
+        this.delegate = delegate;
+        this.precision = precision;
+        this.timeToLive = timeToLive;
+        this.cache = new LinkedHashMap<String, CachedPlace>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPlace> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public Place reverse(double latitude, double longitude) throws IOException {
+        String cell = Geohash.encode(latitude, longitude, precision);
+        CachedPlace cached = getCached(cell);
+        if (cached != null) {
+            hits.increment();
+            return cached.place;
+        }
+        CompletableFuture<Place> lookup = new CompletableFuture<>();
+        CompletableFuture<Place> current = pending.putIfAbsent(cell, lookup);
+        if (current != null) {
+            coalesced.increment();
+            return await(current);
+        }
+        try {
+            // another lookup may have cached the cell and left pending between the first check and putIfAbsent
+            cached = getCached(cell);
+            if (cached != null) {
+                hits.increment();
+                lookup.complete(cached.place);
+                return cached.place;
+            }
+            misses.increment();
+            Place place = delegate.reverse(latitude, longitude);
+            synchronized (cache) {
+                cache.put(cell, new CachedPlace(place, System.currentTimeMillis() + timeToLive));
+            }
+            lookup.complete(place);
+            return place;
+        } catch (IOException | RuntimeException | Error e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            // a lookup that arrives after this removal misses pending, it hits the cache on its re-check instead
+            pending.remove(cell, lookup);
+        }
+    }
+
+    /**
+     * @return the unexpired answer for the cell, or null if there is none
+     */
+    private CachedPlace getCached(String cell) {
+        CachedPlace cached;
+        synchronized (cache) {
+            cached = cache.get(cell);
+        }
+        return cached != null && cached.expiresAt > System.currentTimeMillis() ? cached : null;
+    }
+
+    private static Place await(CompletableFuture<Place> lookup) throws IOException {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw new IOException(cause.getMessage(), cause);
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw (Error) cause; // the delegate only throws IOException or unchecked exceptions
+        }
+    }
+
+    /**
+     * Remove all cached answers.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that called the delegate
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of lookups that waited for the delegate call of another lookup in the same cell
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    private static class CachedPlace {
+        private final Place place;
+        private final long expiresAt;
+
+        private CachedPlace(Place place, long expiresAt) {
+            this.place = place;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.zkoss.zkforge.geolocation;
+
+/**
+ * A geofence within a radius around a center.
+ */
+public class CircleGeofence extends Geofence {
+    protected static final double METERS_PER_DEGREE = Math.PI * GeoDistance.EARTH_RADIUS / 180;
+    private final double latitude;
+    private final double longitude;
+    private final double radius;
+    // precomputed for the haversine formula
+    private final double latitudeRadians;
+    private final double longitudeRadians;
+    private final double cosLatitude;
+
+    /**
+     * @param radius the radius in meters
+     */
+    public CircleGeofence(String id, double latitude, double longitude, double radius) {
+        super(id);
+        if (radius < 0) throw new IllegalArgumentException("radius must not be negative: " + radius);
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radius = radius;
+        this.latitudeRadians = Math.toRadians(latitude);
+        this.longitudeRadians = Math.toRadians(longitude);
+        this.cosLatitude = Math.cos(latitudeRadians);
+        double latitudeDelta = radius / METERS_PER_DEGREE;
+        double longitudeDelta = cosLatitude > 1e-9 ? Math.min(180, latitudeDelta / cosLatitude) : 180;
+        minLatitude = Math.max(-90, latitude - latitudeDelta);
+        maxLatitude = Math.min(90, latitude + latitudeDelta);
+        minLongitude = Math.max(-180, longitude - longitudeDelta);
+        maxLongitude = Math.min(180, longitude + longitudeDelta);
+    }
+
+    @Override
+    public boolean contains(double latitude, double longitude) {
+        if (!isInBounds(latitude, longitude)) return false;
+        double phi = Math.toRadians(latitude);
+        double sinHalfLatitude = Math.sin((phi - latitudeRadians) / 2);
+        double sinHalfLongitude = Math.sin((Math.toRadians(longitude) - longitudeRadians) / 2);
+        double a = sinHalfLatitude * sinHalfLatitude
+                + cosLatitude * Math.cos(phi) * sinHalfLongitude * sinHalfLongitude;
+        return 2 * GeoDistance.EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a))) <= radius;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return the radius in meters
+     */
+    public double getRadius() {
+        return radius;
+    }
+}
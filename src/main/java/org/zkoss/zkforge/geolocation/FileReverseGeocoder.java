@@ -0,0 +1,105 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * A {@link ReverseGeocoder} returning the nearest place of a gazetteer file, without network access.
+ *
+ * <p>The file is UTF-8 CSV with one place per line: {@code name,region,country,latitude,longitude}. Empty lines and
+ * lines starting with {@code #} are ignored; region and country may be empty. The places are kept sorted by latitude,
+ * so a lookup only measures the places within the maximal distance north and south of the position.</p>
+ */
+public class FileReverseGeocoder implements ReverseGeocoder {
+    private final Place[] places;
+    private final double[] latitudes;
+    private final double maxDistance;
+
+    /**
+     * @param maxDistance the maximal distance in meters to the nearest place, farther places are not returned
+     */
+    public FileReverseGeocoder(Path file, double maxDistance) throws IOException {
+        this(Files.newBufferedReader(file, StandardCharsets.UTF_8), maxDistance);
+    }
+
+    /**
+     * @param reader the gazetteer content, closed after reading
+     * @param maxDistance the maximal distance in meters to the nearest place, farther places are not returned
+     */
+    public FileReverseGeocoder(Reader reader, double maxDistance) throws IOException {
+        this.maxDistance = maxDistance;
+        List<Place> list = new ArrayList<>();
+        try (BufferedReader lines = new BufferedReader(reader)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                list.add(parse(line, lineNumber));
+            }
+        }
+        list.sort(Comparator.comparingDouble(Place::getLatitude));
+        places = list.toArray(new Place[0]);
+        latitudes = new double[places.length];
+        for (int i = 0; i < places.length; i++) {
+            latitudes[i] = places[i].getLatitude();
+        }
+    }
+
+    private static Place parse(String line, int lineNumber) throws IOException {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 5) {
+            throw new IOException("Line " + lineNumber + ": expected 5 fields, found " + fields.length);
+        }
+        try {
+            return new Place(fields[0].trim(), emptyToNull(fields[1]), emptyToNull(fields[2]),
+                    Double.parseDouble(fields[3].trim()), Double.parseDouble(fields[4].trim()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + lineNumber + ": invalid coordinates", e);
+        }
+    }
+
+    private static String emptyToNull(String field) {
+        field = field.trim();
+        return field.isEmpty() ? null : field;
+    }
+
+    @Override
+    public Place reverse(double latitude, double longitude) {
+        double band = Math.toDegrees(maxDistance / GeoDistance.EARTH_RADIUS);
+        int from = lowerBound(latitude - band);
+        Place nearest = null;
+        double nearestDistance = maxDistance;
+        for (int i = from; i < places.length && latitudes[i] <= latitude + band; i++) {
+            double distance = GeoDistance.distance(latitude, longitude, latitudes[i], places[i].getLongitude());
+            if (distance <= nearestDistance) {
+                nearest = places[i];
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @return the index of the first place at or north of the latitude
+     */
+    private int lowerBound(double latitude) {
+        int low = 0, high = latitudes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (latitudes[middle] < latitude) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public int size() {
+        return places.length;
+    }
+}
@@ -0,0 +1,178 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Computes great-circle (haversine) distances from one position to many candidates, e.g. stores around a user.
+ *
+ * <p>The candidates are stored as arrays of radians with their latitude cosines precomputed, so the loop over them
+ * only calls {@code sin} twice, {@code sqrt} and {@code asin} per candidate. Above {@link #getParallelThreshold()}
+ * candidates (default {@value #DEFAULT_PARALLEL_THRESHOLD}), the work is split across the common fork-join pool.
+ * Instances are immutable and thread-safe.</p>
+ *
+ * <pre>{@code
+ * GeoDistance candidates = GeoDistance.of(stores, Store::getLatitude, Store::getLongitude);
+ * double[] meters = candidates.distances(coords.getLatitude(), coords.getLongitude());
+ * }</pre>
+ */
+public class GeoDistance {
+    /** mean earth radius in meters */
+    public static final double EARTH_RADIUS = 6_371_000;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+    /** the number of candidates computed by one fork-join task */
+    protected static final int PARALLEL_CHUNK = 1 << 13;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cosLatitudes;
+    private final int parallelThreshold;
+
+    /**
+     * @param latitudes the candidates' latitudes in degrees
+     * @param longitudes the candidates' longitudes in degrees, in the same order
+     */
+    public GeoDistance(double[] latitudes, double[] longitudes) {
+        this(latitudes, longitudes, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallelThreshold the minimal number of candidates computed in parallel, e.g.
+     *                          {@link Integer#MAX_VALUE} to always compute on the calling thread
+     */
+    public GeoDistance(double[] latitudes, double[] longitudes, int parallelThreshold) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("latitudes and longitudes differ in length");
+        }
+        int size = latitudes.length;
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.cosLatitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            this.latitudes[i] = Math.toRadians(latitudes[i]);
+            this.longitudes[i] = Math.toRadians(longitudes[i]);
+            this.cosLatitudes[i] = Math.cos(this.latitudes[i]);
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @return the candidates of the items, in iteration order
+     */
+    public static <T> GeoDistance of(Collection<T> items, ToDoubleFunction<? super T> latitude,
+                                     ToDoubleFunction<? super T> longitude) {
+        double[] latitudes = new double[items.size()];
+        double[] longitudes = new double[items.size()];
+        int i = 0;
+        for (T item : items) {
+            latitudes[i] = latitude.applyAsDouble(item);
+            longitudes[i++] = longitude.applyAsDouble(item);
+        }
+        return new GeoDistance(latitudes, longitudes);
+    }
+
+    /**
+     * @return the distance in meters between two positions given in degrees
+     */
+    public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        return haversine(phi1, Math.toRadians(longitude1), Math.cos(phi1),
+                phi2, Math.toRadians(longitude2), Math.cos(phi2));
+    }
+
+    private static double haversine(double phi1, double lambda1, double cosPhi1,
+                                    double phi2, double lambda2, double cosPhi2) {
+        double sinHalfLatitude = Math.sin((phi2 - phi1) / 2);
+        double sinHalfLongitude = Math.sin((lambda2 - lambda1) / 2);
+        double a = sinHalfLatitude * sinHalfLatitude + cosPhi1 * cosPhi2 * sinHalfLongitude * sinHalfLongitude;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    /**
+     * @return the distance in meters from the position to the candidate at the index
+     */
+    public double distance(int index, double latitude, double longitude) {
+        double phi = Math.toRadians(latitude);
+        return haversine(phi, Math.toRadians(longitude), Math.cos(phi),
+                latitudes[index], longitudes[index], cosLatitudes[index]);
+    }
+
+    /**
+     * @return the distances in meters from the position to each candidate, in the candidates' order
+     */
+    public double[] distances(double latitude, double longitude) {
+        double[] result = new double[size()];
+        distances(latitude, longitude, result);
+        return result;
+    }
+
+    /**
+     * Write the distances in meters from the position to each candidate into the result, e.g. to reuse an array.
+     *
+     * @param result an array at least as long as {@link #size()}
+     */
+    public void distances(double latitude, double longitude, double[] result) {
+        if (result.length < size()) {
+            throw new IllegalArgumentException("result is shorter than the candidates: " + result.length);
+        }
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double cosPhi = Math.cos(phi);
+        if (size() < parallelThreshold) {
+            compute(phi, lambda, cosPhi, result, 0, size());
+        } else {
+            ForkJoinPool.commonPool().invoke(new DistanceTask(phi, lambda, cosPhi, result, 0, size()));
+        }
+    }
+
+    private void compute(double phi, double lambda, double cosPhi, double[] result, int from, int to) {
+        double[] latitudes = this.latitudes;
+        double[] longitudes = this.longitudes;
+        double[] cosLatitudes = this.cosLatitudes;
+        for (int i = from; i < to; i++) {
+            double sinHalfLatitude = Math.sin((latitudes[i] - phi) / 2);
+            double sinHalfLongitude = Math.sin((longitudes[i] - lambda) / 2);
+            double a = sinHalfLatitude * sinHalfLatitude + cosPhi * cosLatitudes[i] * sinHalfLongitude * sinHalfLongitude;
+            result[i] = 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+        }
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    private class DistanceTask extends RecursiveAction {
+        private final double phi;
+        private final double lambda;
+        private final double cosPhi;
+        private final double[] result;
+        private final int from;
+        private final int to;
+
+        private DistanceTask(double phi, double lambda, double cosPhi, double[] result, int from, int to) {
+            this.phi = phi;
+            this.lambda = lambda;
+            this.cosPhi = cosPhi;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                GeoDistance.this.compute(phi, lambda, cosPhi, result, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DistanceTask(phi, lambda, cosPhi, result, from, middle),
+                    new DistanceTask(phi, lambda, cosPhi, result, middle, to));
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package org.zkoss.zkforge.geolocation;
 
 import org.zkoss.zk.au.*;
-import org.zkoss.zk.ui.event.Events;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.event.*;
+import org.zkoss.zkforge.core.AsyncEventDecoder;
+
+import java.util.*;
+import java.util.function.Function;
 
 public class GeoLocationAuService implements AuService {
 
@@ -9,11 +14,82 @@ public class GeoLocationAuService implements AuService {
     public boolean service(AuRequest request, boolean everError) {
         final String cmd = request.getCommand();
         if (GeolocationEvent.EVENT_NAME.equals(cmd)) {
-            GeolocationEvent event = GeolocationEvent.getEvent(request);
-            Events.postEvent(event);
+            Desktop desktop = request.getDesktop();
+            PositionCache cache = GeolocationHelper.getPositionCache(desktop);
+            PositionFilter filter = GeolocationHelper.getPositionFilter(desktop);
+            GeofenceWatcher watcher = GeolocationHelper.getGeofenceWatcher(desktop);
+            AsyncEventDecoder.postAll(request, (data, target) -> getEvents(data, target, cache, filter, watcher));
+            return true; // Handled - stop further processing
+        }
+        if (GeolocationEvent.SHARED_EVENT_NAME.equals(cmd)) {
+            Desktop desktop = request.getDesktop();
+            SharedPositionStream stream = desktop.getSession() == null ? null
+                    : SharedPositionStream.get(desktop.getSession(), false);
+            if (stream != null) {
+                Function<Map<String, Object>, List<Event>> localPipeline = stream.isSubscribed(desktop)
+                        ? getPipeline(desktop, stream.getTarget(desktop)) : null;
+                AsyncEventDecoder.postAll(request, (data, target) -> stream.fanOut(data, desktop, localPipeline));
+            }
             return true; // Handled - stop further processing
         }
 
         return false; // Not handled - continue to next handler
     }
+
+    /**
+     * Answer a position request rejected by {@link org.zkoss.zkforge.core.AdmissionControl} with a
+     * {@link GeolocationPositionError#POSITION_UNAVAILABLE} error.
+     */
+    static void reject(AuRequest request) {
+        GeolocationEvent event = new GeolocationEvent(new GeolocationPositionError(
+                GeolocationPositionError.POSITION_UNAVAILABLE, "Too many geolocation requests"), request.getComponent());
+        Object watchId = request.getData() == null ? null : request.getData().get("watchId");
+        event.watchId = watchId == null ? null : watchId.toString();
+        Events.postEvent(event);
+    }
+
+    /**
+     * @return turns the data of a fix into the desktop's events with its current cache, filter and geofences, called
+     * in the desktop's execution
+     */
+    static Function<Map<String, Object>, List<Event>> getPipeline(Desktop desktop, Component target) {
+        PositionCache cache = GeolocationHelper.getPositionCache(desktop);
+        PositionFilter filter = GeolocationHelper.getPositionFilter(desktop);
+        GeofenceWatcher watcher = GeolocationHelper.getGeofenceWatcher(desktop);
+        return data -> getEvents(data, target, cache, filter, watcher);
+    }
+
+    /**
+     * @param target the component receiving the geolocation event, or null to broadcast to the desktop
+     * @param cache remembers the raw position, or null
+     * @param filter smooths the position, or null
+     * @param watcher checks the position against geofences, or null
+     * @return the geolocation event followed by the geofence events it causes, or nothing if the filter suppressed it
+     */
+    static List<Event> getEvents(Map<String, Object> data, Component target, PositionCache cache,
+                                 PositionFilter filter, GeofenceWatcher watcher) {
+        GeolocationEvent event = GeolocationEvent.getEvent(data, target);
+        if (!event.isSuccess()) {
+            return Collections.singletonList(event);
+        }
+        GeolocationPosition position = event.getGeoLocationPosition();
+        if (cache != null) {
+            cache.update(position);
+        }
+        if (filter != null) {
+            position = filter.filter(position);
+            if (position == null) {
+                return Collections.emptyList();
+            }
+            String watchId = event.getWatchId();
+            event = new GeolocationEvent(position, target);
+            event.watchId = watchId;
+        }
+        List<Event> events = new ArrayList<>();
+        events.add(event);
+        if (watcher != null) {
+            events.addAll(watcher.update(position));
+        }
+        return events;
+    }
 }
\ No newline at end of file
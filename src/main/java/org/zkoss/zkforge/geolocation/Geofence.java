@@ -0,0 +1,49 @@
+package org.zkoss.zkforge.geolocation;
+
+/**
+ * A region on the earth that a {@link GeofenceWatcher} reports entering and leaving.
+ * Each geofence has a bounding box that {@link GeofenceRegistry} uses to index it.
+ * Regions crossing the antimeridian (longitude ±180) are not supported.
+ */
+public abstract class Geofence {
+    protected final String id;
+    protected double minLatitude;
+    protected double maxLatitude;
+    protected double minLongitude;
+    protected double maxLongitude;
+
+    protected Geofence(String id) {
+        if (id == null) throw new IllegalArgumentException("id is required");
+        this.id = id;
+    }
+
+    /**
+     * @return true if the position is inside the region
+     */
+    public abstract boolean contains(double latitude, double longitude);
+
+    protected boolean isInBounds(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+}
@@ -0,0 +1,40 @@
+package org.zkoss.zkforge.geolocation;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.event.Event;
+
+/**
+ * Notifies that the user's position entered ({@link #ENTER}) or left ({@link #EXIT}) a geofence,
+ * see {@link GeofenceWatcher}.
+ */
+public class GeofenceEvent extends Event {
+    public static final String ENTER = "onGeofenceEnter";
+    public static final String EXIT = "onGeofenceExit";
+    private final Geofence geofence;
+    private final GeolocationPosition position;
+
+    /**
+     * @param name {@link #ENTER} or {@link #EXIT}
+     * @param target the target component, or null to broadcast to the desktop
+     */
+    public GeofenceEvent(String name, Component target, Geofence geofence, GeolocationPosition position) {
+        super(name, target);
+        this.geofence = geofence;
+        this.position = position;
+    }
+
+    public boolean isEnter() {
+        return ENTER.equals(getName());
+    }
+
+    public Geofence getGeofence() {
+        return geofence;
+    }
+
+    /**
+     * @return the position that crossed the geofence's border
+     */
+    public GeolocationPosition getPosition() {
+        return position;
+    }
+}
@@ -0,0 +1,178 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe set of geofences, indexed by a uniform grid for fast lookup by position.
+ *
+ * <p>Each geofence is added to every grid cell its bounding box overlaps, so finding the candidates for a position is
+ * a single map lookup returning the fences of its cell. Geofences covering more than {@value #MAX_CELLS_PER_FENCE}
+ * cells are kept in a separate list checked for every position. Choose a cell size close to the typical geofence
+ * size, e.g. 0.01 degrees (about 1 km) for sites.</p>
+ *
+ * <p>Cells hold immutable arrays replaced on change, so lookups never lock and are cheap for many concurrent
+ * {@link GeofenceWatcher}s; adding or removing fences is comparatively expensive.</p>
+ */
+public class GeofenceRegistry {
+    public static final double DEFAULT_CELL_SIZE = 0.01;
+    protected static final int MAX_CELLS_PER_FENCE = 1024;
+    private static final Geofence[] EMPTY = new Geofence[0];
+    private final double cellSize;
+    private final Map<String, Geofence> fences = new ConcurrentHashMap<>();
+    private final Map<Long, Geofence[]> cells = new ConcurrentHashMap<>();
+    private volatile Geofence[] oversized = EMPTY;
+    /** incremented on every change, lets watchers reuse the candidates of their cell */
+    private volatile long version;
+
+    public GeofenceRegistry() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param cellSize the grid cell size in degrees
+     */
+    public GeofenceRegistry(double cellSize) {
+        if (!(cellSize > 0)) throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Add a geofence, replacing the one with the same id.
+     */
+    public synchronized void add(Geofence fence) {
+        Geofence previous = fences.put(fence.getId(), fence);
+        if (previous != null) {
+            unindex(previous);
+        }
+        int minRow = row(fence.getMinLatitude()), maxRow = row(fence.getMaxLatitude());
+        int minColumn = column(fence.getMinLongitude()), maxColumn = column(fence.getMaxLongitude());
+        if ((long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1) > MAX_CELLS_PER_FENCE) {
+            oversized = append(oversized, fence);
+        } else {
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int column = minColumn; column <= maxColumn; column++) {
+                    cells.merge(key(row, column), new Geofence[]{fence}, GeofenceRegistry::concat);
+                }
+            }
+        }
+        version++;
+    }
+
+    /**
+     * @return the removed geofence, or null if none has the id
+     */
+    public synchronized Geofence remove(String id) {
+        Geofence fence = fences.remove(id);
+        if (fence != null) {
+            unindex(fence);
+            version++;
+        }
+        return fence;
+    }
+
+    private void unindex(Geofence fence) {
+        oversized = without(oversized, fence);
+        int minRow = row(fence.getMinLatitude()), maxRow = row(fence.getMaxLatitude());
+        int minColumn = column(fence.getMinLongitude()), maxColumn = column(fence.getMaxLongitude());
+        if ((long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1) > MAX_CELLS_PER_FENCE) {
+            return;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                cells.computeIfPresent(key(row, column), (key, cell) -> {
+                    Geofence[] rest = without(cell, fence);
+                    return rest.length == 0 ? null : rest;
+                });
+            }
+        }
+    }
+
+    public Geofence get(String id) {
+        return fences.get(id);
+    }
+
+    /**
+     * @return true if this exact geofence instance is registered
+     */
+    public boolean contains(Geofence fence) {
+        return fences.get(fence.getId()) == fence;
+    }
+
+    public Collection<Geofence> getAll() {
+        return Collections.unmodifiableCollection(fences.values());
+    }
+
+    public int size() {
+        return fences.size();
+    }
+
+    /**
+     * @return the geofences containing the position
+     */
+    public List<Geofence> findContaining(double latitude, double longitude) {
+        List<Geofence> result = new ArrayList<>();
+        for (Geofence fence : getCandidates(cellKey(latitude, longitude))) {
+            if (fence.contains(latitude, longitude)) result.add(fence);
+        }
+        for (Geofence fence : oversized) {
+            if (fence.contains(latitude, longitude)) result.add(fence);
+        }
+        return result;
+    }
+
+    /**
+     * @return the geofences of the grid cell, they may or may not contain a position in the cell; never modified
+     */
+    Geofence[] getCandidates(long cellKey) {
+        return cells.getOrDefault(cellKey, EMPTY);
+    }
+
+    Geofence[] getOversized() {
+        return oversized;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    long cellKey(double latitude, double longitude) {
+        return key(row(latitude), column(longitude));
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellSize);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor(longitude / cellSize);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private static Geofence[] append(Geofence[] fences, Geofence fence) {
+        Geofence[] result = Arrays.copyOf(fences, fences.length + 1);
+        result[fences.length] = fence;
+        return result;
+    }
+
+    private static Geofence[] concat(Geofence[] fences, Geofence[] more) {
+        Geofence[] result = Arrays.copyOf(fences, fences.length + more.length);
+        System.arraycopy(more, 0, result, fences.length, more.length);
+        return result;
+    }
+
+    private static Geofence[] without(Geofence[] fences, Geofence fence) {
+        for (int i = 0; i < fences.length; i++) {
+            if (fences[i] == fence) {
+                Geofence[] result = new Geofence[fences.length - 1];
+                System.arraycopy(fences, 0, result, 0, i);
+                System.arraycopy(fences, i + 1, result, i, fences.length - i - 1);
+                return result;
+            }
+        }
+        return fences;
+    }
+}
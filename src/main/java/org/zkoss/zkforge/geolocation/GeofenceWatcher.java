@@ -0,0 +1,95 @@
+package org.zkoss.zkforge.geolocation;
+
+import org.zkoss.zk.ui.Component;
+
+import java.util.*;
+
+/**
+ * Tracks which geofences of a {@link GeofenceRegistry} contain one moving position, e.g. a user's location.
+ *
+ * <p>Each update only tests the fences of the position's grid cell plus the fences the position was inside before;
+ * the candidates of the previous cell are reused while the position stays in it and the registry is unchanged.
+ * Geofences removed from the registry are forgotten without an exit event.</p>
+ *
+ * <p>{@link GeolocationHelper#watchGeofences(GeofenceRegistry, Component)} creates a watcher per desktop and posts
+ * its events; use a watcher directly to track positions from other sources.</p>
+ *
+ * <p>A watcher is not serializable, since it refers to a registry usually shared by all desktops; it is left out when
+ * ZK replicates the desktop.</p>
+ */
+public class GeofenceWatcher {
+    private final GeofenceRegistry registry;
+    private final Component target;
+    private final Set<Geofence> inside = new HashSet<>();
+    private long cellKey;
+    private long version = -1;
+    private Geofence[] candidates;
+
+    /**
+     * @param target the component receiving the events, or null to broadcast to the desktop
+     */
+    public GeofenceWatcher(GeofenceRegistry registry, Component target) {
+        this.registry = registry;
+        this.target = target;
+    }
+
+    /**
+     * Move the tracked position. Thread-safe; updates are applied in the order of the calls.
+     *
+     * @return the enter and exit events caused by the move, empty if none
+     */
+    public synchronized List<GeofenceEvent> update(GeolocationPosition position) {
+        GeolocationCoordinates coords = position.getCoords();
+        double latitude = coords.getLatitude();
+        double longitude = coords.getLongitude();
+        long key = registry.cellKey(latitude, longitude);
+        long currentVersion = registry.getVersion();
+        if (candidates == null || key != cellKey || currentVersion != version) {
+            candidates = registry.getCandidates(key);
+            cellKey = key;
+            version = currentVersion;
+        }
+        List<GeofenceEvent> events = Collections.emptyList();
+        for (Iterator<Geofence> iterator = inside.iterator(); iterator.hasNext(); ) {
+            Geofence fence = iterator.next();
+            if (!registry.contains(fence)) {
+                iterator.remove();
+            } else if (!fence.contains(latitude, longitude)) {
+                iterator.remove();
+                events = add(events, new GeofenceEvent(GeofenceEvent.EXIT, target, fence, position));
+            }
+        }
+        events = enter(candidates, latitude, longitude, position, events);
+        return enter(registry.getOversized(), latitude, longitude, position, events);
+    }
+
+    private List<GeofenceEvent> enter(Geofence[] fences, double latitude, double longitude,
+                                      GeolocationPosition position, List<GeofenceEvent> events) {
+        for (Geofence fence : fences) {
+            if (!inside.contains(fence) && fence.contains(latitude, longitude)) {
+                inside.add(fence);
+                events = add(events, new GeofenceEvent(GeofenceEvent.ENTER, target, fence, position));
+            }
+        }
+        return events;
+    }
+
+    private static List<GeofenceEvent> add(List<GeofenceEvent> events, GeofenceEvent event) {
+        if (events.isEmpty()) {
+            events = new ArrayList<>(2);
+        }
+        events.add(event);
+        return events;
+    }
+
+    /**
+     * @return the geofences containing the last position
+     */
+    public synchronized Set<Geofence> getInside() {
+        return new HashSet<>(inside);
+    }
+
+    public GeofenceRegistry getRegistry() {
+        return registry;
+    }
+}
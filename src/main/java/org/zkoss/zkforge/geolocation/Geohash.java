@@ -0,0 +1,50 @@
+package org.zkoss.zkforge.geolocation;
+
+/**
+ * Encodes positions as <a href="https://en.wikipedia.org/wiki/Geohash">geohashes</a>. Positions in the same cell
+ * share the geohash; each character narrows the cell, e.g. 5 characters are about 4.9 km wide, 7 about 150 m and
+ * 9 about 5 m.
+ */
+public class Geohash {
+    public static final int MAX_PRECISION = 12;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    /**
+     * @param precision the number of characters, 1 to {@value #MAX_PRECISION}
+     * @return the geohash of the cell containing the position
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between 1 and " + MAX_PRECISION + ": " + precision);
+        }
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+        char[] hash = new char[precision];
+        boolean isLongitude = true;
+        for (int i = 0; i < precision; i++) {
+            int index = 0;
+            for (int bit = 4; bit >= 0; bit--) {
+                if (isLongitude) {
+                    double middle = (minLongitude + maxLongitude) / 2;
+                    if (longitude >= middle) {
+                        index |= 1 << bit;
+                        minLongitude = middle;
+                    } else {
+                        maxLongitude = middle;
+                    }
+                } else {
+                    double middle = (minLatitude + maxLatitude) / 2;
+                    if (latitude >= middle) {
+                        index |= 1 << bit;
+                        minLatitude = middle;
+                    } else {
+                        maxLatitude = middle;
+                    }
+                }
+                isLongitude = !isLongitude;
+            }
+            hash[i] = BASE32[index];
+        }
+        return new String(hash);
+    }
+}
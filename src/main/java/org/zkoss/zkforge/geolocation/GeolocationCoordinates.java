@@ -1,10 +1,14 @@
 package org.zkoss.zkforge.geolocation;
 
+import java.io.*;
+
 /**
  * a java representation of GeolocationCoordinates, https://developer.mozilla.org/en-US/docs/Web/API/GeolocationCoordinates
  * make all fields protected to allow extension for js api evolution.
+ * A subclass adding fields writes them after calling {@code super.writeExternal(out)}.
  */
-public class GeolocationCoordinates {
+public class GeolocationCoordinates implements Externalizable {
+    private static final long serialVersionUID = 1L;
     protected double latitude;
     protected double longitude;
     protected double altitude;
@@ -49,6 +53,28 @@ public class GeolocationCoordinates {
         return speed;
     }
 
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeDouble(latitude);
+        out.writeDouble(longitude);
+        out.writeDouble(altitude);
+        out.writeDouble(accuracy);
+        out.writeDouble(altitudeAccuracy);
+        out.writeDouble(heading);
+        out.writeDouble(speed);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        latitude = in.readDouble();
+        longitude = in.readDouble();
+        altitude = in.readDouble();
+        accuracy = in.readDouble();
+        altitudeAccuracy = in.readDouble();
+        heading = in.readDouble();
+        speed = in.readDouble();
+    }
+
     @Override
     public String toString() {
         return "GeoLocationCoordinates{" +
@@ -2,47 +2,107 @@ package org.zkoss.zkforge.geolocation;
 
 import com.google.gson.Gson;
 import org.zkoss.zk.au.AuRequest;
+import org.zkoss.zk.ui.Component;
 import org.zkoss.zk.ui.event.Event;
 
 import java.util.Map;
 
 public class GeolocationEvent extends Event {
     public static final String EVENT_NAME = "onGetLocation";
+    /** the AU command of the fixes sent by the leader tab of a shared watch */
+    public static final String SHARED_EVENT_NAME = "onSharedLocation";
     protected GeolocationPosition geoLocationPosition;
     protected GeolocationPositionError geoLocationPositionError;
+    protected String watchId;
+    /** binds positions and errors only when {@link PositionReader} can't read them */
     protected static final Gson GSON = new Gson();
 
     public GeolocationEvent(GeolocationPosition geolocationPosition) {
         // null target indicates the event is sent to all root components
-        super(EVENT_NAME, null);
+        this(geolocationPosition, null);
+    }
+
+    /**
+     * @param target the component receiving the event, or null to broadcast to the desktop
+     */
+    public GeolocationEvent(GeolocationPosition geolocationPosition, Component target) {
+        super(EVENT_NAME, target);
         this.geoLocationPosition = geolocationPosition;
     }
 
     public GeolocationEvent(GeolocationPositionError geolocationPositionError) {
-        super(EVENT_NAME, null);
+        this(geolocationPositionError, null);
+    }
+
+    /**
+     * @param target the component receiving the event, or null to broadcast to the desktop
+     */
+    public GeolocationEvent(GeolocationPositionError geolocationPositionError, Component target) {
+        super(EVENT_NAME, target);
         this.geoLocationPositionError = geolocationPositionError;
     }
 
     public static GeolocationEvent getEvent(AuRequest request) {
+        return getEvent(request.getData(), request.getComponent());
+    }
+
+    /**
+     * Creates the event from the AU request data. It may run outside the desktop's execution,
+     * see {@link org.zkoss.zkforge.core.AsyncEventDecoder}.
+     */
+    public static GeolocationEvent getEvent(Map<String, Object> data) {
+        return getEvent(data, null);
+    }
+
+    /**
+     * Creates the event from the AU request data. It may run outside the desktop's execution,
+     * see {@link org.zkoss.zkforge.core.AsyncEventDecoder}.
+     *
+     * @param target the component receiving the event, or null to broadcast to the desktop
+     */
+    public static GeolocationEvent getEvent(Map<String, Object> data, Component target) {
         GeolocationEvent event = null;
-        Map<String, Object> data = request.getData();
         if (isSuccess(data)){
-            event = new GeolocationEvent(parsePosition(data));
+            event = new GeolocationEvent(parsePosition(data), target);
         }else{
-            event = new GeolocationEvent(parseError(data));
+            event = new GeolocationEvent(parseError(data), target);
         }
+        event.watchId = (String) data.get("watchId");
         return event;
     }
 
     protected static boolean isSuccess(Map data) {
-        return data.get("position")!=null;
+        return data.get(PositionCodec.PACKED) != null || data.get("position") != null;
     }
+
+    /**
+     * Reads the position packed in binary, see {@link GeolocationHelper#BINARY_ENCODING}, or sent as a JSON string.
+     */
     protected static GeolocationPosition parsePosition(Map data) {
-        return GSON.fromJson(data.get("position").toString(), GeolocationPosition.class);
+        Object packed = data.get(PositionCodec.PACKED);
+        if (packed != null) {
+            return PositionCodec.decode(packed.toString());
+        }
+        String json = data.get("position").toString();
+        try {
+            return PositionReader.readPosition(json);
+        } catch (IllegalArgumentException e) {
+            return GSON.fromJson(json, GeolocationPosition.class);
+        }
     }
 
+    /**
+     * Reads the error sent as an object, or as a JSON string.
+     */
     protected static GeolocationPositionError parseError(Map data) {
-        return GSON.fromJson(data.get("error").toString(), GeolocationPositionError.class);
+        Object error = data.get("error");
+        try {
+            return error instanceof Map ? PositionReader.readError((Map<?, ?>) error)
+                    : PositionReader.readError(error.toString());
+        } catch (IllegalArgumentException e) {
+            return GSON.fromJson(error instanceof Map ? GSON.toJson(error) : error.toString(),
+                    GeolocationPositionError.class);
+        }
     }
 
     public boolean isSuccess() {
@@ -56,4 +116,12 @@ public class GeolocationEvent extends Event {
     public GeolocationPositionError getGeoLocationPositionError() {
         return geoLocationPositionError;
     }
+
+    /**
+     * @return the id returned by {@link GeolocationHelper#watchPosition(Component, PositionOptions)} if the event
+     * comes from a watch, otherwise null
+     */
+    public String getWatchId() {
+        return watchId;
+    }
 }
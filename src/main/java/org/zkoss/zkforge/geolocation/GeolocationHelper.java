@@ -1,11 +1,16 @@
 package org.zkoss.zkforge.geolocation;
 
+import org.zkoss.lang.Library;
 import org.zkoss.zk.ui.*;
-import org.zkoss.zk.ui.select.Selectors;
+import org.zkoss.zk.ui.event.Events;
 import org.zkoss.zk.ui.util.Clients;
-import org.zkoss.zul.*;
+import org.zkoss.zkforge.core.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Static helper class that provides Java access to the browser's Geolocation API.
@@ -22,15 +27,47 @@ import java.util.Optional;
  * GeolocationHelper.getCurrentPosition();
  * </pre>
  *
- * <p>Results are delivered asynchronously via {@link GeolocationEvent} posted to the desktop.
+ * <p>Results are delivered asynchronously via {@link GeolocationEvent} posted to the desktop, or to one component with
+ * {@link #getCurrentPositionTo(Component)} and {@link #watchPosition(Component, PositionOptions)}.
  * Components can listen for these events to handle geolocation results.</p>
+ *
+ * <p>Once the browser reported the geolocation permission as denied, see {@link BrowserPermissions}, requests and
+ * watches fail at once with {@link GeolocationPositionError#PERMISSION_DENIED} without asking the browser, followed
+ * by the coarse position of {@link #setIpDatabase(IpLocationDatabase)} if any.</p>
  * 
  * <p>Based on <a href="https://developer.mozilla.org/en-US/docs/Web/API/Geolocation_API/Using_the_Geolocation_API">MDN Geolocation API</a></p>
  */
 public class GeolocationHelper {
     protected static final String GEOLOCATION_HELPER_KEY = "browserkit.geolocationhelper";
     protected static final String GEOLOCATION_HELPER_JS_PATH = "~./js/GeolocationHelper.js";
-    protected static GeoLocationAuService auService;
+    protected static final String GEOFENCE_WATCHER_KEY = "browserkit.geofencewatcher";
+    protected static final String POSITION_FILTER_KEY = "browserkit.positionfilter";
+    protected static final String POSITION_CACHE_KEY = "browserkit.positioncache";
+    /** the watch id of the events of {@link #watchSharedPosition(Component, PositionOptions)} */
+    public static final String SHARED_WATCH_ID = "shared";
+    public static final String IP_DATABASE = "org.zkoss.zkforge.geolocation.ipDatabase";
+    /**
+     * Whether the browser sends positions packed in binary instead of as JSON strings (default true),
+     * see {@link PositionCodec}
+     */
+    public static final String BINARY_ENCODING = "org.zkoss.zkforge.geolocation.binaryEncoding";
+    private static final Logger log = LoggerFactory.getLogger(GeolocationHelper.class);
+    protected static final GeoLocationAuService auService = new GeoLocationAuService();
+    private static final AtomicLong watchIds = new AtomicLong();
+    private static volatile IpLocationDatabase ipDatabase;
+    private static volatile boolean ipDatabaseResolved;
+
+    static {
+        BrowserApiHelper.registerCommand(GeolocationEvent.EVENT_NAME, GEOLOCATION_HELPER_KEY, auService,
+                GeoLocationAuService::reject);
+        BrowserApiHelper.registerCommand(GeolocationEvent.SHARED_EVENT_NAME, GEOLOCATION_HELPER_KEY, auService);
+        BrowserApiHelper.registerResources(GEOLOCATION_HELPER_KEY, desktop -> {
+            unsubscribeSharedWatch(desktop);
+            desktop.removeAttribute(GEOFENCE_WATCHER_KEY);
+            desktop.removeAttribute(POSITION_FILTER_KEY);
+            desktop.removeAttribute(POSITION_CACHE_KEY);
+        });
+    }
 
     /**
      * Request the current position from the browser.
@@ -53,43 +90,298 @@ public class GeolocationHelper {
      * @throws IllegalStateException if called outside an execution context
      */
     public static void getCurrentPosition() {
-        if (Executions.getCurrent().getDesktop().getAttribute(GEOLOCATION_HELPER_KEY)== null) return;
-        Clients.evalJavaScript("GeolocationHelper.getCurrentPosition()");
+        getCurrentPositionTo(null);
     }
 
     /**
-     * Initialize geolocation helper for the current desktop if not already initialized.
-     * This method ensures the AU service and JavaScript are properly set up.
-     * You should call this method before you call {@link #getCurrentPosition()}.
-     * You should call this method in a Composer's life cycle method e.g. {@link org.zkoss.zk.ui.util.Composer#doAfterCompose(Component)}.
+     * Request the current position and deliver the {@link GeolocationEvent} to the target component only,
+     * like {@link org.zkoss.zkforge.clipboard.ClipboardHelper#readTextTo(Component)}. Each request remembers its own
+     * target, so concurrent requests to different targets don't interfere.
+     *
+     * @param target the component receiving the event, or null to broadcast to the desktop
+     * @throws IllegalStateException if called outside an execution context
      */
-    public static void init() {
-        ensureExecutionAvailable();
+    public static void getCurrentPositionTo(Component target) {
+        if (!BrowserApiHelper.isInitialized(GEOLOCATION_HELPER_KEY)) return;
+        if (failIfDenied(target, null)) return;
+        Clients.evalJavaScript("GeolocationHelper.getCurrentPosition(null," + toJavaScript(target) + "," + isBinaryEncoding() + ")");
+        postCoarsePosition(target);
+    }
+
+    /**
+     * Request the current position, accepting a position received up to {@code maxAge} milliseconds ago.
+     * If this desktop received one, the {@link GeolocationEvent} is posted immediately without asking the browser;
+     * otherwise the browser may answer with its own cached position of that age.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void getCurrentPosition(long maxAge) {
+        PositionOptions options = new PositionOptions();
+        options.setMaximumAge(maxAge);
+        getCurrentPositionTo(null, options);
+    }
+
+    /**
+     * Request the current position with the options. A positive {@link PositionOptions#getMaximumAge()} lets the
+     * last known position of this desktop answer immediately, see {@link #getCurrentPosition(long)}.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void getCurrentPosition(PositionOptions options) {
+        getCurrentPositionTo(null, options);
+    }
+
+    /**
+     * Request the current position with the options and deliver the {@link GeolocationEvent} to the target only.
+     *
+     * @param target the component receiving the event, or null to broadcast to the desktop
+     * @throws IllegalStateException if called outside an execution context
+     * @see #getCurrentPosition(PositionOptions)
+     */
+    public static void getCurrentPositionTo(Component target, PositionOptions options) {
+        if (!BrowserApiHelper.isInitialized(GEOLOCATION_HELPER_KEY)) return;
+        if (options.getMaximumAge() > 0) {
+            PositionCache cache = getPositionCache(Executions.getCurrent().getDesktop());
+            GeolocationPosition cached = cache == null ? null : cache.get(options.getMaximumAge());
+            if (cached != null) {
+                Events.postEvent(new GeolocationEvent(cached, target));
+                return;
+            }
+        }
+        if (failIfDenied(target, null)) return;
+        Clients.evalJavaScript("GeolocationHelper.getCurrentPosition(" + options.toJavaScript() + ","
+                + toJavaScript(target) + "," + isBinaryEncoding() + ")");
+        postCoarsePosition(target);
+    }
+
+    /**
+     * Post a permission error instead of asking the browser, if it reported geolocation as denied, followed by the
+     * coarse position as a fallback, if any. It saves the round trip, and the timeout of a browser that doesn't
+     * answer a denied request.
+     *
+     * @param watchId the watch id of the error, or null for a single request
+     * @return true if the error was posted
+     */
+    private static boolean failIfDenied(Component target, String watchId) {
+        if (!BrowserPermissions.isDenied(Executions.getCurrent().getDesktop(), BrowserPermissions.GEOLOCATION)) {
+            return false;
+        }
+        GeolocationEvent event = new GeolocationEvent(new GeolocationPositionError(
+                GeolocationPositionError.PERMISSION_DENIED, "User denied Geolocation"), target);
+        event.watchId = watchId;
+        Events.postEvent(event);
+        postCoarsePosition(target);
+        return true;
+    }
+
+    /**
+     * Post a coarse position from the IP location database, if any, while the browser determines the position.
+     */
+    private static void postCoarsePosition(Component target) {
+        IpLocationDatabase database = getIpDatabase();
+        if (database == null) return;
+        GeolocationPosition coarse = database.lookup(Executions.getCurrent().getRemoteAddr());
+        if (coarse != null) {
+            Events.postEvent(new GeolocationEvent(coarse, target));
+        }
+    }
+
+    /**
+     * Answer each {@code getCurrentPosition} request at once with an approximate position looked up by the client's
+     * IP address, before the browser's position or error arrives. The approximate position is a separate
+     * {@link GeolocationEvent} whose position is {@link GeolocationPosition#isCoarse() coarse}; it is not used as
+     * the last known position. Behind a proxy, the remote address is the proxy's unless the container resolves
+     * forwarded addresses.
+     *
+     * <p>Instead of calling this method, the library property {@value #IP_DATABASE} can name the database file. If
+     * the file cannot be opened, the failure is logged once and the fallback is disabled.</p>
+     *
+     * @param database the database for all desktops, or null to disable the fallback
+     */
+    public static void setIpDatabase(IpLocationDatabase database) {
+        ipDatabase = database;
+        ipDatabaseResolved = true;
+    }
+
+    protected static IpLocationDatabase getIpDatabase() {
+        if (!ipDatabaseResolved) {
+            synchronized (GeolocationHelper.class) {
+                if (!ipDatabaseResolved) {
+                    String file = Library.getProperty(IP_DATABASE);
+                    try {
+                        ipDatabase = file == null ? null : new IpLocationDatabase(Paths.get(file));
+                    } catch (IOException | RuntimeException e) {
+                        // the browser request is already sent, so go on without the coarse position
+                        log.warn("Failed to open the IP location database " + file + ", the IP fallback is disabled", e);
+                        ipDatabase = null;
+                    }
+                    ipDatabaseResolved = true;
+                }
+            }
+        }
+        return ipDatabase;
+    }
+
+    /**
+     * Watch the position: the target receives a {@link GeolocationEvent} whenever the position changes, until
+     * {@link #clearWatch(String)} or {@link #dispose()}. The events carry the watch id, see
+     * {@link GeolocationEvent#getWatchId()}.
+     *
+     * @param target the component receiving the events, or null to broadcast to the desktop
+     * @param options the options, or null for the defaults
+     * @return the watch id, or null if the helper is not initialized
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static String watchPosition(Component target, PositionOptions options) {
+        if (!BrowserApiHelper.isInitialized(GEOLOCATION_HELPER_KEY)) return null;
+        String watchId = Executions.getCurrent().getDesktop().getId() + "-" + Long.toString(watchIds.incrementAndGet(), 36);
+        if (failIfDenied(target, watchId)) return watchId;
+        Clients.evalJavaScript("GeolocationHelper.watchPosition('" + watchId + "',"
+                + (options == null ? "null" : options.toJavaScript()) + "," + toJavaScript(target) + ","
+                + isBinaryEncoding() + ")");
+        return watchId;
+    }
+
+    /**
+     * Stop a watch started by {@link #watchPosition(Component, PositionOptions)}.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void clearWatch(String watchId) {
+        if (!BrowserApiHelper.isInitialized(GEOLOCATION_HELPER_KEY)) return;
+        Clients.evalJavaScript("GeolocationHelper.clearWatch('" + watchId + "')");
+    }
+
+    /**
+     * Watch the position together with the other tabs of this session. One leader tab per browser runs the watch,
+     * elected with the <a href="https://developer.mozilla.org/en-US/docs/Web/API/Web_Locks_API">Web Locks API</a>.
+     * Only the leader sends the fixes to the server, which delivers each one to the target of every subscribed desktop
+     * of the session with server push; the events' watch id is {@value #SHARED_WATCH_ID}. Each desktop applies its own
+     * position cache, {@link #setPositionFilter(PositionFilter) filter} and
+     * {@link #watchGeofences(GeofenceRegistry, Component) geofences} to the shared fixes. When the leader tab closes,
+     * another subscribed tab takes over. Browsers without Web Locks watch in every tab, the server then drops
+     * duplicate fixes. Server push is enabled on the desktop.
+     *
+     * @param target the component receiving the events, or null to broadcast to the desktop
+     * @param options the options, or null for the defaults; the leader's options apply
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void watchSharedPosition(Component target, PositionOptions options) {
+        if (!BrowserApiHelper.isInitialized(GEOLOCATION_HELPER_KEY)) return;
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        desktop.enableServerPush(true);
+        SharedPositionStream.get(desktop.getSession(), true).subscribe(desktop, target);
+        Clients.evalJavaScript("GeolocationHelper.shareWatch(" + (options == null ? "null" : options.toJavaScript()) + ","
+                + isBinaryEncoding() + ")");
+    }
+
+    /**
+     * Stop receiving the shared watch's positions on this desktop. If this tab leads, another tab takes over.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void clearSharedWatch() {
+        if (!BrowserApiHelper.isInitialized(GEOLOCATION_HELPER_KEY)) return;
+        unsubscribeSharedWatch(Executions.getCurrent().getDesktop());
+        Clients.evalJavaScript("GeolocationHelper.stopSharedWatch()");
+    }
+
+    private static void unsubscribeSharedWatch(Desktop desktop) {
+        SharedPositionStream stream = desktop.getSession() == null ? null : SharedPositionStream.get(desktop.getSession(), false);
+        if (stream != null) {
+            stream.unsubscribe(desktop);
+        }
+    }
+
+    private static boolean isBinaryEncoding() {
+        return !"false".equals(Library.getProperty(BINARY_ENCODING));
+    }
+
+    private static String toJavaScript(Component target) {
+        return target == null ? "null" : "'" + target.getUuid() + "'";
+    }
+
+    /**
+     * @return the last position received by this desktop, or null if none
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static GeolocationPosition getLastKnownPosition() {
+        BrowserApiHelper.ensureExecutionAvailable();
+        PositionCache cache = getPositionCache(Executions.getCurrent().getDesktop());
+        return cache == null ? null : cache.get(Long.MAX_VALUE);
+    }
+
+    /**
+     * Check every position received by this desktop against the geofences of the registry. After each
+     * {@link GeolocationEvent}, the target receives a {@link GeofenceEvent} named {@link GeofenceEvent#ENTER} or
+     * {@link GeofenceEvent#EXIT} for each geofence the position entered or left. Calling it again replaces the
+     * previous registry and starts with no geofence entered. The watcher is not replicated with the desktop, call
+     * it again after a failover.
+     *
+     * @param registry the geofences, usually shared by all desktops
+     * @param target the component receiving the geofence events, or null to broadcast to the desktop
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void watchGeofences(GeofenceRegistry registry, Component target) {
+        BrowserApiHelper.ensureExecutionAvailable();
+        Executions.getCurrent().getDesktop().setAttribute(GEOFENCE_WATCHER_KEY, new GeofenceWatcher(registry, target));
+    }
+
+    /**
+     * Stop checking geofences for this desktop.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void unwatchGeofences() {
+        BrowserApiHelper.ensureExecutionAvailable();
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        desktop.removeAttribute(GEOFENCE_WATCHER_KEY);
+    }
+
+    static GeofenceWatcher getGeofenceWatcher(Desktop desktop) {
+        return (GeofenceWatcher) desktop.getAttribute(GEOFENCE_WATCHER_KEY);
+    }
+
+    /**
+     * Smooth the positions received by this desktop before delivering them. A position that the filter suppresses
+     * produces no {@link GeolocationEvent} and no geofence events; errors are always delivered.
+     *
+     * @param filter a filter used only by this desktop, or null to deliver the raw positions
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void setPositionFilter(PositionFilter filter) {
+        BrowserApiHelper.ensureExecutionAvailable();
         Desktop desktop = Executions.getCurrent().getDesktop();
-        
-        // Check if already initialized for this desktop
-        if (desktop.getAttribute(GEOLOCATION_HELPER_KEY) != null) {
-            return;
+        if (filter == null) {
+            desktop.removeAttribute(POSITION_FILTER_KEY);
+        } else {
+            desktop.setAttribute(POSITION_FILTER_KEY, filter);
         }
-        // Mark as initialized
-        desktop.setAttribute(GEOLOCATION_HELPER_KEY, true);
-        
-        addAuService(desktop);
-        addHelperScript(desktop);
     }
 
-    protected static void addHelperScript(Desktop desktop) {
-        Script helperScript = new Script();
-        helperScript.setId(GEOLOCATION_HELPER_KEY);
-        helperScript.setSrc(GEOLOCATION_HELPER_JS_PATH);
-        helperScript.setPage(desktop.getFirstPage());
+    static PositionCache getPositionCache(Desktop desktop) {
+        return (PositionCache) desktop.getAttribute(POSITION_CACHE_KEY);
     }
 
-    protected static void addAuService(Desktop desktop) {
-        if (auService == null) {
-            auService = new GeoLocationAuService();
+    static PositionFilter getPositionFilter(Desktop desktop) {
+        return (PositionFilter) desktop.getAttribute(POSITION_FILTER_KEY);
+    }
+
+    /**
+     * Initialize geolocation helper for the current desktop if not already initialized.
+     * This method ensures the AU service and JavaScript are properly set up.
+     * You should call this method before you call {@link #getCurrentPosition()}.
+     * You should call this method in a Composer's life cycle method e.g. {@link org.zkoss.zk.ui.util.Composer#doAfterCompose(Component)}.
+     */
+    public static void init() {
+        if (BrowserApiHelper.init(GEOLOCATION_HELPER_KEY, GEOLOCATION_HELPER_JS_PATH)) {
+            Desktop desktop = Executions.getCurrent().getDesktop();
+            desktop.setAttribute(POSITION_CACHE_KEY, new PositionCache());
+            BrowserPermissions.watch(BrowserPermissions.GEOLOCATION);
+            if (AsyncEventDecoder.isEnabled()) {
+                desktop.enableServerPush(true);
+            }
         }
-        desktop.addListener(auService);
     }
 
     /**
@@ -99,25 +391,10 @@ public class GeolocationHelper {
      * @throws IllegalStateException if called outside an execution context
      */
     public static void dispose() {
-        ensureExecutionAvailable();
-        Desktop desktop = Executions.getCurrent().getDesktop();
-        
-        // Mark as not initialized
-        desktop.removeAttribute(GEOLOCATION_HELPER_KEY);
-        
-        // Remove AU service listener for this desktop
-        if (auService != null) {
-            desktop.removeListener(auService);
-        }
-        
-        // Remove JavaScript helper
-        Selectors.find(desktop.getFirstPage(), "#" + GEOLOCATION_HELPER_KEY)
-                .forEach(Component::detach);
-    }
-
-    private static void ensureExecutionAvailable() {
-        if (Executions.getCurrent() == null) {
-            throw new IllegalStateException("This method can only be called when an Execution is available");
+        if (BrowserApiHelper.isInitialized(GEOLOCATION_HELPER_KEY)) {
+            Clients.evalJavaScript("GeolocationHelper.clearAllWatches()");
+            Clients.evalJavaScript("GeolocationHelper.stopSharedWatch()");
         }
+        BrowserApiHelper.dispose(GEOLOCATION_HELPER_KEY);
     }
 }
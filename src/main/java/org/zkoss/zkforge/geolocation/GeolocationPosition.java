@@ -1,12 +1,19 @@
 package org.zkoss.zkforge.geolocation;
 
+import java.io.*;
+
 /**
  * a java representation of GeolocationPosition, https://developer.mozilla.org/en-US/docs/Web/API/GeolocationPosition
+ * Externalizable with a compact encoding, 67 bytes of data per position, for replicated desktops or sessions.
  */
-public class GeolocationPosition {
+public class GeolocationPosition implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    /** the version of the external form, written first */
+    private static final int VERSION = 1;
 
     protected long timestamp;
     protected GeolocationCoordinates coords;
+    protected boolean coarse;
 
     public long getTimestamp() {
         return timestamp;
@@ -24,11 +31,61 @@ public class GeolocationPosition {
         this.coords = coords;
     }
 
+    /**
+     * @return true if the position is only an approximation, e.g. from {@link IpLocationDatabase}, not from the
+     * browser; its accuracy is the radius of the approximated area
+     */
+    public boolean isCoarse() {
+        return coarse;
+    }
+
+    public void setCoarse(boolean coarse) {
+        this.coarse = coarse;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeLong(timestamp);
+        out.writeBoolean(coarse);
+        if (coords == null) {
+            out.writeByte(0);
+        } else if (coords.getClass() == GeolocationCoordinates.class) {
+            out.writeByte(1);
+            coords.writeExternal(out);
+        } else {
+            out.writeByte(2); // a subclass, with its own fields
+            out.writeObject(coords);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new InvalidClassException(getClass().getName(), "Unknown version: " + version);
+        }
+        timestamp = in.readLong();
+        coarse = in.readBoolean();
+        switch (in.readUnsignedByte()) {
+            case 0:
+                coords = null;
+                break;
+            case 1:
+                coords = new GeolocationCoordinates();
+                coords.readExternal(in);
+                break;
+            default:
+                coords = (GeolocationCoordinates) in.readObject();
+        }
+    }
+
     @Override
     public String toString() {
         return "GeoLocationPosition{" +
                 "timestamp=" + timestamp +
                 ", coords=" + coords +
+                ", coarse=" + coarse +
                 '}';
     }
 }
@@ -1,11 +1,16 @@
 package org.zkoss.zkforge.geolocation;
 
+import java.io.Serializable;
 import java.util.Map;
 
 /**
  * https://developer.mozilla.org/en-US/docs/Web/API/GeolocationPositionError
  */
-public class GeolocationPositionError {
+public class GeolocationPositionError implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final int PERMISSION_DENIED = 1;
+    public static final int POSITION_UNAVAILABLE = 2;
+    public static final int TIMEOUT = 3;
     protected final int code; // Error code
     protected final String message; // Human-readable error message
 
@@ -0,0 +1,29 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A backplane for a single node, delivering each fix to the subscribers on the publishing thread.
+ */
+public class InMemoryLocationBackplane implements LocationBackplane {
+    private final List<Consumer<LocationFix>> consumers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(LocationFix fix) {
+        for (Consumer<LocationFix> consumer : consumers) {
+            consumer.accept(fix);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<LocationFix> consumer) {
+        consumers.add(consumer);
+    }
+
+    @Override
+    public void close() {
+        consumers.clear();
+    }
+}
@@ -0,0 +1,236 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Resolves IP addresses to approximate positions with a local, memory-mapped range table, without network access.
+ *
+ * <p>The file holds fixed-size records sorted by their first address: the first and last address of a range as
+ * 16-byte IPv6 addresses (IPv4 addresses are mapped to {@code ::ffff:a.b.c.d}), the latitude and longitude as floats
+ * and the accuracy radius in meters. A lookup is a binary search on the mapped file, so the table is neither parsed
+ * nor loaded into the heap. Create the file from CSV with {@link #build(Reader, Path)}. Thread-safe.</p>
+ */
+public class IpLocationDatabase {
+    protected static final int MAGIC = 0x424B4950; // "BKIP"
+    protected static final int VERSION = 1;
+    protected static final int HEADER_SIZE = 16; // magic, version, record count, reserved
+    protected static final int RECORD_SIZE = 44;
+    private final ByteBuffer buffer;
+    private final int count;
+
+    public IpLocationDatabase(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not an IP location database: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an IP location database: " + file);
+        }
+        count = buffer.getInt(8);
+        if (count < 0 || HEADER_SIZE + (long) count * RECORD_SIZE > buffer.capacity()) {
+            throw new IOException("Corrupted IP location database: " + file);
+        }
+    }
+
+    /**
+     * @param address a literal IPv4 or IPv6 address, e.g. from {@link org.zkoss.zk.ui.Execution#getRemoteAddr()};
+     *                it is parsed here, so a host name is never resolved
+     * @return the approximate position flagged as {@link GeolocationPosition#isCoarse() coarse}, or null if the
+     * address is not a literal address or not in the table
+     */
+    public GeolocationPosition lookup(String address) {
+        byte[] bytes = address == null ? null : parseLiteral(address);
+        return bytes == null ? null : lookup(toIpv6(bytes));
+    }
+
+    public GeolocationPosition lookup(InetAddress address) {
+        return lookup(toIpv6(address.getAddress()));
+    }
+
+    private GeolocationPosition lookup(byte[] key) {
+        long high = ByteBuffer.wrap(key).getLong(0);
+        long low = ByteBuffer.wrap(key).getLong(8);
+        // the last range starting at or before the address
+        int lowIndex = 0, highIndex = count - 1, found = -1;
+        while (lowIndex <= highIndex) {
+            int middle = (lowIndex + highIndex) >>> 1;
+            int offset = HEADER_SIZE + middle * RECORD_SIZE;
+            if (compare(buffer.getLong(offset), buffer.getLong(offset + 8), high, low) <= 0) {
+                found = middle;
+                lowIndex = middle + 1;
+            } else {
+                highIndex = middle - 1;
+            }
+        }
+        if (found < 0) return null;
+        int offset = HEADER_SIZE + found * RECORD_SIZE;
+        if (compare(high, low, buffer.getLong(offset + 16), buffer.getLong(offset + 24)) > 0) {
+            return null; // after the end of the range
+        }
+        GeolocationCoordinates coords = new GeolocationCoordinates();
+        coords.latitude = buffer.getFloat(offset + 32);
+        coords.longitude = buffer.getFloat(offset + 36);
+        coords.accuracy = buffer.getInt(offset + 40);
+        GeolocationPosition position = new GeolocationPosition();
+        position.setTimestamp(System.currentTimeMillis());
+        position.setCoords(coords);
+        position.setCoarse(true);
+        return position;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private static int compare(long high1, long low1, long high2, long low2) {
+        int result = Long.compareUnsigned(high1, high2);
+        return result != 0 ? result : Long.compareUnsigned(low1, low2);
+    }
+
+    /**
+     * Parse a literal IPv4 address, e.g. {@code 203.0.113.7}, or IPv6 address, e.g. {@code 2001:db8::7}, optionally
+     * with a zone, e.g. {@code fe80::1%eth0}. Unlike {@link InetAddress#getByName(String)}, it never falls back to DNS.
+     *
+     * @return the 4 or 16 address bytes, or null if the text is not a literal address
+     */
+    static byte[] parseLiteral(String address) {
+        return address.indexOf(':') < 0 ? parseIpv4(address) : parseIpv6(address);
+    }
+
+    private static byte[] parseIpv4(String address) {
+        String[] parts = address.split("\\.", -1);
+        if (parts.length != 4) return null;
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3 || !part.chars().allMatch(c -> c >= '0' && c <= '9')) return null;
+            int value = Integer.parseInt(part);
+            if (value > 255) return null;
+            bytes[i] = (byte) value;
+        }
+        return bytes;
+    }
+
+    private static byte[] parseIpv6(String address) {
+        int zone = address.indexOf('%');
+        if (zone >= 0) {
+            address = address.substring(0, zone);
+        }
+        int gap = address.indexOf("::");
+        if (gap >= 0 && address.indexOf("::", gap + 1) >= 0) return null;
+        byte[] head = parseGroups(gap < 0 ? address : address.substring(0, gap), gap < 0);
+        byte[] tail = gap < 0 ? new byte[0] : parseGroups(address.substring(gap + 2), true);
+        if (head == null || tail == null || (gap < 0 ? head.length != 16 : head.length + tail.length > 14)) {
+            return null;
+        }
+        byte[] bytes = new byte[16];
+        System.arraycopy(head, 0, bytes, 0, head.length);
+        System.arraycopy(tail, 0, bytes, 16 - tail.length, tail.length);
+        return bytes;
+    }
+
+    /**
+     * @param groups colon-separated groups of up to 4 hex digits
+     * @param ipv4Allowed whether the last group may be an IPv4 address, e.g. {@code ::ffff:203.0.113.7}
+     * @return the bytes of the groups, or null if invalid
+     */
+    private static byte[] parseGroups(String groups, boolean ipv4Allowed) {
+        if (groups.isEmpty()) return new byte[0];
+        String[] parts = groups.split(":", -1);
+        ByteBuffer bytes = ByteBuffer.allocate(16);
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (ipv4Allowed && i == parts.length - 1 && part.indexOf('.') >= 0) {
+                byte[] ipv4 = parseIpv4(part);
+                if (ipv4 == null || bytes.remaining() < 4) return null;
+                bytes.put(ipv4);
+                continue;
+            }
+            if (part.isEmpty() || part.length() > 4 || bytes.remaining() < 2
+                    || !part.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return null;
+            }
+            bytes.putShort((short) Integer.parseInt(part, 16));
+        }
+        return Arrays.copyOf(bytes.array(), bytes.position());
+    }
+
+    private static byte[] toIpv6(byte[] address) {
+        if (address.length == 16) return address;
+        byte[] mapped = new byte[16];
+        mapped[10] = mapped[11] = (byte) 0xff;
+        System.arraycopy(address, 0, mapped, 12, 4);
+        return mapped;
+    }
+
+    /**
+     * Create a database file from CSV lines {@code firstAddress,lastAddress,latitude,longitude,accuracy}, e.g.
+     * {@code 203.0.113.0,203.0.113.255,25.03,121.56,20000}. Empty lines and lines starting with {@code #} are
+     * ignored. Ranges should not overlap.
+     *
+     * @param csv the CSV content, closed after reading
+     * @throws IOException if reading or writing fails, or a line is invalid
+     */
+    public static void build(Reader csv, Path file) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        try (BufferedReader lines = new BufferedReader(csv)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                records.add(parseRecord(line, lineNumber));
+            }
+        }
+        records.sort((a, b) -> Arrays.compareUnsigned(a, 0, 16, b, 0, 16));
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(records.size());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            out.write(header.array());
+            for (byte[] record : records) {
+                out.write(record);
+            }
+        }
+    }
+
+    private static byte[] parseRecord(String line, int lineNumber) throws IOException {
+        String[] fields = line.split(",");
+        if (fields.length != 5) {
+            throw new IOException("Line " + lineNumber + ": expected 5 fields, found " + fields.length);
+        }
+        try {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            record.put(toIpv6(parseAddress(fields[0].trim(), lineNumber)));
+            record.put(toIpv6(parseAddress(fields[1].trim(), lineNumber)));
+            record.putFloat(Float.parseFloat(fields[2].trim()));
+            record.putFloat(Float.parseFloat(fields[3].trim()));
+            record.putInt(Integer.parseInt(fields[4].trim()));
+            return record.array();
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + lineNumber + ": invalid number", e);
+        }
+    }
+
+    private static byte[] parseAddress(String address, int lineNumber) throws IOException {
+        byte[] bytes = parseLiteral(address);
+        if (bytes == null) {
+            throw new IOException("Line " + lineNumber + ": not an IP address: " + address);
+        }
+        return bytes;
+    }
+
+    /**
+     * Create a database file from a CSV file, see {@link #build(Reader, Path)}.
+     */
+    public static void build(Path csv, Path file) throws IOException {
+        build(Files.newBufferedReader(csv, StandardCharsets.UTF_8), file);
+    }
+}
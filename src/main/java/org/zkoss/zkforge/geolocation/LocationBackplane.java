@@ -0,0 +1,28 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries the fixes published to {@link LocationHub} to the hubs of all nodes, e.g. over a message bus.
+ *
+ * <p>The default is {@link InMemoryLocationBackplane}, which only reaches the local node. To use another
+ * implementation, call {@link LocationHub#setBackplane(LocationBackplane)} or register it as a service provider in
+ * {@code META-INF/services/org.zkoss.zkforge.geolocation.LocationBackplane}.</p>
+ */
+public interface LocationBackplane {
+    /**
+     * Send the fix to every subscriber, including the ones of this node. May be called by many threads at once.
+     */
+    void publish(LocationFix fix);
+
+    /**
+     * Deliver the fixes published by any node to the consumer. Fixes may arrive out of order and more than once.
+     */
+    void subscribe(Consumer<LocationFix> consumer);
+
+    /**
+     * Release resources, called when the hub switches to another backplane.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,99 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.Serializable;
+
+/**
+ * The position of a user at a point in time, as shared by {@link LocationHub}. Immutable.
+ * A fix with {@link #isRemoved()} true tells that the user is no longer tracked.
+ *
+ * <p>The hub orders the fixes of a user by {@link #getReceivedAt()}, the server time when the fix was created, because
+ * {@link #getTimestamp()} comes from the browser's clock of the publishing user while a removal carries the server's.</p>
+ */
+public class LocationFix implements Serializable {
+    private static final long serialVersionUID = 2L;
+    private final String userId;
+    private final double latitude;
+    private final double longitude;
+    private final double accuracy;
+    private final long timestamp;
+    private final boolean removed;
+    private final long receivedAt;
+
+    public LocationFix(String userId, double latitude, double longitude, double accuracy, long timestamp) {
+        this(userId, latitude, longitude, accuracy, timestamp, false);
+    }
+
+    private LocationFix(String userId, double latitude, double longitude, double accuracy, long timestamp, boolean removed) {
+        if (userId == null) throw new IllegalArgumentException("userId is required");
+        this.userId = userId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.timestamp = timestamp;
+        this.removed = removed;
+        this.receivedAt = System.currentTimeMillis();
+    }
+
+    public static LocationFix of(String userId, GeolocationPosition position) {
+        GeolocationCoordinates coords = position.getCoords();
+        return new LocationFix(userId, coords.getLatitude(), coords.getLongitude(), coords.getAccuracy(),
+                position.getTimestamp());
+    }
+
+    /**
+     * @return a fix that removes the user
+     */
+    public static LocationFix removed(String userId, long timestamp) {
+        return new LocationFix(userId, 0, 0, 0, timestamp, true);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return the accuracy in meters
+     */
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * @return the time of the fix in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the server time when the fix was created, in milliseconds since the epoch
+     */
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return "LocationFix{" +
+                "userId='" + userId + '\'' +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", accuracy=" + accuracy +
+                ", timestamp=" + timestamp +
+                ", removed=" + removed +
+                ", receivedAt=" + receivedAt +
+                '}';
+    }
+}
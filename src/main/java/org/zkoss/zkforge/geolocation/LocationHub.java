@@ -0,0 +1,284 @@
+package org.zkoss.zkforge.geolocation;
+
+import org.zkoss.lang.Library;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.event.EventListener;
+import org.zkoss.zk.ui.event.Events;
+import org.zkoss.zkforge.core.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Aggregates the live positions of many users, e.g. for a dispatch console, and pushes the changes to subscribed
+ * desktops.
+ *
+ * <p>Desktops publish the positions they receive with {@link #publish(String, GeolocationPosition)}. The fix travels
+ * through the {@link LocationBackplane} to the hub of every node, which keeps the latest fix per user in a concurrent
+ * map. Fixes and removals are ordered by the server time they were created ({@link LocationFix#getReceivedAt()}), an
+ * older one never replaces a newer one; a removal is remembered until the tick after next, so a late fix doesn't bring
+ * the user back. Every {@value #INTERVAL} ms (default 1000), the hub collects the users
+ * changed since the previous tick once and hands this delta to all subscribers. A subscriber whose desktop hasn't
+ * processed its previous delta yet merges the new one into it, so a slow desktop receives fewer, larger
+ * {@link LocationSnapshotEvent}s instead of a backlog.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>{@code
+ * // in the field worker's desktop
+ * @Listen(GeolocationEvent.EVENT_NAME + " = #root")
+ * public void handleGeolocation(GeolocationEvent event) {
+ *     if (event.isSuccess()) LocationHub.publish(userId, event.getGeoLocationPosition());
+ * }
+ *
+ * // in the dispatch console
+ * LocationHub.subscribe(map);
+ *
+ * @Listen(LocationSnapshotEvent.EVENT_NAME + " = #map")
+ * public void handleSnapshot(LocationSnapshotEvent event) {
+ *     event.getFixes().forEach(this::moveMarker);
+ *     event.getRemovedUsers().forEach(this::removeMarker);
+ * }
+ * }</pre>
+ */
+public class LocationHub {
+    public static final String INTERVAL = "org.zkoss.zkforge.geolocation.locationHubInterval";
+    private static final String LOCATION_HUB_KEY = "browserkit.locationhub";
+    private static final Map<String, LocationFix> latest = new ConcurrentHashMap<>();
+    /** the latest fix of the users changed since the last tick, including removals */
+    private static final Map<String, LocationFix> changed = new ConcurrentHashMap<>();
+    /** the removals accepted since the previous tick, so that an older fix arriving late is still rejected */
+    private static final Map<String, LocationFix> tombstones = new ConcurrentHashMap<>();
+    /** key: desktop id + ":" + target component uuid */
+    private static final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "browserkit-locationhub");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile LocationBackplane backplane;
+    private static boolean tickerStarted;
+    private static long lastTick;
+
+    static {
+        BrowserApiHelper.registerResources(LOCATION_HUB_KEY, new Subscriptions());
+    }
+
+    /**
+     * Publish the user's position to the hubs of all nodes.
+     */
+    public static void publish(String userId, GeolocationPosition position) {
+        getBackplane().publish(LocationFix.of(userId, position));
+    }
+
+    /**
+     * Stop tracking the user on all nodes, subscribers see the user in {@link LocationSnapshotEvent#getRemovedUsers()}.
+     */
+    public static void remove(String userId) {
+        getBackplane().publish(LocationFix.removed(userId, System.currentTimeMillis()));
+    }
+
+    /**
+     * @return the latest fix of the user, or null if the user is not tracked
+     */
+    public static LocationFix getLatest(String userId) {
+        return latest.get(userId);
+    }
+
+    /**
+     * @return the latest fix of every tracked user, a read-only live view
+     */
+    public static Collection<LocationFix> getAll() {
+        return Collections.unmodifiableCollection(latest.values());
+    }
+
+    /**
+     * Receive {@link LocationSnapshotEvent}s on the target, starting with a full snapshot. Server push is enabled
+     * on the desktop.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void subscribe(Component target) {
+        Execution execution = Executions.getCurrent();
+        if (execution == null) {
+            throw new IllegalStateException("This method must be called within a ZK execution context");
+        }
+        Desktop desktop = execution.getDesktop();
+        desktop.enableServerPush(true);
+        BrowserApiHelper.watchCleanup(desktop);
+        Subscriber subscriber = new Subscriber(desktop, target);
+        subscribers.put(getSubscriberKey(desktop, target), subscriber);
+        startTicker();
+        subscriber.offer(new HashMap<>(latest), true);
+    }
+
+    public static void unsubscribe(Component target) {
+        Desktop desktop = target.getDesktop();
+        if (desktop != null) {
+            subscribers.remove(getSubscriberKey(desktop, target));
+        }
+    }
+
+    /**
+     * Use another backplane, e.g. one connecting the nodes of a cluster. The previous backplane is closed.
+     */
+    public static synchronized void setBackplane(LocationBackplane backplane) {
+        LocationBackplane previous = LocationHub.backplane;
+        backplane.subscribe(LocationHub::accept);
+        LocationHub.backplane = backplane;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    protected static LocationBackplane getBackplane() {
+        if (backplane == null) {
+            synchronized (LocationHub.class) {
+                if (backplane == null) {
+                    Iterator<LocationBackplane> providers = ServiceLoader.load(LocationBackplane.class).iterator();
+                    setBackplane(providers.hasNext() ? providers.next() : new InMemoryLocationBackplane());
+                }
+            }
+        }
+        return backplane;
+    }
+
+    /**
+     * Apply a fix received from the backplane, unless the user already has a newer one.
+     */
+    protected static void accept(LocationFix fix) {
+        latest.compute(fix.getUserId(), (userId, current) -> {
+            LocationFix newest = current != null ? current : tombstones.get(userId);
+            if (newest != null && newest.getReceivedAt() > fix.getReceivedAt()) {
+                return current;
+            }
+            // inside compute so that concurrent fixes of the same user reach the delta in order
+            changed.put(userId, fix);
+            if (fix.isRemoved()) {
+                tombstones.put(userId, fix);
+                return null;
+            }
+            tombstones.remove(userId);
+            return fix;
+        });
+    }
+
+    private static synchronized void startTicker() {
+        if (!tickerStarted) {
+            int interval = Math.max(1, Library.getIntProperty(INTERVAL, 1000));
+            timer.scheduleAtFixedRate(LocationHub::tick, interval, interval, TimeUnit.MILLISECONDS);
+            tickerStarted = true;
+        }
+    }
+
+    /**
+     * Hand the changes since the last tick to all subscribers.
+     */
+    protected static void tick() {
+        long now = System.currentTimeMillis();
+        long previousTick = lastTick;
+        lastTick = now;
+        tombstones.values().removeIf(tombstone -> tombstone.getReceivedAt() < previousTick);
+        if (changed.isEmpty()) return;
+        Map<String, LocationFix> delta = new HashMap<>();
+        for (String userId : changed.keySet()) {
+            LocationFix fix = changed.remove(userId);
+            if (fix != null) {
+                delta.put(userId, fix);
+            }
+        }
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.offer(delta, false);
+        }
+    }
+
+    /**
+     * The subscriptions of a desktop, released when it is destroyed.
+     */
+    private static class Subscriptions implements DesktopResources {
+        @Override
+        public void release(Desktop desktop) {
+            String prefix = desktop.getId() + ":";
+            subscribers.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+
+        @Override
+        public List<String> findAlive(Desktop desktop) {
+            String prefix = desktop.getId() + ":";
+            List<String> alive = new ArrayList<>();
+            for (String key : subscribers.keySet()) {
+                if (key.startsWith(prefix)) {
+                    alive.add("location subscription " + key);
+                }
+            }
+            return alive;
+        }
+    }
+
+    private static String getSubscriberKey(Desktop desktop, Component target) {
+        return desktop.getId() + ":" + target.getUuid();
+    }
+
+    /**
+     * The undelivered changes of one subscriber.
+     */
+    private static class Subscriber implements EventListener<Event> {
+        private final Desktop desktop;
+        private final Component target;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private Map<String, LocationFix> pending = new HashMap<>();
+        private boolean full;
+
+        private Subscriber(Desktop desktop, Component target) {
+            this.desktop = desktop;
+            this.target = target;
+        }
+
+        private void offer(Map<String, LocationFix> delta, boolean full) {
+            synchronized (this) {
+                pending.putAll(delta);
+                this.full |= full;
+            }
+            if (flushScheduled.compareAndSet(false, true)) {
+                try {
+                    Executions.schedule(desktop, this, new Event("onLocationFlush"));
+                } catch (DesktopUnavailableException | IllegalStateException e) {
+                    subscribers.remove(getSubscriberKey(desktop, target));
+                }
+            }
+        }
+
+        /**
+         * Post the pending changes, runs in the desktop's execution.
+         */
+        @Override
+        public void onEvent(Event event) {
+            // reset before taking the changes, a later offer schedules another flush
+            flushScheduled.set(false);
+            Map<String, LocationFix> changes;
+            boolean isFull;
+            synchronized (this) {
+                changes = pending;
+                isFull = full;
+                pending = new HashMap<>();
+                full = false;
+            }
+            if (target.getDesktop() == null) {
+                subscribers.remove(getSubscriberKey(desktop, target));
+                return;
+            }
+            if (changes.isEmpty() && !isFull) return;
+            List<LocationFix> fixes = new ArrayList<>(changes.size());
+            Set<String> removedUsers = new HashSet<>();
+            for (LocationFix fix : changes.values()) {
+                if (fix.isRemoved()) {
+                    removedUsers.add(fix.getUserId());
+                } else {
+                    fixes.add(fix);
+                }
+            }
+            Events.postEvent(new LocationSnapshotEvent(target, isFull, fixes, removedUsers));
+        }
+    }
+}
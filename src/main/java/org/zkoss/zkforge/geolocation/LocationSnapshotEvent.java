@@ -0,0 +1,46 @@
+package org.zkoss.zkforge.geolocation;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.event.Event;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Delivers the changes of {@link LocationHub} to a subscriber. The first event after subscribing is a full snapshot,
+ * the following ones only contain the users that moved or were removed since the previous event.
+ */
+public class LocationSnapshotEvent extends Event {
+    public static final String EVENT_NAME = "onLocationSnapshot";
+    private final boolean full;
+    private final Collection<LocationFix> fixes;
+    private final Set<String> removedUsers;
+
+    public LocationSnapshotEvent(Component target, boolean full, Collection<LocationFix> fixes, Set<String> removedUsers) {
+        super(EVENT_NAME, target);
+        this.full = full;
+        this.fixes = fixes;
+        this.removedUsers = removedUsers;
+    }
+
+    /**
+     * @return true if {@link #getFixes()} contains every tracked user, false if only the changed ones
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * @return the latest fix of each user that changed
+     */
+    public Collection<LocationFix> getFixes() {
+        return fixes;
+    }
+
+    /**
+     * @return the users that are no longer tracked
+     */
+    public Set<String> getRemovedUsers() {
+        return removedUsers;
+    }
+}
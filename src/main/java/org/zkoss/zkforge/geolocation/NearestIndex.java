@@ -0,0 +1,189 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A static spatial index answering "nearest first" queries over many items, e.g. a store catalog.
+ *
+ * <p>Items are stored as unit vectors on the sphere in a k-d tree with bounding boxes per node. Straight-line
+ * (chord) distances between unit vectors grow with great-circle distances, so a best-first walk of the tree, ordered
+ * by the distance to each node's box, returns items exactly in great-circle order without visiting the rest of the
+ * tree. Build the index once, e.g. at startup, and query it with {@link #nearest(double, double)} per user.
+ * Instances are immutable and thread-safe.</p>
+ *
+ * <pre>{@code
+ * NearestIndex<Store> catalog = new NearestIndex<>(stores, Store::getLatitude, Store::getLongitude); // once
+ * listbox.setModel(catalog.nearest(coords.getLatitude(), coords.getLongitude()));
+ * }</pre>
+ */
+public class NearestIndex<T> implements Serializable {
+    /** the maximal number of items in a leaf node */
+    protected static final int LEAF_SIZE = 16;
+    // the items and their unit vectors, in tree order
+    final Object[] items;
+    final double[] xs;
+    final double[] ys;
+    final double[] zs;
+    // the nodes, node 0 is the root
+    final int[] nodeFrom;
+    final int[] nodeTo;
+    /** the children of each node, -1 for leaves */
+    final int[] left;
+    final int[] right;
+    /** minX, minY, minZ, maxX, maxY, maxZ of each node */
+    final double[] bounds;
+    private int nodeCount;
+
+    public NearestIndex(Collection<? extends T> items, ToDoubleFunction<? super T> latitude,
+                        ToDoubleFunction<? super T> longitude) {
+        int size = items.size();
+        this.items = new Object[size];
+        xs = new double[size];
+        ys = new double[size];
+        zs = new double[size];
+        int i = 0;
+        for (T item : items) {
+            double phi = Math.toRadians(latitude.applyAsDouble(item));
+            double lambda = Math.toRadians(longitude.applyAsDouble(item));
+            this.items[i] = item;
+            xs[i] = Math.cos(phi) * Math.cos(lambda);
+            ys[i] = Math.cos(phi) * Math.sin(lambda);
+            zs[i++] = Math.sin(phi);
+        }
+        // median splits leave at least LEAF_SIZE / 2 items per leaf
+        int capacity = 2 * (size / (LEAF_SIZE / 2) + 1);
+        nodeFrom = new int[capacity];
+        nodeTo = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        bounds = new double[capacity * 6];
+        if (size > 0) {
+            build(0, size);
+        }
+    }
+
+    /**
+     * @return the node covering the items from (inclusive) to (exclusive)
+     */
+    private int build(int from, int to) {
+        int node = nodeCount++;
+        nodeFrom[node] = from;
+        nodeTo[node] = to;
+        double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            minZ = Math.min(minZ, zs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+            maxZ = Math.max(maxZ, zs[i]);
+        }
+        int offset = node * 6;
+        bounds[offset] = minX;
+        bounds[offset + 1] = minY;
+        bounds[offset + 2] = minZ;
+        bounds[offset + 3] = maxX;
+        bounds[offset + 4] = maxY;
+        bounds[offset + 5] = maxZ;
+        if (to - from <= LEAF_SIZE) {
+            left[node] = -1;
+            right[node] = -1;
+            return node;
+        }
+        // split at the median of the widest axis
+        double extentX = maxX - minX, extentY = maxY - minY, extentZ = maxZ - minZ;
+        double[] axis = extentX >= extentY && extentX >= extentZ ? xs : extentY >= extentZ ? ys : zs;
+        int middle = (from + to) >>> 1;
+        select(axis, from, to - 1, middle);
+        left[node] = build(from, middle);
+        right[node] = build(middle, to);
+        return node;
+    }
+
+    /**
+     * Reorder the items so the k-th one is in its sorted position along the axis (quickselect).
+     */
+    private void select(double[] axis, int low, int high, int k) {
+        while (low < high) {
+            double pivot = axis[(low + high) >>> 1];
+            int i = low, j = high;
+            while (i <= j) {
+                while (axis[i] < pivot) i++;
+                while (axis[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        Object item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        double value = xs[i];
+        xs[i] = xs[j];
+        xs[j] = value;
+        value = ys[i];
+        ys[i] = ys[j];
+        ys[j] = value;
+        value = zs[i];
+        zs[i] = zs[j];
+        zs[j] = value;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * @return all items ordered by distance from the position, computed lazily as rows are requested
+     */
+    public NearestListModel<T> nearest(double latitude, double longitude) {
+        return new NearestListModel<>(this, latitude, longitude, size());
+    }
+
+    /**
+     * @param limit the maximal number of items in the model
+     * @return the nearest items ordered by distance from the position, computed lazily as rows are requested
+     */
+    public NearestListModel<T> nearest(double latitude, double longitude, int limit) {
+        return new NearestListModel<>(this, latitude, longitude, Math.min(limit, size()));
+    }
+
+    /**
+     * @return the squared chord distance from the unit vector to the node's bounding box, 0 if inside
+     */
+    double boxDistance(int node, double x, double y, double z) {
+        int offset = node * 6;
+        double dx = Math.max(0, Math.max(bounds[offset] - x, x - bounds[offset + 3]));
+        double dy = Math.max(0, Math.max(bounds[offset + 1] - y, y - bounds[offset + 4]));
+        double dz = Math.max(0, Math.max(bounds[offset + 2] - z, z - bounds[offset + 5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * @return the squared chord distance from the unit vector to the item at the tree position
+     */
+    double itemDistance(int position, double x, double y, double z) {
+        double dx = xs[position] - x, dy = ys[position] - y, dz = zs[position] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * @return the great-circle distance in meters for a squared chord distance between unit vectors
+     */
+    static double toMeters(double squaredChord) {
+        return 2 * GeoDistance.EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(squaredChord) / 2));
+    }
+}
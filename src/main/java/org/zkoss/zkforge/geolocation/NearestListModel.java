@@ -0,0 +1,164 @@
+package org.zkoss.zkforge.geolocation;
+
+import org.zkoss.zul.AbstractListModel;
+
+import java.util.Arrays;
+
+/**
+ * The items of a {@link NearestIndex} ordered by distance from a position, for a Listbox or Grid.
+ *
+ * <p>Rows are ordered on demand: requesting row {@code i} continues a best-first search of the index until the
+ * {@code i + 1} nearest items are known, and earlier rows are kept. With render on demand (ROD), showing the first
+ * page of a large catalog only computes the distances of that page and of the nearby tree nodes, instead of sorting
+ * the whole catalog. Jumping far ahead, e.g. scrolling to the end, orders all rows up to it.</p>
+ *
+ * <p>Not thread-safe, use it in the desktop's execution like other list models. Create a new model when the position
+ * changes.</p>
+ */
+public class NearestListModel<T> extends AbstractListModel<T> {
+    private static final long serialVersionUID = 1L;
+    private final NearestIndex<T> index;
+    private final double latitude;
+    private final double longitude;
+    private final int size;
+    // the query position as a unit vector
+    private final double x;
+    private final double y;
+    private final double z;
+    // the rows found so far, as tree positions in the index, with their squared chord distances
+    private int[] rows = new int[16];
+    private double[] rowDistances = new double[16];
+    private int rowCount;
+    /** a binary min-heap of pending nodes (reference >= 0) and items (reference -1 - tree position) */
+    private double[] heapKeys = new double[16];
+    private int[] heapReferences = new int[16];
+    private int heapSize;
+
+    /**
+     * @param size the number of rows, at most the index's size
+     * @see NearestIndex#nearest(double, double)
+     */
+    public NearestListModel(NearestIndex<T> index, double latitude, double longitude, int size) {
+        if (size < 0 || size > index.size()) {
+            throw new IllegalArgumentException("size out of range: " + size);
+        }
+        this.index = index;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.size = size;
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        x = Math.cos(phi) * Math.cos(lambda);
+        y = Math.cos(phi) * Math.sin(lambda);
+        z = Math.sin(phi);
+        if (index.size() > 0) {
+            push(index.boxDistance(0, x, y, z), 0);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getElementAt(int row) {
+        find(row);
+        return (T) index.items[rows[row]];
+    }
+
+    /**
+     * @return the distance in meters from the position to the item of the row
+     */
+    public double getDistance(int row) {
+        find(row);
+        return NearestIndex.toMeters(rowDistances[row]);
+    }
+
+    /**
+     * @return the number of rows ordered so far
+     */
+    public int getOrderedCount() {
+        return rowCount;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Continue the search until the row is known.
+     */
+    private void find(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+        while (rowCount <= row) {
+            double key = heapKeys[0];
+            int reference = pop();
+            if (reference < 0) {
+                addRow(-1 - reference, key);
+            } else if (index.left[reference] < 0) {
+                for (int position = index.nodeFrom[reference]; position < index.nodeTo[reference]; position++) {
+                    push(index.itemDistance(position, x, y, z), -1 - position);
+                }
+            } else {
+                push(index.boxDistance(index.left[reference], x, y, z), index.left[reference]);
+                push(index.boxDistance(index.right[reference], x, y, z), index.right[reference]);
+            }
+        }
+    }
+
+    private void addRow(int position, double distance) {
+        if (rowCount == rows.length) {
+            rows = Arrays.copyOf(rows, rowCount * 2);
+            rowDistances = Arrays.copyOf(rowDistances, rowCount * 2);
+        }
+        rows[rowCount] = position;
+        rowDistances[rowCount++] = distance;
+    }
+
+    private void push(double key, int reference) {
+        if (heapSize == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapReferences = Arrays.copyOf(heapReferences, heapSize * 2);
+        }
+        int child = heapSize++;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (heapKeys[parent] <= key) break;
+            heapKeys[child] = heapKeys[parent];
+            heapReferences[child] = heapReferences[parent];
+            child = parent;
+        }
+        heapKeys[child] = key;
+        heapReferences[child] = reference;
+    }
+
+    /**
+     * @return the reference with the smallest key, which is removed
+     */
+    private int pop() {
+        int top = heapReferences[0];
+        double key = heapKeys[--heapSize];
+        int reference = heapReferences[heapSize];
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+            if (key <= heapKeys[child]) break;
+            heapKeys[parent] = heapKeys[child];
+            heapReferences[parent] = heapReferences[child];
+            parent = child;
+        }
+        heapKeys[parent] = key;
+        heapReferences[parent] = reference;
+        return top;
+    }
+}
@@ -0,0 +1,60 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.Serializable;
+
+/**
+ * A named place returned by a {@link ReverseGeocoder}, e.g. a city. Immutable.
+ */
+public class Place implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String name;
+    private final String region;
+    private final String country;
+    private final double latitude;
+    private final double longitude;
+
+    public Place(String name, String region, String country, double latitude, double longitude) {
+        this.name = name;
+        this.region = region;
+        this.country = country;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the administrative region, e.g. a state, or null if unknown
+     */
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @return the country, e.g. an ISO 3166 code, or null if unknown
+     */
+    public String getCountry() {
+        return country;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    @Override
+    public String toString() {
+        return "Place{" +
+                "name='" + name + '\'' +
+                ", region='" + region + '\'' +
+                ", country='" + country + '\'' +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                '}';
+    }
+}
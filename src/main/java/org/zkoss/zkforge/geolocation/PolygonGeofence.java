@@ -0,0 +1,60 @@
+package org.zkoss.zkforge.geolocation;
+
+/**
+ * A geofence inside a simple polygon. Edges are straight lines in latitude/longitude, which is accurate enough for
+ * regions up to a few kilometers, e.g. sites or buildings.
+ */
+public class PolygonGeofence extends Geofence {
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    /**
+     * @param latitudes the latitudes of the vertices, in order
+     * @param longitudes the longitudes of the vertices, in the same order
+     */
+    public PolygonGeofence(String id, double[] latitudes, double[] longitudes) {
+        super(id);
+        if (latitudes.length != longitudes.length || latitudes.length < 3) {
+            throw new IllegalArgumentException("a polygon needs at least 3 vertices with both coordinates");
+        }
+        this.latitudes = latitudes.clone();
+        this.longitudes = longitudes.clone();
+        minLatitude = maxLatitude = latitudes[0];
+        minLongitude = maxLongitude = longitudes[0];
+        for (int i = 1; i < latitudes.length; i++) {
+            minLatitude = Math.min(minLatitude, latitudes[i]);
+            maxLatitude = Math.max(maxLatitude, latitudes[i]);
+            minLongitude = Math.min(minLongitude, longitudes[i]);
+            maxLongitude = Math.max(maxLongitude, longitudes[i]);
+        }
+    }
+
+    /**
+     * Ray casting: the position is inside if a ray from it crosses the edges an odd number of times.
+     */
+    @Override
+    public boolean contains(double latitude, double longitude) {
+        if (!isInBounds(latitude, longitude)) return false;
+        boolean inside = false;
+        for (int i = 0, j = latitudes.length - 1; i < latitudes.length; j = i++) {
+            if ((latitudes[i] > latitude) != (latitudes[j] > latitude)
+                    && longitude < (longitudes[j] - longitudes[i]) * (latitude - latitudes[i])
+                    / (latitudes[j] - latitudes[i]) + longitudes[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    public int getVertexCount() {
+        return latitudes.length;
+    }
+
+    public double getLatitude(int vertex) {
+        return latitudes[vertex];
+    }
+
+    public double getLongitude(int vertex) {
+        return longitudes[vertex];
+    }
+}
@@ -0,0 +1,37 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.Serializable;
+
+/**
+ * The last position a desktop received, see {@link GeolocationHelper#getLastKnownPosition()}.
+ * Updated while decoding, possibly outside the desktop's execution.
+ */
+class PositionCache implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private volatile Entry last;
+
+    void update(GeolocationPosition position) {
+        last = new Entry(position, System.currentTimeMillis());
+    }
+
+    /**
+     * @param maxAge the maximal time in milliseconds since the position was received
+     * @return the last position, or null if none was received within the time
+     */
+    GeolocationPosition get(long maxAge) {
+        Entry entry = last;
+        return entry != null && System.currentTimeMillis() - entry.receivedAt <= maxAge ? entry.position : null;
+    }
+
+    private static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final GeolocationPosition position;
+        /** server time, the position's own timestamp comes from the browser's clock */
+        private final long receivedAt;
+
+        private Entry(GeolocationPosition position, long receivedAt) {
+            this.position = position;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
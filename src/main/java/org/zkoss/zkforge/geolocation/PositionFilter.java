@@ -0,0 +1,106 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.Serializable;
+
+/**
+ * Smooths a stream of positions of one device and drops the ones that don't move noticeably.
+ *
+ * <p>Browser fixes jump around within their accuracy radius. This filter is a constant-memory Kalman filter: each fix
+ * moves the estimate by a weight that grows with the fix's accuracy and with the time since the previous fix, so a
+ * precise fix counts more than a coarse one. A smoothed position closer than the minimal distance to the last
+ * delivered one is suppressed, so listeners don't re-render or re-query on jitter.</p>
+ *
+ * <p>A filter holds the state of one device; use one instance per desktop with
+ * {@link GeolocationHelper#setPositionFilter(PositionFilter)}. Thread-safe.</p>
+ */
+public class PositionFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final double DEFAULT_PROCESS_NOISE = 3;
+    public static final double DEFAULT_MIN_DISTANCE = 5;
+    protected static final double MIN_ACCURACY = 1;
+    private final double processNoise;
+    private final double minDistance;
+    private double latitude;
+    private double longitude;
+    /** the estimate's variance in square meters, negative before the first fix */
+    private double variance = -1;
+    private long timestamp;
+    private double deliveredLatitude;
+    private double deliveredLongitude;
+    private long suppressed;
+
+    public PositionFilter() {
+        this(DEFAULT_PROCESS_NOISE, DEFAULT_MIN_DISTANCE);
+    }
+
+    /**
+     * @param processNoise how fast the device is expected to move, in meters per second; a larger value follows the
+     *                     fixes more closely, a smaller one smooths more
+     * @param minDistance the minimal movement in meters between two delivered positions, 0 to deliver every fix
+     */
+    public PositionFilter(double processNoise, double minDistance) {
+        this.processNoise = processNoise;
+        this.minDistance = minDistance;
+    }
+
+    /**
+     * @return the smoothed position, or null if it moved less than the minimal distance since the last delivered one
+     */
+    public synchronized GeolocationPosition filter(GeolocationPosition position) {
+        GeolocationCoordinates coords = position.getCoords();
+        double accuracy = Math.max(MIN_ACCURACY, coords.getAccuracy());
+        if (variance < 0) {
+            latitude = coords.getLatitude();
+            longitude = coords.getLongitude();
+            variance = accuracy * accuracy;
+            timestamp = position.getTimestamp();
+            return deliver(position);
+        }
+        long elapsed = position.getTimestamp() - timestamp;
+        if (elapsed > 0) {
+            variance += elapsed * processNoise * processNoise / 1000;
+            timestamp = position.getTimestamp();
+        }
+        double gain = variance / (variance + accuracy * accuracy);
+        latitude += gain * (coords.getLatitude() - latitude);
+        longitude += gain * (coords.getLongitude() - longitude);
+        variance = (1 - gain) * variance;
+        if (GeoDistance.distance(deliveredLatitude, deliveredLongitude, latitude, longitude) < minDistance) {
+            suppressed++;
+            return null;
+        }
+        return deliver(position);
+    }
+
+    private GeolocationPosition deliver(GeolocationPosition position) {
+        deliveredLatitude = latitude;
+        deliveredLongitude = longitude;
+        GeolocationCoordinates source = position.getCoords();
+        GeolocationCoordinates coords = new GeolocationCoordinates();
+        coords.latitude = latitude;
+        coords.longitude = longitude;
+        coords.accuracy = Math.sqrt(variance);
+        coords.altitude = source.altitude;
+        coords.altitudeAccuracy = source.altitudeAccuracy;
+        coords.heading = source.heading;
+        coords.speed = source.speed;
+        GeolocationPosition smoothed = new GeolocationPosition();
+        smoothed.setTimestamp(position.getTimestamp());
+        smoothed.setCoords(coords);
+        return smoothed;
+    }
+
+    /**
+     * Forget the estimate, e.g. after the device was off for a while. The next fix is delivered as is.
+     */
+    public synchronized void reset() {
+        variance = -1;
+    }
+
+    /**
+     * @return the number of fixes suppressed so far
+     */
+    public synchronized long getSuppressed() {
+        return suppressed;
+    }
+}
@@ -0,0 +1,56 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.util.Locale;
+
+/**
+ * Options of {@link GeolocationHelper#getCurrentPosition(PositionOptions)}, see
+ * <a href="https://developer.mozilla.org/en-US/docs/Web/API/Geolocation/getCurrentPosition#options">PositionOptions</a>.
+ */
+public class PositionOptions {
+    protected boolean enableHighAccuracy;
+    protected long timeout = -1;
+    protected long maximumAge;
+
+    public boolean isEnableHighAccuracy() {
+        return enableHighAccuracy;
+    }
+
+    /**
+     * @param enableHighAccuracy true to ask for the most accurate position, e.g. GPS, at the cost of time and power;
+     *                           default false
+     */
+    public void setEnableHighAccuracy(boolean enableHighAccuracy) {
+        this.enableHighAccuracy = enableHighAccuracy;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @param timeout the maximal time in milliseconds to wait for a position, default -1 (no timeout)
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getMaximumAge() {
+        return maximumAge;
+    }
+
+    /**
+     * @param maximumAge the maximal age in milliseconds of a cached position that may be returned, default 0
+     *                   (always get a new position). The server's last known position of the desktop is used too.
+     */
+    public void setMaximumAge(long maximumAge) {
+        this.maximumAge = maximumAge;
+    }
+
+    /**
+     * @return the options as a JavaScript object literal
+     */
+    protected String toJavaScript() {
+        return String.format(Locale.ROOT, "{enableHighAccuracy:%b,maximumAge:%d%s}", enableHighAccuracy, maximumAge,
+                timeout < 0 ? "" : ",timeout:" + timeout);
+    }
+}
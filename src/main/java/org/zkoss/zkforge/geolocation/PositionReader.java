@@ -0,0 +1,117 @@
+package org.zkoss.zkforge.geolocation;
+
+import com.google.gson.stream.*;
+
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Reads positions and errors without reflection, from JSON text token by token with Gson's streaming
+ * {@link JsonReader}, or from maps of the AU request data parsed by ZK.
+ *
+ * <p>Replaces binding them with Gson, which costs reflective field access on every event and building the type
+ * adapters on the first one. A value of an unexpected type throws {@link IllegalArgumentException}, then
+ * {@link GeolocationEvent} falls back to Gson, which coerces more leniently.</p>
+ */
+class PositionReader {
+
+    /**
+     * @param json the position as JSON text, read with a streaming parser straight into the result
+     */
+    static GeolocationPosition readPosition(String json) {
+        GeolocationPosition position = new GeolocationPosition();
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("timestamp".equals(name)) {
+                    position.timestamp = (long) nextDouble(reader);
+                } else if ("coords".equals(name) && reader.peek() != JsonToken.NULL) {
+                    position.coords = readCoordinates(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Invalid position: " + json, e);
+        }
+        return position;
+    }
+
+    private static GeolocationCoordinates readCoordinates(JsonReader reader) throws IOException {
+        GeolocationCoordinates coords = new GeolocationCoordinates();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "latitude": coords.latitude = nextDouble(reader); break;
+                case "longitude": coords.longitude = nextDouble(reader); break;
+                case "altitude": coords.altitude = nextDouble(reader); break;
+                case "accuracy": coords.accuracy = nextDouble(reader); break;
+                case "altitudeAccuracy": coords.altitudeAccuracy = nextDouble(reader); break;
+                case "heading": coords.heading = nextDouble(reader); break;
+                case "speed": coords.speed = nextDouble(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return coords;
+    }
+
+    /**
+     * @return the number, 0 for null as Gson leaves missing primitives
+     */
+    private static double nextDouble(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        if (reader.peek() != JsonToken.NUMBER) {
+            throw new IllegalStateException("not a number: " + reader.peek());
+        }
+        return reader.nextDouble();
+    }
+
+    static GeolocationPositionError readError(String json) {
+        int code = 0;
+        String message = null;
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("code".equals(name)) {
+                    code = (int) nextDouble(reader);
+                } else if ("message".equals(name) && reader.peek() == JsonToken.STRING) {
+                    message = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Invalid error: " + json, e);
+        }
+        return new GeolocationPositionError(code, message);
+    }
+
+    static GeolocationPositionError readError(Map<?, ?> map) {
+        Object message = map.get("message");
+        if (message != null && !(message instanceof String)) {
+            throw new IllegalArgumentException("message is not a string: " + message);
+        }
+        return new GeolocationPositionError((int) toDouble(map.get("code")), (String) message);
+    }
+
+    /**
+     * @return the number, 0 for null as Gson leaves missing primitives
+     */
+    private static double toDouble(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        throw new IllegalArgumentException("not a number: " + value);
+    }
+}
@@ -0,0 +1,15 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.IOException;
+
+/**
+ * Turns a position into a place, e.g. with a gazetteer or a geocoding service.
+ * Implementations must be thread-safe. Wrap a slow implementation in {@link CachingReverseGeocoder}.
+ */
+public interface ReverseGeocoder {
+    /**
+     * @return the place at or near the position, or null if none is known
+     * @throws IOException if the lookup failed, e.g. the service is unavailable
+     */
+    Place reverse(double latitude, double longitude) throws IOException;
+}
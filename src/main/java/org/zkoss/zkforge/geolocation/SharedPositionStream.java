@@ -0,0 +1,137 @@
+package org.zkoss.zkforge.geolocation;
+
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.sys.DesktopCache;
+import org.zkoss.zk.ui.sys.WebAppCtrl;
+import org.zkoss.zkforge.core.AsyncEventDecoder;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The shared position watch of one session, see {@link GeolocationHelper#watchSharedPosition(Component, PositionOptions)}.
+ * The leader tab's fixes arrive on its desktop and are fanned out in memory to every subscribed desktop of the session,
+ * where each fix runs through the desktop's own cache, filter and geofences like a fix of its own watch.
+ *
+ * <p>It keeps desktop ids and component uuids rather than the desktops, so it can be replicated with the session;
+ * the desktops are looked up in the session's desktop cache for each fix.</p>
+ */
+class SharedPositionStream implements Serializable {
+    private static final long serialVersionUID = 1L;
+    protected static final String SHARED_POSITION_KEY = "browserkit.sharedposition";
+    /** key: desktop id */
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong lastTimestamp = new AtomicLong(Long.MIN_VALUE);
+
+    static SharedPositionStream get(Session session, boolean create) {
+        SharedPositionStream stream = (SharedPositionStream) session.getAttribute(SHARED_POSITION_KEY);
+        if (stream == null && create) {
+            synchronized (session) {
+                stream = (SharedPositionStream) session.getAttribute(SHARED_POSITION_KEY);
+                if (stream == null) {
+                    stream = new SharedPositionStream();
+                    session.setAttribute(SHARED_POSITION_KEY, stream);
+                }
+            }
+        }
+        return stream;
+    }
+
+    void subscribe(Desktop desktop, Component target) {
+        subscribers.put(desktop.getId(), new Subscriber(target == null ? null : target.getUuid()));
+    }
+
+    void unsubscribe(Desktop desktop) {
+        subscribers.remove(desktop.getId());
+    }
+
+    /**
+     * @return the target of the desktop's subscription, or null if it has none or is not subscribed
+     */
+    Component getTarget(Desktop desktop) {
+        Subscriber subscriber = subscribers.get(desktop.getId());
+        return subscriber == null ? null : subscriber.getTarget(desktop);
+    }
+
+    /**
+     * @return whether the desktop is subscribed and its target, if any, is still attached
+     */
+    boolean isSubscribed(Desktop desktop) {
+        Subscriber subscriber = subscribers.get(desktop.getId());
+        return subscriber != null && subscriber.isTargetAlive(desktop);
+    }
+
+    /**
+     * Deliver a fix of the leader tab to every subscriber. Fixes not newer than the last delivered one are dropped,
+     * e.g. when browsers without Web Locks let several tabs lead.
+     *
+     * @param data the request data of the fix
+     * @param local the desktop that received the fix
+     * @param localPipeline turns the fix into the events of the local desktop's subscription, or null if the local
+     *                      desktop is not subscribed
+     * @return the events for the subscriber on the local desktop, the other desktops get theirs with server push
+     */
+    List<Event> fanOut(Map<String, Object> data, Desktop local,
+                       Function<Map<String, Object>, List<Event>> localPipeline) {
+        Map<String, Object> fix = new HashMap<>(data);
+        fix.put("watchId", GeolocationHelper.SHARED_WATCH_ID);
+        GeolocationPosition position = GeolocationEvent.getEvent(fix).getGeoLocationPosition();
+        if (position != null && lastTimestamp.getAndAccumulate(position.getTimestamp(), Math::max) >= position.getTimestamp()) {
+            return Collections.emptyList();
+        }
+        DesktopCache desktops = ((WebAppCtrl) local.getWebApp()).getDesktopCache(local.getSession());
+        List<Event> localEvents = Collections.emptyList();
+        for (Map.Entry<String, Subscriber> entry : subscribers.entrySet()) {
+            Subscriber subscriber = entry.getValue();
+            if (entry.getKey().equals(local.getId())) {
+                if (localPipeline != null) {
+                    localEvents = localPipeline.apply(fix);
+                }
+                continue;
+            }
+            Desktop desktop = desktops.getDesktopIfAny(entry.getKey());
+            if (desktop == null || !desktop.isAlive()) {
+                subscribers.remove(entry.getKey(), subscriber);
+                continue;
+            }
+            try {
+                // the pipeline reads the desktop's state, so it is set up in the desktop's execution
+                Executions.schedule(desktop, event -> {
+                    if (subscriber.isTargetAlive(desktop)) {
+                        Function<Map<String, Object>, List<Event>> pipeline =
+                                GeoLocationAuService.getPipeline(desktop, subscriber.getTarget(desktop));
+                        AsyncEventDecoder.postAll(desktop, () -> pipeline.apply(fix));
+                    }
+                }, new Event(GeolocationEvent.SHARED_EVENT_NAME));
+            } catch (DesktopUnavailableException | IllegalStateException e) {
+                subscribers.remove(entry.getKey(), subscriber);
+            }
+        }
+        return localEvents;
+    }
+
+    private static class Subscriber implements Serializable {
+        private static final long serialVersionUID = 1L;
+        /** null to broadcast to the desktop */
+        private final String targetUuid;
+
+        private Subscriber(String targetUuid) {
+            this.targetUuid = targetUuid;
+        }
+
+        private Component getTarget(Desktop desktop) {
+            return targetUuid == null ? null : desktop.getComponentByUuidIfAny(targetUuid);
+        }
+
+        /**
+         * @return false if the target was detached, true if it is attached or the subscriber has no target
+         */
+        private boolean isTargetAlive(Desktop desktop) {
+            return targetUuid == null || getTarget(desktop) != null;
+        }
+    }
+}
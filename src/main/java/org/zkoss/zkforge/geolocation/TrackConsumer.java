@@ -0,0 +1,14 @@
+package org.zkoss.zkforge.geolocation;
+
+/**
+ * Receives the fixes replayed by {@link TrackRecorder#replay(long, long, TrackConsumer)} as primitives,
+ * without allocating an object per fix.
+ */
+@FunctionalInterface
+public interface TrackConsumer {
+    /**
+     * @param timestamp the time of the fix in milliseconds since the epoch
+     * @param accuracy the accuracy in meters, rounded to decimeters
+     */
+    void accept(long timestamp, double latitude, double longitude, double accuracy);
+}
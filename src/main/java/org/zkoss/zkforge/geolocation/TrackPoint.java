@@ -0,0 +1,47 @@
+package org.zkoss.zkforge.geolocation;
+
+/**
+ * A fix of a recorded track, see {@link TrackRecorder#simplify(long, long, double)}. Immutable.
+ */
+public class TrackPoint {
+    private final long timestamp;
+    private final double latitude;
+    private final double longitude;
+    private final double accuracy;
+
+    public TrackPoint(long timestamp, double latitude, double longitude, double accuracy) {
+        this.timestamp = timestamp;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return the accuracy in meters
+     */
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    @Override
+    public String toString() {
+        return "TrackPoint{" +
+                "timestamp=" + timestamp +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", accuracy=" + accuracy +
+                '}';
+    }
+}
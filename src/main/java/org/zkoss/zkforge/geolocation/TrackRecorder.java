@@ -0,0 +1,339 @@
+package org.zkoss.zkforge.geolocation;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Records the fixes of one track, e.g. a worker's shift, in a compact append-only file for playback.
+ *
+ * <p>Each fix is stored as 4 variable-length integers: the time (milliseconds), latitude and longitude (1e-7 degrees)
+ * as zig-zag encoded differences to the previous fix, and the accuracy in decimeters. A fix usually takes 6 to 10
+ * bytes. Every {@value #INDEX_INTERVAL}th fix is stored relative to zero instead and listed in a sparse in-memory
+ * index, so a replay can start near any time without decoding the track from its beginning.</p>
+ *
+ * <p>The file is memory-mapped; the mapping grows by doubling, up to 2 GB. The header holds the length of the
+ * committed data, so fixes appended before a crash are kept. Reopening a file rebuilds the index with one sequential
+ * scan. Fixes must be appended in time order. Thread-safe: replays may run while fixes are appended.</p>
+ *
+ * <pre>{@code
+ * try (TrackRecorder track = new TrackRecorder(Paths.get("tracks", workerId + ".trk"))) {
+ *     track.append(event.getGeoLocationPosition());
+ *     track.replay(shiftStart, shiftEnd, (time, latitude, longitude, accuracy) -> ...);
+ *     List<TrackPoint> polyline = track.simplify(shiftStart, shiftEnd, 10); // 10 m tolerance
+ * }
+ * }</pre>
+ */
+public class TrackRecorder implements Closeable {
+    protected static final int MAGIC = 0x424B5452; // "BKTR"
+    protected static final int VERSION = 1;
+    protected static final int HEADER_SIZE = 16; // magic, version, committed length
+    protected static final int LENGTH_OFFSET = 8;
+    protected static final int INDEX_INTERVAL = 256;
+    protected static final int MAX_RECORD_SIZE = 4 * 10;
+    protected static final int INITIAL_MAPPING_SIZE = 64 * 1024;
+    protected static final double COORDINATE_SCALE = 1e7;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int length;
+    private int count;
+    private long lastTimestamp;
+    private int lastLatitude;
+    private int lastLongitude;
+    // the sparse index: the time and file offset of every INDEX_INTERVAL-th fix
+    private long[] indexTimestamps = new long[16];
+    private int[] indexOffsets = new int[16];
+    private int indexSize;
+    private boolean closed;
+
+    /**
+     * Open the track file, creating it if it doesn't exist.
+     *
+     * @throws IOException if the file can't be opened or is not a track file
+     */
+    public TrackRecorder(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Track file too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_MAPPING_SIZE));
+            if (size == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                length = HEADER_SIZE;
+                buffer.putLong(LENGTH_OFFSET, length);
+            } else {
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException("Not a track file: " + file);
+                }
+                long committed = buffer.getLong(LENGTH_OFFSET);
+                if (committed < HEADER_SIZE || committed > size) {
+                    throw new IOException("Corrupted track file: " + file);
+                }
+                length = (int) committed;
+                rebuildIndex();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void rebuildIndex() {
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_SIZE);
+        while (view.position() < length) {
+            int offset = view.position();
+            boolean restart = count % INDEX_INTERVAL == 0;
+            long timestamp = (restart ? 0 : lastTimestamp) + readSigned(view);
+            lastLatitude = (restart ? 0 : lastLatitude) + (int) readSigned(view);
+            lastLongitude = (restart ? 0 : lastLongitude) + (int) readSigned(view);
+            readUnsigned(view);
+            if (restart) {
+                addIndexEntry(timestamp, offset);
+            }
+            lastTimestamp = timestamp;
+            count++;
+        }
+    }
+
+    public void append(GeolocationPosition position) throws IOException {
+        GeolocationCoordinates coords = position.getCoords();
+        append(position.getTimestamp(), coords.getLatitude(), coords.getLongitude(), coords.getAccuracy());
+    }
+
+    /**
+     * @param timestamp the time of the fix in milliseconds since the epoch, not before the previous fix
+     * @param accuracy the accuracy in meters, stored in decimeters
+     * @throws IOException if the file can't grow
+     */
+    public synchronized void append(long timestamp, double latitude, double longitude, double accuracy) throws IOException {
+        if (closed) throw new IllegalStateException("Track is closed");
+        if (count > 0 && timestamp < lastTimestamp) {
+            throw new IllegalArgumentException("Fix at " + timestamp + " is before the previous fix at " + lastTimestamp);
+        }
+        int scaledLatitude = (int) Math.round(latitude * COORDINATE_SCALE);
+        int scaledLongitude = (int) Math.round(longitude * COORDINATE_SCALE);
+        boolean restart = count % INDEX_INTERVAL == 0;
+        ensureCapacity(length + MAX_RECORD_SIZE);
+        buffer.position(length);
+        writeSigned(buffer, restart ? timestamp : timestamp - lastTimestamp);
+        writeSigned(buffer, restart ? scaledLatitude : (long) scaledLatitude - lastLatitude);
+        writeSigned(buffer, restart ? scaledLongitude : (long) scaledLongitude - lastLongitude);
+        writeUnsigned(buffer, Math.max(0, Math.round(accuracy * 10)));
+        if (restart) {
+            addIndexEntry(timestamp, length);
+        }
+        length = buffer.position();
+        buffer.putLong(LENGTH_OFFSET, length);
+        lastTimestamp = timestamp;
+        lastLatitude = scaledLatitude;
+        lastLongitude = scaledLongitude;
+        count++;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if (required <= buffer.capacity()) return;
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max((long) buffer.capacity() * 2, required));
+        if (capacity < required) {
+            throw new IOException("Track file reached its maximal size");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void addIndexEntry(long timestamp, int offset) {
+        if (indexSize == indexTimestamps.length) {
+            indexTimestamps = Arrays.copyOf(indexTimestamps, indexSize * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+        }
+        indexTimestamps[indexSize] = timestamp;
+        indexOffsets[indexSize++] = offset;
+    }
+
+    /**
+     * Decode the fixes between the times, inclusive, straight from the mapped file in time order.
+     * Only the index block containing {@code from} and the following ones are decoded.
+     */
+    public void replay(long from, long to, TrackConsumer consumer) {
+        ByteBuffer view;
+        int end;
+        int block;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Track is closed");
+            if (indexSize == 0) return;
+            view = buffer.duplicate();
+            end = length;
+            block = findBlock(from);
+            view.position(indexOffsets[block]);
+        }
+        int index = block * INDEX_INTERVAL;
+        long timestamp = 0;
+        int latitude = 0;
+        int longitude = 0;
+        while (view.position() < end) {
+            if (index++ % INDEX_INTERVAL == 0) {
+                timestamp = latitude = longitude = 0;
+            }
+            timestamp += readSigned(view);
+            latitude += (int) readSigned(view);
+            longitude += (int) readSigned(view);
+            long accuracy = readUnsigned(view);
+            if (timestamp > to) break;
+            if (timestamp >= from) {
+                consumer.accept(timestamp, latitude / COORDINATE_SCALE, longitude / COORDINATE_SCALE, accuracy / 10d);
+            }
+        }
+    }
+
+    /**
+     * @return the last block starting before the time, whose fixes may include the time
+     */
+    private int findBlock(long timestamp) {
+        int low = 0, high = indexSize - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (indexTimestamps[middle] < timestamp) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Downsample the fixes between the times, inclusive, with the
+     * <a href="https://en.wikipedia.org/wiki/Ramer%E2%80%93Douglas%E2%80%93Peucker_algorithm">Douglas–Peucker algorithm</a>,
+     * e.g. to draw the track on a map. The first and last fixes are always kept.
+     *
+     * @param tolerance the maximal distance in meters between the track and the simplified line
+     */
+    public List<TrackPoint> simplify(long from, long to, double tolerance) {
+        PointBuffer points = new PointBuffer();
+        replay(from, to, points);
+        int size = points.size;
+        if (size == 0) return Collections.emptyList();
+        // project to meters around the first fix, precise enough for a track
+        double xScale = CircleGeofence.METERS_PER_DEGREE * Math.cos(Math.toRadians(points.latitudes[0]));
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = points.longitudes[i] * xScale;
+            y[i] = points.latitudes[i] * CircleGeofence.METERS_PER_DEGREE;
+        }
+        boolean[] keep = new boolean[size];
+        keep[0] = keep[size - 1] = true;
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, size - 1});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int first = range[0], last = range[1];
+            int farthest = -1;
+            double maxDistance = tolerance;
+            for (int i = first + 1; i < last; i++) {
+                double distance = distanceToSegment(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                ranges.push(new int[]{first, farthest});
+                ranges.push(new int[]{farthest, last});
+            }
+        }
+        List<TrackPoint> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                result.add(new TrackPoint(points.timestamps[i], points.latitudes[i], points.longitudes[i], points.accuracies[i]));
+            }
+        }
+        return result;
+    }
+
+    private static double distanceToSegment(double x, double y, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the size of the recorded data in bytes, including the header
+     */
+    public synchronized int getSize() {
+        return length;
+    }
+
+    /**
+     * Flush the recorded fixes to the disk and release the file. A closed track can't be used anymore.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        buffer.force();
+        channel.close();
+    }
+
+    private static void writeSigned(ByteBuffer buffer, long value) {
+        writeUnsigned(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    private static void writeUnsigned(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readSigned(ByteBuffer buffer) {
+        long value = readUnsigned(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readUnsigned(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Collects replayed fixes in growable primitive arrays.
+     */
+    private static class PointBuffer implements TrackConsumer {
+        private long[] timestamps = new long[64];
+        private double[] latitudes = new double[64];
+        private double[] longitudes = new double[64];
+        private double[] accuracies = new double[64];
+        private int size;
+
+        @Override
+        public void accept(long timestamp, double latitude, double longitude, double accuracy) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+                accuracies = Arrays.copyOf(accuracies, size * 2);
+            }
+            timestamps[size] = timestamp;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            accuracies[size++] = accuracy;
+        }
+    }
+}
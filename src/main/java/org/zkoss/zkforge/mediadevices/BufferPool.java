@@ -0,0 +1,44 @@
+package org.zkoss.zkforge.mediadevices;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of equally sized buffers, so receiving frames doesn't allocate a new array per frame.
+ */
+public class BufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final int bufferSize;
+    private final int maxBuffers;
+
+    public BufferPool(int bufferSize, int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+    }
+
+    /**
+     * @return a cleared buffer, or null if all buffers are in use
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            buffer.clear();
+            return buffer;
+        }
+        if (allocated.incrementAndGet() > maxBuffers) {
+            allocated.decrementAndGet();
+            return null;
+        }
+        return ByteBuffer.allocate(bufferSize);
+    }
+
+    public void release(ByteBuffer buffer) {
+        free.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,92 @@
+package org.zkoss.zkforge.mediadevices;
+
+/**
+ * Options of a frame capture started by {@link MediaDevicesHelper#startCapture(org.zkoss.zk.ui.Component, CaptureOptions, FrameProcessor)}.
+ */
+public class CaptureOptions {
+    protected int width = 640;
+    protected int height = 480;
+    protected double frameRate = 5;
+    protected String mimeType = "image/jpeg";
+    protected double quality = 0.8;
+    protected int maxQueuedFrames = 2;
+    protected int maxFrameSize = 2 * 1024 * 1024;
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @param width the width in pixels of the encoded frames, default 640
+     */
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @param height the height in pixels of the encoded frames, default 480
+     */
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * @param frameRate the maximal number of frames captured per second, default 5
+     */
+    public void setFrameRate(double frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @param mimeType the encoding of the frames, "image/jpeg" (default), "image/webp" or "image/png"
+     */
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public double getQuality() {
+        return quality;
+    }
+
+    /**
+     * @param quality the lossy encoding quality between 0 and 1, default 0.8
+     */
+    public void setQuality(double quality) {
+        this.quality = quality;
+    }
+
+    public int getMaxQueuedFrames() {
+        return maxQueuedFrames;
+    }
+
+    /**
+     * @param maxQueuedFrames the number of frames waiting for the processor before new frames are dropped, which is
+     *                        also the number of credits granted to the browser, default 2
+     */
+    public void setMaxQueuedFrames(int maxQueuedFrames) {
+        this.maxQueuedFrames = maxQueuedFrames;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * @param maxFrameSize the maximal size in bytes of an encoded frame, also the capacity of each pooled buffer, default 2 MB
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+}
@@ -0,0 +1,60 @@
+package org.zkoss.zkforge.mediadevices;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An encoded frame captured by the browser.
+ *
+ * <p>The data buffer is pooled: it is only valid during {@link FrameProcessor#process(Frame)} and is reused for
+ * another frame afterwards. Copy the bytes if they are needed later.</p>
+ */
+public class Frame {
+    private final ByteBuffer data;
+    private final long sequence;
+    private final long timestamp;
+    private final int width;
+    private final int height;
+    private final String mimeType;
+
+    public Frame(ByteBuffer data, long sequence, long timestamp, int width, int height, String mimeType) {
+        this.data = data;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.width = width;
+        this.height = height;
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * @return the encoded image, positioned at its first byte, see {@link #getMimeType()}
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * @return the capture sequence number assigned by the browser, gaps mean dropped frames
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the capture time in milliseconds since the epoch, as reported by the browser
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+}
@@ -0,0 +1,145 @@
+package org.zkoss.zkforge.mediadevices;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Receives the frames of one capture and hands them to its {@link FrameProcessor} on an executor.
+ *
+ * <p>Flow control is credit based: the browser may only send a frame while it holds a credit, and every response
+ * tells it how many credits are left, i.e. the free slots of a bounded queue. A frame arriving when the queue is
+ * full is dropped instead of queued, so a slow processor makes the browser skip frames rather than grow the heap.</p>
+ */
+public class FrameChannel {
+    private final FrameProcessor processor;
+    private final Executor executor;
+    private final BlockingQueue<Frame> queue;
+    private final BufferPool bufferPool;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong receivedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong failedFrames = new AtomicLong();
+    private volatile boolean closed;
+
+    public FrameChannel(FrameProcessor processor, Executor executor, CaptureOptions options) {
+        this.processor = processor;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<>(options.getMaxQueuedFrames());
+        // queued frames + the one being processed + the one being received
+        this.bufferPool = new BufferPool(options.getMaxFrameSize(), options.getMaxQueuedFrames() + 2);
+    }
+
+    /**
+     * @return the number of frames the browser may send now
+     */
+    public int getCredits() {
+        return closed ? 0 : queue.remainingCapacity();
+    }
+
+    /**
+     * @return a buffer to receive a frame into, or null if the frame has to be dropped
+     */
+    ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = closed ? null : bufferPool.acquire();
+        if (buffer == null) {
+            receivedFrames.incrementAndGet();
+            droppedFrames.incrementAndGet();
+        }
+        return buffer;
+    }
+
+    int getMaxFrameSize() {
+        return bufferPool.getBufferSize();
+    }
+
+    /**
+     * Queue a received frame for processing, or drop it if the processor is behind.
+     *
+     * @return true if the frame is queued
+     */
+    boolean offer(Frame frame) {
+        receivedFrames.incrementAndGet();
+        if (closed || !queue.offer(frame)) {
+            droppedFrames.incrementAndGet();
+            bufferPool.release(frame.getData());
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Count a frame dropped before being queued, e.g. because the browser sent it without credit.
+     *
+     * @param buffer the buffer acquired for the frame, or null if none
+     */
+    void drop(ByteBuffer buffer) {
+        receivedFrames.incrementAndGet();
+        droppedFrames.incrementAndGet();
+        if (buffer != null) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        do {
+            Frame frame;
+            while ((frame = queue.poll()) != null) {
+                try {
+                    if (!closed) {
+                        processor.process(frame);
+                    }
+                } catch (Exception e) {
+                    failedFrames.incrementAndGet();
+                } finally {
+                    bufferPool.release(frame.getData());
+                }
+            }
+            draining.set(false);
+            // a frame offered after the last poll but before resetting the flag would be left behind
+        } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Stop accepting frames and discard the queued ones.
+     */
+    public void close() {
+        closed = true;
+        Frame frame;
+        while ((frame = queue.poll()) != null) {
+            bufferPool.release(frame.getData());
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the number of frames that reached the server, including dropped ones
+     */
+    public long getReceivedFrames() {
+        return receivedFrames.get();
+    }
+
+    /**
+     * @return the number of frames dropped on the server because the processor was behind
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * @return the number of frames for which the processor threw an exception
+     */
+    public long getFailedFrames() {
+        return failedFrames.get();
+    }
+}
@@ -0,0 +1,12 @@
+package org.zkoss.zkforge.mediadevices;
+
+/**
+ * Consumes the frames of a capture. It runs on the helper's frame executor, not on the desktop's event thread,
+ * so it must not access components directly. Use server push (e.g. {@code Executions.schedule()}) to update the UI.
+ *
+ * <p>Frames of one capture are processed one at a time, in order.</p>
+ */
+@FunctionalInterface
+public interface FrameProcessor {
+    void process(Frame frame) throws Exception;
+}
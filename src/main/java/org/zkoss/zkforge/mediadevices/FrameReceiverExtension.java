@@ -0,0 +1,73 @@
+package org.zkoss.zkforge.mediadevices;
+
+import org.zkoss.zk.ui.Desktop;
+import org.zkoss.zkforge.core.DesktopAuExtension;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+
+/**
+ * The binary channel receiving captured frames, mounted under ZK's update URI, e.g. {@code /zkau/browserkit/frame}.
+ *
+ * <ul>
+ *     <li>{@code POST ?dtid=&streamId=&seq=&ts=&width=&height=} with the encoded frame as the request body</li>
+ *     <li>{@code GET ?dtid=&streamId=} asks for credits without sending a frame</li>
+ * </ul>
+ * Both respond with the remaining credits, e.g. {@code {"credits":2}}, see {@link FrameChannel}.
+ */
+public class FrameReceiverExtension extends DesktopAuExtension {
+    public static final String PATH = "/browserkit/frame";
+
+    @Override
+    public void service(HttpServletRequest request, HttpServletResponse response, String pi) throws ServletException, IOException {
+        Desktop desktop = getDesktop(request, request.getParameter("dtid"));
+        FrameChannel channel = desktop == null ? null : MediaDevicesHelper.getFrameChannel(desktop, request.getParameter("streamId"));
+        if (channel == null || channel.isClosed()) {
+            response.sendError(HttpServletResponse.SC_GONE, "Capture not found or stopped");
+            return;
+        }
+        if ("POST".equals(request.getMethod())) {
+            receiveFrame(request, channel);
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write("{\"credits\":" + channel.getCredits() + "}");
+    }
+
+    protected void receiveFrame(HttpServletRequest request, FrameChannel channel) throws IOException {
+        int length = request.getContentLength();
+        if (length <= 0 || length > channel.getMaxFrameSize() || channel.getCredits() == 0) {
+            channel.drop(null);
+            return;
+        }
+        ByteBuffer buffer = channel.acquireBuffer();
+        if (buffer == null) {
+            return;
+        }
+        buffer.limit(length);
+        ReadableByteChannel source = Channels.newChannel(request.getInputStream());
+        while (buffer.position() < length) {
+            if (source.read(buffer) < 0) {
+                channel.drop(buffer);
+                return;
+            }
+        }
+        buffer.flip();
+        channel.offer(new Frame(buffer,
+                parseLong(request.getParameter("seq")),
+                parseLong(request.getParameter("ts")),
+                (int) parseLong(request.getParameter("width")),
+                (int) parseLong(request.getParameter("height")),
+                request.getContentType()));
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? 0 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.zkoss.zkforge.mediadevices;
+
+import org.zkoss.zk.au.*;
+import org.zkoss.zk.ui.event.Events;
+
+public class MediaDevicesAuService implements AuService {
+
+    @Override
+    public boolean service(AuRequest request, boolean everError) {
+        final String cmd = request.getCommand();
+        if (MediaStreamEvent.EVENT_NAME.equals(cmd)) {
+            MediaStreamEvent event = MediaStreamEvent.getEvent(request);
+            if (!event.isSuccess() || MediaStreamEvent.STOPPED.equals(event.getState())) {
+                MediaDevicesHelper.closeFrameChannel(request.getDesktop(), request.getUuid());
+            }
+            Events.postEvent(event);
+            return true; // Handled - stop further processing
+        }
+
+        return false; // Not handled - continue to next handler
+    }
+}
@@ -0,0 +1,175 @@
+package org.zkoss.zkforge.mediadevices;
+
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.util.Clients;
+import org.zkoss.zkforge.core.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Static helper class that captures camera frames with the browser's
+ * <a href="https://developer.mozilla.org/en-US/docs/Web/API/MediaDevices/getUserMedia">MediaDevices API</a>,
+ * e.g. for barcode or document scanning.
+ *
+ * <p>The browser grabs frames at the configured rate and resolution, encodes them (JPEG by default) and posts the
+ * bytes to {@link FrameReceiverExtension}, bypassing AU requests and base64. The server hands each frame to a
+ * {@link FrameProcessor} on an executor, off the desktop's event thread. Credit-based flow control drops frames when
+ * the processor falls behind, see {@link FrameChannel}.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>{@code
+ * MediaDevicesHelper.init();
+ * MediaDevicesHelper.startCapture(preview, new CaptureOptions(), frame -> {
+ *     String code = barcodeReader.decode(frame.getData());
+ *     // notify the desktop with server push
+ * });
+ *
+ * @Listen(MediaStreamEvent.EVENT_NAME + " = #preview")
+ * public void handleStream(MediaStreamEvent event) {
+ *     if (!event.isSuccess()) {
+ *         // e.g. permission denied
+ *     }
+ * }
+ * }</pre>
+ */
+public class MediaDevicesHelper {
+    protected static final String MEDIA_DEVICES_HELPER_KEY = "browserkit.mediadeviceshelper";
+    protected static final String MEDIA_DEVICES_HELPER_JS_PATH = "~./js/MediaDevicesHelper.js";
+    protected static final MediaDevicesAuService auService = new MediaDevicesAuService();
+    /** key: desktop id + ":" + target component uuid */
+    private static final Map<String, FrameChannel> channels = new ConcurrentHashMap<>();
+    private static volatile Executor frameExecutor;
+
+    static {
+        BrowserApiHelper.registerCommand(MediaStreamEvent.EVENT_NAME, MEDIA_DEVICES_HELPER_KEY, auService);
+        BrowserApiHelper.registerResources(MEDIA_DEVICES_HELPER_KEY, new DesktopResources() {
+            @Override
+            public void release(Desktop desktop) {
+                String prefix = desktop.getId() + ":";
+                channels.entrySet().removeIf(entry -> {
+                    if (entry.getKey().startsWith(prefix)) {
+                        entry.getValue().close();
+                        return true;
+                    }
+                    return false;
+                });
+            }
+
+            @Override
+            public List<String> findAlive(Desktop desktop) {
+                String prefix = desktop.getId() + ":";
+                return channels.keySet().stream()
+                        .filter(key -> key.startsWith(prefix))
+                        .map(key -> "frame channel " + key)
+                        .collect(Collectors.toList());
+            }
+        });
+    }
+
+    /**
+     * Initialize media devices helper for the current desktop if not already initialized.
+     * You should call this method in a Composer's life cycle method e.g. {@link org.zkoss.zk.ui.util.Composer#doAfterCompose(Component)}.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void init() {
+        if (BrowserApiHelper.init(MEDIA_DEVICES_HELPER_KEY, MEDIA_DEVICES_HELPER_JS_PATH)) {
+            BrowserApiHelper.addAuExtension(Executions.getCurrent().getDesktop().getWebApp(),
+                    FrameReceiverExtension.PATH, FrameReceiverExtension::new);
+        }
+    }
+
+    /**
+     * Start capturing camera frames. The browser asks for camera permission if needed,
+     * the target receives {@link MediaStreamEvent} when the stream starts, stops or fails.
+     * Starting a capture on a target that is capturing restarts it with the new options.
+     *
+     * @param target the component whose element shows the camera preview
+     * @param options the capture options
+     * @param processor consumes the frames, see {@link FrameProcessor}
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void startCapture(Component target, CaptureOptions options, FrameProcessor processor) {
+        if (!BrowserApiHelper.isInitialized(MEDIA_DEVICES_HELPER_KEY)) return;
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        FrameChannel previous = channels.put(getChannelKey(desktop, target.getUuid()),
+                new FrameChannel(processor, getFrameExecutor(), options));
+        if (previous != null) {
+            previous.close();
+        }
+        Clients.evalJavaScript(String.format(Locale.ROOT,
+                "MediaDevicesHelper.start('%s','%s',{width:%d,height:%d,frameRate:%f,mimeType:'%s',quality:%f,credits:%d})",
+                target.getUuid(), desktop.getUpdateURI(FrameReceiverExtension.PATH),
+                options.getWidth(), options.getHeight(), options.getFrameRate(),
+                options.getMimeType(), options.getQuality(), options.getMaxQueuedFrames()));
+    }
+
+    /**
+     * Stop capturing and release the camera. Queued frames are discarded.
+     */
+    public static void stopCapture(Component target) {
+        if (!BrowserApiHelper.isInitialized(MEDIA_DEVICES_HELPER_KEY)) return;
+        closeFrameChannel(Executions.getCurrent().getDesktop(), target.getUuid());
+        Clients.evalJavaScript("MediaDevicesHelper.stop('" + target.getUuid() + "')");
+    }
+
+    /**
+     * @return the frame channel of the target's capture, e.g. to read its statistics, or null if not capturing
+     */
+    public static FrameChannel getFrameChannel(Component target) {
+        Desktop desktop = target.getDesktop();
+        return desktop == null ? null : getFrameChannel(desktop, target.getUuid());
+    }
+
+    static FrameChannel getFrameChannel(Desktop desktop, String uuid) {
+        return uuid == null ? null : channels.get(getChannelKey(desktop, uuid));
+    }
+
+    static void closeFrameChannel(Desktop desktop, String uuid) {
+        FrameChannel channel = channels.remove(getChannelKey(desktop, uuid));
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Dispose media devices helper for the current desktop. All captures of the desktop are stopped.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void dispose() {
+        BrowserApiHelper.ensureExecutionAvailable();
+        if (BrowserApiHelper.isInitialized(MEDIA_DEVICES_HELPER_KEY)) {
+            Clients.evalJavaScript("MediaDevicesHelper.stopAll()");
+        }
+        BrowserApiHelper.dispose(MEDIA_DEVICES_HELPER_KEY);
+    }
+
+    /**
+     * Set the executor running the frame processors. By default, a cached pool of daemon threads.
+     */
+    public static void setFrameExecutor(Executor executor) {
+        frameExecutor = executor;
+    }
+
+    protected static Executor getFrameExecutor() {
+        if (frameExecutor == null) {
+            synchronized (MediaDevicesHelper.class) {
+                if (frameExecutor == null) {
+                    frameExecutor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "browserkit-frame");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return frameExecutor;
+    }
+
+    private static String getChannelKey(Desktop desktop, String uuid) {
+        return desktop.getId() + ":" + uuid;
+    }
+}
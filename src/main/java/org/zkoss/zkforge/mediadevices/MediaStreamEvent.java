@@ -0,0 +1,68 @@
+package org.zkoss.zkforge.mediadevices;
+
+import org.zkoss.zk.au.AuRequest;
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.event.Event;
+
+import java.util.Map;
+
+/**
+ * Reports a state change of a capture: the camera stream started, stopped, or failed (e.g. permission denied).
+ */
+public class MediaStreamEvent extends Event {
+    public static final String EVENT_NAME = "onMediaStream";
+    public static final String STARTED = "started";
+    public static final String STOPPED = "stopped";
+    public static final String ERROR = "error";
+    private final String state;
+    private final String errorName;
+    private final String errorMessage;
+    private final long skippedFrames;
+
+    public MediaStreamEvent(Component target, String state, String errorName, String errorMessage, long skippedFrames) {
+        super(EVENT_NAME, target);
+        this.state = state;
+        this.errorName = errorName;
+        this.errorMessage = errorMessage;
+        this.skippedFrames = skippedFrames;
+    }
+
+    public static MediaStreamEvent getEvent(AuRequest request) {
+        Map<String, Object> data = request.getData();
+        Object skipped = data.get("skipped");
+        return new MediaStreamEvent(request.getComponent(),
+                String.valueOf(data.get("state")),
+                (String) data.get("errorName"),
+                (String) data.get("errorMessage"),
+                skipped instanceof Number ? ((Number) skipped).longValue() : 0);
+    }
+
+    /**
+     * @return {@link #STARTED}, {@link #STOPPED} or {@link #ERROR}
+     */
+    public String getState() {
+        return state;
+    }
+
+    public boolean isSuccess() {
+        return !ERROR.equals(state);
+    }
+
+    /**
+     * @return the DOMException name, e.g. "NotAllowedError", see <a href="https://developer.mozilla.org/en-US/docs/Web/API/MediaDevices/getUserMedia#exceptions">getUserMedia exceptions</a>
+     */
+    public String getErrorName() {
+        return errorName;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return the number of frames the browser skipped for lack of credits, reported when stopped
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+}
@@ -0,0 +1,104 @@
+package org.zkoss.zkforge.notification;
+
+import com.google.gson.Gson;
+
+/**
+ * A java representation of the title and options of a <a href="https://developer.mozilla.org/en-US/docs/Web/API/Notification/Notification">Notification</a>.
+ *
+ * <p>Notifications with the same tag replace each other, both in the browser and in the server-side queue of a
+ * desktop, see {@link NotificationHub}.</p>
+ */
+public class BrowserNotification {
+    protected static final Gson GSON = new Gson();
+    protected String title;
+    protected String body;
+    protected String tag;
+    protected String icon;
+    protected boolean requireInteraction;
+    protected boolean silent;
+    protected String data;
+    private transient String json;
+
+    public BrowserNotification(String title) {
+        this.title = title;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+        json = null;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @param tag identifies the notification, a newer notification with the same tag replaces the older one
+     */
+    public void setTag(String tag) {
+        this.tag = tag;
+        json = null;
+    }
+
+    public String getIcon() {
+        return icon;
+    }
+
+    /**
+     * @param icon the URL of the icon
+     */
+    public void setIcon(String icon) {
+        this.icon = icon;
+        json = null;
+    }
+
+    public boolean isRequireInteraction() {
+        return requireInteraction;
+    }
+
+    public void setRequireInteraction(boolean requireInteraction) {
+        this.requireInteraction = requireInteraction;
+        json = null;
+    }
+
+    public boolean isSilent() {
+        return silent;
+    }
+
+    public void setSilent(boolean silent) {
+        this.silent = silent;
+        json = null;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * @param data any application data, sent back in {@link NotificationEvent#getData()} when clicked or closed
+     */
+    public void setData(String data) {
+        this.data = data;
+        json = null;
+    }
+
+    /**
+     * @return the notification serialized as a JavaScript object literal, computed once and shared by all desktops
+     */
+    public String toJson() {
+        String result = json;
+        if (result == null) {
+            result = GSON.toJson(this);
+            json = result;
+        }
+        return result;
+    }
+}
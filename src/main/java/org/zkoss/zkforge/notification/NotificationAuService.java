@@ -0,0 +1,18 @@
+package org.zkoss.zkforge.notification;
+
+import org.zkoss.zk.au.*;
+import org.zkoss.zk.ui.event.Events;
+
+public class NotificationAuService implements AuService {
+
+    @Override
+    public boolean service(AuRequest request, boolean everError) {
+        final String cmd = request.getCommand();
+        if (NotificationEvent.EVENT_NAME.equals(cmd)) {
+            Events.postEvent(NotificationEvent.getEvent(request));
+            return true; // Handled - stop further processing
+        }
+
+        return false; // Not handled - continue to next handler
+    }
+}
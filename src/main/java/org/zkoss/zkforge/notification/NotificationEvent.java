@@ -0,0 +1,75 @@
+package org.zkoss.zkforge.notification;
+
+import org.zkoss.zk.au.AuRequest;
+import org.zkoss.zk.ui.event.Event;
+
+import java.util.Map;
+
+/**
+ * Reports what happened to a notification in the browser, or the result of {@link NotificationHelper#requestPermission()}.
+ * It is sent to all root components, like {@link org.zkoss.zkforge.geolocation.GeolocationEvent}.
+ */
+public class NotificationEvent extends Event {
+    public static final String EVENT_NAME = "onNotification";
+    /** the user clicked the notification */
+    public static final String CLICK = "click";
+    /** the notification was closed */
+    public static final String CLOSE = "close";
+    /** the notification couldn't be shown, e.g. permission not granted */
+    public static final String ERROR = "error";
+    /** the permission is known, see {@link #getPermission()} */
+    public static final String PERMISSION = "permission";
+    private final String action;
+    private final String tag;
+    private final String data;
+    private final String permission;
+    private final String message;
+
+    public NotificationEvent(String action, String tag, String data, String permission, String message) {
+        // null target indicates the event is sent to all root components
+        super(EVENT_NAME, null);
+        this.action = action;
+        this.tag = tag;
+        this.data = data;
+        this.permission = permission;
+        this.message = message;
+    }
+
+    public static NotificationEvent getEvent(AuRequest request) {
+        Map<String, Object> data = request.getData();
+        return new NotificationEvent((String) data.get("action"),
+                (String) data.get("tag"),
+                (String) data.get("data"),
+                (String) data.get("permission"),
+                (String) data.get("message"));
+    }
+
+    /**
+     * @return {@link #CLICK}, {@link #CLOSE}, {@link #ERROR} or {@link #PERMISSION}
+     */
+    public String getAction() {
+        return action;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the data of the notification, see {@link BrowserNotification#setData(String)}
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * @return "granted", "denied" or "default", see <a href="https://developer.mozilla.org/en-US/docs/Web/API/Notification/permission_static">Notification.permission</a>
+     */
+    public String getPermission() {
+        return permission;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,119 @@
+package org.zkoss.zkforge.notification;
+
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.util.Clients;
+import org.zkoss.zkforge.core.*;
+
+import java.util.*;
+
+/**
+ * Static helper class that shows system notifications with the browser's
+ * <a href="https://developer.mozilla.org/en-US/docs/Web/API/Notification">Notification API</a>.
+ *
+ * <p>Besides showing a notification on the current desktop, a desktop can subscribe to topics or be bound to a user,
+ * so that server code can push alerts to many desktops at once with {@link NotificationHub}. Clicks and closes come
+ * back as {@link NotificationEvent}.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>{@code
+ * // in a composer
+ * NotificationHelper.init();
+ * NotificationHelper.subscribe("orders");
+ *
+ * // anywhere, e.g. in a background thread
+ * BrowserNotification notification = new BrowserNotification("New order");
+ * notification.setTag("order-42");
+ * NotificationHub.broadcastToTopic("orders", notification);
+ * }</pre>
+ *
+ * <p><strong>Important:</strong> Browsers only ask for permission when {@link #requestPermission()} is called from a
+ * user interaction, e.g. a click.</p>
+ */
+public class NotificationHelper {
+    protected static final String NOTIFICATION_HELPER_KEY = "browserkit.notificationhelper";
+    protected static final String NOTIFICATION_HELPER_JS_PATH = "~./js/NotificationHelper.js";
+    protected static final NotificationAuService auService = new NotificationAuService();
+
+    static {
+        BrowserApiHelper.registerCommand(NotificationEvent.EVENT_NAME, NOTIFICATION_HELPER_KEY, auService);
+        BrowserApiHelper.registerResources(NOTIFICATION_HELPER_KEY, new DesktopResources() {
+            @Override
+            public void release(Desktop desktop) {
+                NotificationHub.unregister(desktop.getId());
+            }
+
+            @Override
+            public List<String> findAlive(Desktop desktop) {
+                return NotificationHub.isRegistered(desktop.getId())
+                        ? Collections.singletonList("notification mailbox of " + desktop.getId()) : Collections.emptyList();
+            }
+        });
+    }
+
+    /**
+     * Initialize notification helper for the current desktop if not already initialized.
+     * It enables server push for the desktop so that it can receive broadcast notifications.
+     * You should call this method in a Composer's life cycle method e.g. {@link org.zkoss.zk.ui.util.Composer#doAfterCompose(Component)}.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void init() {
+        if (BrowserApiHelper.init(NOTIFICATION_HELPER_KEY, NOTIFICATION_HELPER_JS_PATH)) {
+            Desktop desktop = Executions.getCurrent().getDesktop();
+            desktop.enableServerPush(true);
+            NotificationHub.register(desktop);
+        }
+    }
+
+    /**
+     * Ask the user for permission to show notifications. The result is delivered as a {@link NotificationEvent}
+     * with the action {@link NotificationEvent#PERMISSION}.
+     */
+    public static void requestPermission() {
+        if (!BrowserApiHelper.isInitialized(NOTIFICATION_HELPER_KEY)) return;
+        Clients.evalJavaScript("NotificationHelper.requestPermission()");
+    }
+
+    /**
+     * Show a notification on the current desktop only.
+     */
+    public static void show(BrowserNotification notification) {
+        if (!BrowserApiHelper.isInitialized(NOTIFICATION_HELPER_KEY)) return;
+        Clients.evalJavaScript("NotificationHelper.showAll([" + notification.toJson() + "])");
+    }
+
+    /**
+     * Receive the notifications broadcast to the topic on the current desktop.
+     *
+     * @see NotificationHub#broadcastToTopic(String, BrowserNotification)
+     */
+    public static void subscribe(String topic) {
+        if (!BrowserApiHelper.isInitialized(NOTIFICATION_HELPER_KEY)) return;
+        NotificationHub.subscribe(Executions.getCurrent().getDesktop(), NotificationHub.TOPIC_PREFIX + topic);
+    }
+
+    public static void unsubscribe(String topic) {
+        if (!BrowserApiHelper.isInitialized(NOTIFICATION_HELPER_KEY)) return;
+        NotificationHub.unsubscribe(Executions.getCurrent().getDesktop(), NotificationHub.TOPIC_PREFIX + topic);
+    }
+
+    /**
+     * Receive the notifications broadcast to the user on the current desktop.
+     *
+     * @see NotificationHub#broadcastToUser(String, BrowserNotification)
+     */
+    public static void bindUser(String user) {
+        if (!BrowserApiHelper.isInitialized(NOTIFICATION_HELPER_KEY)) return;
+        NotificationHub.subscribe(Executions.getCurrent().getDesktop(), NotificationHub.USER_PREFIX + user);
+    }
+
+    /**
+     * Dispose notification helper for the current desktop.
+     * The desktop leaves all topics and its pending notifications are discarded.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void dispose() {
+        BrowserApiHelper.dispose(NOTIFICATION_HELPER_KEY);
+    }
+}
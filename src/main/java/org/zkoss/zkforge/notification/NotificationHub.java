@@ -0,0 +1,203 @@
+package org.zkoss.zkforge.notification;
+
+import org.zkoss.lang.Library;
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.event.EventListener;
+import org.zkoss.zk.ui.util.Clients;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans notifications out to many desktops with server push.
+ *
+ * <p>Desktops subscribe to audiences, e.g. a topic or a user, with {@link NotificationHelper}. Broadcasting a
+ * notification serializes it once and only appends the shared payload to each subscribed desktop's mailbox; no
+ * per-desktop work happens on the caller's thread. Each mailbox:</p>
+ * <ul>
+ *     <li>coalesces notifications with the same tag, keeping only the latest one</li>
+ *     <li>flushes with one server push at most every {@value #MIN_FLUSH_INTERVAL} ms (default 1000),
+ *     showing at most {@value #MAX_PER_FLUSH} (default 5) notifications per flush</li>
+ *     <li>keeps at most {@value #MAX_PENDING} (default 20) pending notifications, dropping the oldest ones</li>
+ * </ul>
+ */
+public class NotificationHub {
+    public static final String MIN_FLUSH_INTERVAL = "org.zkoss.zkforge.notification.minFlushInterval";
+    public static final String MAX_PER_FLUSH = "org.zkoss.zkforge.notification.maxPerFlush";
+    public static final String MAX_PENDING = "org.zkoss.zkforge.notification.maxPending";
+    protected static final String TOPIC_PREFIX = "topic:";
+    protected static final String USER_PREFIX = "user:";
+    private static final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private static final Map<String, Set<Mailbox>> audiences = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "browserkit-notification");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Send a notification to every desktop subscribed to the topic.
+     *
+     * @return the number of desktops the notification was queued for
+     */
+    public static int broadcastToTopic(String topic, BrowserNotification notification) {
+        return broadcast(TOPIC_PREFIX + topic, notification);
+    }
+
+    /**
+     * Send a notification to every desktop of the user.
+     *
+     * @return the number of desktops the notification was queued for
+     */
+    public static int broadcastToUser(String user, BrowserNotification notification) {
+        return broadcast(USER_PREFIX + user, notification);
+    }
+
+    /**
+     * Send a notification to every desktop that initialized {@link NotificationHelper}.
+     *
+     * @return the number of desktops the notification was queued for
+     */
+    public static int broadcastToAll(BrowserNotification notification) {
+        return deliver(mailboxes.values(), notification);
+    }
+
+    protected static int broadcast(String audience, BrowserNotification notification) {
+        Set<Mailbox> subscribers = audiences.get(audience);
+        return subscribers == null ? 0 : deliver(subscribers, notification);
+    }
+
+    private static int deliver(Collection<Mailbox> subscribers, BrowserNotification notification) {
+        String payload = notification.toJson();
+        String tag = notification.getTag();
+        int count = 0;
+        for (Mailbox mailbox : subscribers) {
+            mailbox.offer(tag, payload);
+            count++;
+        }
+        return count;
+    }
+
+    static void register(Desktop desktop) {
+        mailboxes.computeIfAbsent(desktop.getId(), id -> new Mailbox(desktop));
+    }
+
+    static void subscribe(Desktop desktop, String audience) {
+        Mailbox mailbox = mailboxes.computeIfAbsent(desktop.getId(), id -> new Mailbox(desktop));
+        mailbox.audiences.add(audience);
+        audiences.computeIfAbsent(audience, key -> ConcurrentHashMap.newKeySet()).add(mailbox);
+    }
+
+    static void unsubscribe(Desktop desktop, String audience) {
+        Mailbox mailbox = mailboxes.get(desktop.getId());
+        if (mailbox == null) return;
+        mailbox.audiences.remove(audience);
+        removeFromAudience(audience, mailbox);
+    }
+
+    /**
+     * Remove the desktop from all audiences and discard its pending notifications.
+     */
+    static void unregister(String desktopId) {
+        Mailbox mailbox = mailboxes.remove(desktopId);
+        if (mailbox == null) return;
+        for (String audience : mailbox.audiences) {
+            removeFromAudience(audience, mailbox);
+        }
+        mailbox.clear();
+    }
+
+    static boolean isRegistered(String desktopId) {
+        return mailboxes.containsKey(desktopId);
+    }
+
+    private static void removeFromAudience(String audience, Mailbox mailbox) {
+        audiences.computeIfPresent(audience, (key, subscribers) -> {
+            subscribers.remove(mailbox);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * The pending notifications of one desktop.
+     */
+    private static class Mailbox implements EventListener<Event> {
+        private final Desktop desktop;
+        private final Set<String> audiences = ConcurrentHashMap.newKeySet();
+        /** key: tag, or a unique key for untagged notifications */
+        private final LinkedHashMap<Object, String> pending = new LinkedHashMap<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private volatile long lastFlush;
+
+        private Mailbox(Desktop desktop) {
+            this.desktop = desktop;
+        }
+
+        private void offer(String tag, String payload) {
+            synchronized (pending) {
+                Object key = tag == null ? new Object() : tag;
+                pending.remove(key); // re-insert to move a replaced notification to the end
+                pending.put(key, payload);
+                int maxPending = Library.getIntProperty(MAX_PENDING, 20);
+                Iterator<Object> oldest = pending.keySet().iterator();
+                while (pending.size() > maxPending) {
+                    oldest.next();
+                    oldest.remove();
+                }
+            }
+            scheduleFlush();
+        }
+
+        private void scheduleFlush() {
+            if (!flushScheduled.compareAndSet(false, true)) {
+                return;
+            }
+            long delay = lastFlush + Library.getIntProperty(MIN_FLUSH_INTERVAL, 1000) - System.currentTimeMillis();
+            timer.schedule(() -> {
+                try {
+                    Executions.schedule(desktop, this, new Event("onNotificationFlush"));
+                } catch (DesktopUnavailableException | IllegalStateException e) {
+                    unregister(desktop.getId());
+                }
+            }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Show the pending notifications, runs in the desktop's execution.
+         */
+        @Override
+        public void onEvent(Event event) {
+            StringJoiner payloads = new StringJoiner(",", "NotificationHelper.showAll([", "])");
+            int count = 0;
+            synchronized (pending) {
+                int maxPerFlush = Library.getIntProperty(MAX_PER_FLUSH, 5);
+                Iterator<String> iterator = pending.values().iterator();
+                for (; count < maxPerFlush && iterator.hasNext(); count++) {
+                    payloads.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+            if (count > 0) {
+                Clients.evalJavaScript(payloads.toString());
+            }
+            lastFlush = System.currentTimeMillis();
+            flushScheduled.set(false);
+            // check after resetting the flag, an offer in between couldn't schedule a flush
+            boolean remaining;
+            synchronized (pending) {
+                remaining = !pending.isEmpty();
+            }
+            if (remaining) {
+                scheduleFlush();
+            }
+        }
+
+        private void clear() {
+            synchronized (pending) {
+                pending.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.zkoss.zkforge.speech;
+
+/**
+ * Options of a speech recognition started by {@link SpeechHelper#startRecognition(org.zkoss.zk.ui.Component, RecognitionOptions)}.
+ * See <a href="https://developer.mozilla.org/en-US/docs/Web/API/SpeechRecognition">SpeechRecognition</a>.
+ */
+public class RecognitionOptions {
+    protected String lang;
+    protected boolean continuous = true;
+    protected boolean interimResults = true;
+    protected int interimInterval = 250;
+
+    public String getLang() {
+        return lang;
+    }
+
+    /**
+     * @param lang a BCP 47 language tag, e.g. "en-US", default: the page's language
+     */
+    public void setLang(String lang) {
+        this.lang = lang;
+    }
+
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    /**
+     * @param continuous true (default) to keep listening after the user pauses, for dictation
+     */
+    public void setContinuous(boolean continuous) {
+        this.continuous = continuous;
+    }
+
+    public boolean isInterimResults() {
+        return interimResults;
+    }
+
+    /**
+     * @param interimResults true (default) to receive results that may still change
+     */
+    public void setInterimResults(boolean interimResults) {
+        this.interimResults = interimResults;
+    }
+
+    public int getInterimInterval() {
+        return interimInterval;
+    }
+
+    /**
+     * @param interimInterval the minimal milliseconds between 2 interim updates sent to the server, default 250.
+     *                        Final results are sent at once.
+     */
+    public void setInterimInterval(int interimInterval) {
+        this.interimInterval = interimInterval;
+    }
+}
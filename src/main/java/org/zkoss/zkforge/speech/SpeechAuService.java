@@ -0,0 +1,44 @@
+package org.zkoss.zkforge.speech;
+
+import org.zkoss.zk.au.*;
+import org.zkoss.zk.ui.event.Events;
+import org.zkoss.zk.ui.util.Clients;
+
+import java.util.Map;
+
+public class SpeechAuService implements AuService {
+
+    @Override
+    public boolean service(AuRequest request, boolean everError) {
+        final String cmd = request.getCommand();
+        if (!SpeechEvent.EVENT_NAME.equals(cmd)) {
+            return false; // Not handled - continue to next handler
+        }
+        Map<String, Object> data = request.getData();
+        String type = String.valueOf(data.get("type"));
+        SpeechSession session = SpeechHelper.getSession(request.getDesktop(), request.getUuid());
+        if (SpeechEvent.RESULT.equals(type)) {
+            int keep = toInt(data.get("keep"));
+            String append = (String) data.get("append");
+            boolean isFinal = Boolean.TRUE.equals(data.get("final"));
+            if (!session.apply(toInt(data.get("base")), keep, append, isFinal)) {
+                // out of sync, e.g. the session was reset on the server, let the browser send the full text
+                session.reset();
+                Clients.evalJavaScript("SpeechHelper.resync('" + request.getUuid() + "')");
+                return true;
+            }
+            Events.postEvent(new SpeechEvent(request.getComponent(), type, session, keep, append, isFinal, null, null));
+        } else {
+            if (SpeechEvent.END.equals(type)) {
+                SpeechHelper.removeSession(request.getDesktop(), request.getUuid());
+            }
+            Events.postEvent(new SpeechEvent(request.getComponent(), type, session, session.length(), "", true,
+                    (String) data.get("error"), (String) data.get("message")));
+        }
+        return true; // Handled - stop further processing
+    }
+
+    private static int toInt(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : -1;
+    }
+}
@@ -0,0 +1,87 @@
+package org.zkoss.zkforge.speech;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.event.Event;
+
+/**
+ * Delivers a recognition update to the component that started the recognition.
+ *
+ * <p>A {@link #RESULT} event carries the change as a diff ({@link #getKeep()} and {@link #getAppended()}) and the
+ * whole transcript so far ({@link #getTranscript()}). Consumers that mirror the transcript elsewhere should apply the
+ * diff instead of copying the transcript on every update.</p>
+ */
+public class SpeechEvent extends Event {
+    public static final String EVENT_NAME = "onSpeechResult";
+    public static final String RESULT = "result";
+    public static final String END = "end";
+    public static final String ERROR = "error";
+    private final String type;
+    private final SpeechSession session;
+    private final int keep;
+    private final String appended;
+    private final boolean isFinal;
+    private final String error;
+    private final String message;
+
+    public SpeechEvent(Component target, String type, SpeechSession session, int keep, String appended,
+                       boolean isFinal, String error, String message) {
+        super(EVENT_NAME, target);
+        this.type = type;
+        this.session = session;
+        this.keep = keep;
+        this.appended = appended;
+        this.isFinal = isFinal;
+        this.error = error;
+        this.message = message;
+    }
+
+    /**
+     * @return {@link #RESULT}, {@link #END} or {@link #ERROR}
+     */
+    public String getType() {
+        return type;
+    }
+
+    public boolean isSuccess() {
+        return !ERROR.equals(type);
+    }
+
+    /**
+     * @return the transcript so far, a view that is only valid during this event
+     */
+    public CharSequence getTranscript() {
+        return session.getTranscript();
+    }
+
+    /**
+     * @return the number of leading transcript characters unchanged by this update
+     */
+    public int getKeep() {
+        return keep;
+    }
+
+    /**
+     * @return the text that replaced the transcript after {@link #getKeep()} characters
+     */
+    public String getAppended() {
+        return appended;
+    }
+
+    /**
+     * @return true if the transcript has no interim part, i.e. it won't change except by appending
+     */
+    public boolean isFinal() {
+        return isFinal;
+    }
+
+    /**
+     * @return the error code, e.g. "not-allowed" or "no-speech", see <a href="https://developer.mozilla.org/en-US/docs/Web/API/SpeechRecognitionErrorEvent/error">SpeechRecognitionErrorEvent.error</a>
+     */
+    public String getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,112 @@
+package org.zkoss.zkforge.speech;
+
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.util.Clients;
+import org.zkoss.zkforge.core.BrowserApiHelper;
+
+import java.util.*;
+
+/**
+ * Static helper class that provides speech recognition (dictation) with the browser's
+ * <a href="https://developer.mozilla.org/en-US/docs/Web/API/Web_Speech_API">Web Speech API</a>.
+ *
+ * <p>The browser doesn't send the whole transcript on every interim result. It sends a diff against what it sent
+ * before (characters kept + text appended), throttled to {@link RecognitionOptions#getInterimInterval()}, and the
+ * server applies it to an append buffer per recognition ({@link SpeechSession}). A long dictation therefore costs
+ * bytes proportional to the changes, not to the transcript length times the number of updates.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>{@code
+ * SpeechHelper.init();
+ * SpeechHelper.startRecognition(textbox, new RecognitionOptions());
+ *
+ * @Listen(SpeechEvent.EVENT_NAME + " = #textbox")
+ * public void handleSpeech(SpeechEvent event) {
+ *     // setValue() sends the whole value to the browser, so update the textbox on final results only
+ *     if (event.isSuccess() && SpeechEvent.RESULT.equals(event.getType()) && event.isFinal()) {
+ *         textbox.setValue(event.getTranscript().toString());
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p><strong>Important:</strong> Speech recognition requires microphone permission, and some browsers send the audio
+ * to a remote recognition service.</p>
+ */
+public class SpeechHelper {
+    protected static final String SPEECH_HELPER_KEY = "browserkit.speechhelper";
+    protected static final String SPEECH_HELPER_JS_PATH = "~./js/SpeechHelper.js";
+    /** desktop attribute holding the sessions, key: the target component's uuid */
+    protected static final String SPEECH_SESSIONS_KEY = "browserkit.speechsessions";
+    protected static final SpeechAuService auService = new SpeechAuService();
+
+    static {
+        BrowserApiHelper.registerCommand(SpeechEvent.EVENT_NAME, SPEECH_HELPER_KEY, auService);
+        BrowserApiHelper.registerResources(SPEECH_HELPER_KEY, desktop -> desktop.removeAttribute(SPEECH_SESSIONS_KEY));
+    }
+
+    /**
+     * Initialize speech helper for the current desktop if not already initialized.
+     * You should call this method in a Composer's life cycle method e.g. {@link org.zkoss.zk.ui.util.Composer#doAfterCompose(Component)}.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void init() {
+        BrowserApiHelper.init(SPEECH_HELPER_KEY, SPEECH_HELPER_JS_PATH);
+    }
+
+    /**
+     * Start recognizing speech. Results are delivered to the target as {@link SpeechEvent}s.
+     * Starting again on the same target restarts the recognition with an empty transcript.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void startRecognition(Component target, RecognitionOptions options) {
+        if (!BrowserApiHelper.isInitialized(SPEECH_HELPER_KEY)) return;
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        getSessions(desktop).put(target.getUuid(), new SpeechSession());
+        String lang = options.getLang() == null ? "null" : "'" + options.getLang().replace("'", "") + "'";
+        Clients.evalJavaScript("SpeechHelper.start('" + target.getUuid() + "',{lang:" + lang
+                + ",continuous:" + options.isContinuous()
+                + ",interimResults:" + options.isInterimResults()
+                + ",interimInterval:" + options.getInterimInterval() + "})");
+    }
+
+    /**
+     * Stop listening. The pending result is still delivered, followed by a {@link SpeechEvent#END} event.
+     */
+    public static void stopRecognition(Component target) {
+        if (!BrowserApiHelper.isInitialized(SPEECH_HELPER_KEY)) return;
+        Clients.evalJavaScript("SpeechHelper.stop('" + target.getUuid() + "')");
+    }
+
+    /**
+     * Dispose speech helper for the current desktop. All recognitions are aborted.
+     *
+     * @throws IllegalStateException if called outside an execution context
+     */
+    public static void dispose() {
+        BrowserApiHelper.ensureExecutionAvailable();
+        if (BrowserApiHelper.isInitialized(SPEECH_HELPER_KEY)) {
+            Clients.evalJavaScript("SpeechHelper.abortAll()");
+        }
+        BrowserApiHelper.dispose(SPEECH_HELPER_KEY);
+    }
+
+    static SpeechSession getSession(Desktop desktop, String uuid) {
+        return getSessions(desktop).computeIfAbsent(uuid, key -> new SpeechSession());
+    }
+
+    static void removeSession(Desktop desktop, String uuid) {
+        getSessions(desktop).remove(uuid);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, SpeechSession> getSessions(Desktop desktop) {
+        Map<String, SpeechSession> sessions = (Map<String, SpeechSession>) desktop.getAttribute(SPEECH_SESSIONS_KEY);
+        if (sessions == null) {
+            sessions = new HashMap<>();
+            desktop.setAttribute(SPEECH_SESSIONS_KEY, sessions);
+        }
+        return sessions;
+    }
+}
@@ -0,0 +1,72 @@
+package org.zkoss.zkforge.speech;
+
+import java.io.Serializable;
+
+/**
+ * The server-side transcript of one recognition.
+ *
+ * <p>The browser sends each update as a diff against the transcript it sent before: the number of characters to keep
+ * and the text to append. Interim results only change the tail of the transcript, so applying a diff costs the size of
+ * the change, not of the whole transcript, and the transcript is kept in one growing buffer.</p>
+ */
+public class SpeechSession implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final StringBuilder transcript = new StringBuilder();
+    private int finalLength;
+
+    /**
+     * Apply an update.
+     *
+     * @param baseLength the transcript length the browser assumes, i.e. before the update
+     * @param keep the number of leading characters kept
+     * @param append the text appended after them
+     * @param isFinal true if the whole transcript is final and won't change anymore
+     * @return false if the transcript is out of sync with the browser and the update is ignored
+     */
+    public boolean apply(int baseLength, int keep, String append, boolean isFinal) {
+        if (baseLength != transcript.length() || keep < 0 || keep > baseLength) {
+            return false;
+        }
+        transcript.setLength(keep);
+        if (append != null) {
+            transcript.append(append);
+        }
+        if (isFinal) {
+            finalLength = transcript.length();
+        } else if (finalLength > keep) {
+            finalLength = keep;
+        }
+        return true;
+    }
+
+    /**
+     * Clear the transcript, used to resynchronize with the browser which then sends the full text.
+     */
+    public void reset() {
+        transcript.setLength(0);
+        finalLength = 0;
+    }
+
+    /**
+     * @return a read-only view of the transcript, valid until the next update
+     */
+    public CharSequence getTranscript() {
+        return transcript;
+    }
+
+    /**
+     * @return the length of the leading part of the transcript that is final
+     */
+    public int getFinalLength() {
+        return finalLength;
+    }
+
+    public int length() {
+        return transcript.length();
+    }
+
+    @Override
+    public String toString() {
+        return transcript.toString();
+    }
+}
@@ -28,21 +28,27 @@ class ClipboardHelper {
 
     /**
      * Reads text from the clipboard
+     * @param {Object} options - how to upload a large text: {uri, threshold, chunkSize, gzip}, or undefined to always
+     *                           send the text in the event
      */
-    static readText() {
+    static readText(options) {
         if (navigator.clipboard) {
+            const target = this.getEventTarget(); // resolve now, a large text is sent later
             navigator.clipboard.readText()
                 .then(text => {
+                    if (options && options.threshold >= 0 && text.length > options.threshold) {
+                        return this.sendLargeText(text, options, target);
+                    }
                     this.fireEventToServer({
                         action: 'READ',
                         text: text
-                    });
+                    }, target);
                 })
                 .catch(error => {
                     this.fireEventToServer({
                         action: 'READ',
                         error: this.extractError(error)
-                    });
+                    }, target);
                 });
         } else {
             this.fireEventToServer({
@@ -52,6 +58,47 @@ class ClipboardHelper {
         }
     }
 
+    /**
+     * Uploads a large text in slices, one after another, then fires the event with the text id instead of the text.
+     * Each slice is encoded as UTF-8 and gzip-compressed when CompressionStream is supported.
+     * @param {string} text - the clipboard text
+     * @param {Object} options - {uri, threshold, chunkSize, gzip}
+     * @param {Object} target - the widget or desktop receiving the event
+     * @private
+     */
+    static async sendLargeText(text, options, target) {
+        const textId = Date.now().toString(36) + Math.random().toString(36).substring(2);
+        const gzip = options.gzip && typeof CompressionStream !== 'undefined';
+        const encoder = new TextEncoder();
+        for (let start = 0, index = 0; start < text.length; index++) {
+            let end = Math.min(start + options.chunkSize, text.length);
+            const last = text.charCodeAt(end - 1);
+            if (end < text.length && last >= 0xD800 && last <= 0xDBFF) {
+                end--; // keep a surrogate pair in one slice
+            }
+            let body = new Blob([encoder.encode(text.substring(start, end))]);
+            if (gzip) {
+                body = await new Response(body.stream().pipeThrough(new CompressionStream('gzip'))).blob();
+            }
+            const url = options.uri + '?' + new URLSearchParams({
+                dtid: zk.Desktop._dt.id,
+                textId: textId,
+                index: index,
+                gzip: gzip
+            });
+            const response = await fetch(url, {method: 'POST', body: body, credentials: 'same-origin'});
+            if (!response.ok) {
+                throw {message: 'Upload of the clipboard text failed: ' + response.status};
+            }
+            start = end;
+        }
+        this.fireEventToServer({
+            action: 'READ',
+            textId: textId,
+            length: text.length
+        }, target);
+    }
+
     /**
      * Reads image data from the clipboard
      * Uses the modern clipboard.read() API to access ClipboardItem objects
@@ -168,10 +215,11 @@ class ClipboardHelper {
     /**
      * Fires an event to the server with the given data
      * @param {Object} data - The data to send to the server
+     * @param {Object} target - The widget or desktop receiving the event, or undefined for the current target
      * @private
      */
-    static fireEventToServer(data) {
-        zAu.send(new zk.Event(this.getEventTarget(), ClipboardHelper.CLIPBOARD_ACTION_EVENT, data));
+    static fireEventToServer(data, target) {
+        zAu.send(new zk.Event(target || this.getEventTarget(), ClipboardHelper.CLIPBOARD_ACTION_EVENT, data));
     }
 
     static extractError(error){
@@ -0,0 +1,233 @@
+window.DragDropHelper = {
+    DROP_FILES_EVENT: 'onDropFiles',
+    UPLOAD_PROGRESS_EVENT: 'onUploadProgress',
+    PROGRESS_INTERVAL: 250, // ms between 2 progress events of a file
+    MAX_RETRIES: 5, // retries of a chunk failed by network or server errors, 429 (busy) is retried without limit
+    RESUME_DELAY: 30000, // ms before resuming an upload interrupted by network or server errors
+    MAX_RESUMES: 10, // resumes of an upload before giving up
+    interrupted: {}, // key: file signature, value: the entry of an interrupted upload
+
+    /**
+     * Accepts files dropped on the widget's DOM element.
+     * @param {string} uuid - the UUID of the drop target widget
+     * @param {string} uploadUri - the URI of the chunk upload endpoint
+     * @param {number} chunkSize - the chunk size in bytes
+     * @param {number} parallel - the number of chunks uploaded at the same time
+     */
+    enable: function(uuid, uploadUri, chunkSize, parallel) {
+        const widget = zk.Widget.$('#' + uuid);
+        if (!widget || !widget.$n()) return;
+        this.disable(uuid);
+        const node = widget.$n();
+        const options = {uploadUri: uploadUri, chunkSize: chunkSize, parallel: parallel};
+        const handlers = {
+            dragover: (event) => {
+                event.preventDefault();
+                event.dataTransfer.dropEffect = 'copy';
+            },
+            drop: (event) => {
+                event.preventDefault();
+                this.onDrop(widget, event.dataTransfer.files, options);
+            }
+        };
+        node.addEventListener('dragover', handlers.dragover);
+        node.addEventListener('drop', handlers.drop);
+        node._browserkitDropHandlers = handlers;
+        if (!this.onlineListener) {
+            this.onlineListener = () => Object.values(this.interrupted).forEach(entry => this.resume(entry));
+            window.addEventListener('online', this.onlineListener);
+        }
+    },
+    disable: function(uuid) {
+        const widget = zk.Widget.$('#' + uuid);
+        const node = widget && widget.$n();
+        if (!node || !node._browserkitDropHandlers) return;
+        node.removeEventListener('dragover', node._browserkitDropHandlers.dragover);
+        node.removeEventListener('drop', node._browserkitDropHandlers.drop);
+        delete node._browserkitDropHandlers;
+    },
+    /**
+     * Reports the file metadata at once, then uploads the content. A file dropped again while its upload is
+     * interrupted resumes that upload instead.
+     */
+    onDrop: function(widget, fileList, options) {
+        const entries = [];
+        Array.from(fileList).forEach(file => {
+            const interrupted = this.interrupted[this.signature(file)];
+            if (interrupted) {
+                interrupted.file = file;
+                this.resume(interrupted);
+                return;
+            }
+            const chunkCount = Math.max(1, Math.ceil(file.size / options.chunkSize));
+            entries.push({
+                file: file,
+                fileId: this.newFileId(),
+                chunkCount: chunkCount,
+                indexes: Array.from({length: chunkCount}, (value, index) => index),
+                widget: widget,
+                options: options,
+                generation: 0,
+                resumes: 0,
+                lastReport: 0
+            });
+        });
+        if (!entries.length) return;
+        zAu.send(new zk.Event(widget, this.DROP_FILES_EVENT, {
+            files: entries.map(entry => ({
+                fileId: entry.fileId,
+                name: entry.file.name,
+                size: entry.file.size,
+                type: entry.file.type,
+                lastModified: entry.file.lastModified
+            }))
+        }));
+        this.upload(widget, entries, options);
+    },
+    /**
+     * Uploads the chunks listed in the indexes of all entries with a fixed number of workers sharing one queue.
+     */
+    upload: function(widget, entries, options) {
+        const queue = [];
+        entries.forEach(entry => {
+            entry.pending = entry.indexes.length;
+            entry.indexes.forEach(index => queue.push({entry: entry, index: index, generation: entry.generation}));
+        });
+        const worker = async () => {
+            let task;
+            while ((task = queue.shift())) {
+                // an interrupted or resumed upload drops its queued chunks, the resume queues the missing ones
+                if (!task.entry.failed && !task.entry.interrupted && task.entry.generation === task.generation) {
+                    await this.sendChunk(widget, task.entry, task.index, options);
+                }
+            }
+        };
+        for (let i = 0; i < Math.max(1, options.parallel); i++) {
+            worker();
+        }
+    },
+    sendChunk: async function(widget, entry, index, options) {
+        const file = entry.file;
+        const generation = entry.generation;
+        const start = index * options.chunkSize;
+        const chunk = file.slice(start, Math.min(start + options.chunkSize, file.size));
+        const url = options.uploadUri + '?' + new URLSearchParams({
+            dtid: widget.desktop.id,
+            fileId: entry.fileId,
+            index: index,
+            chunkSize: options.chunkSize,
+            size: file.size,
+            name: file.name
+        });
+        let failures = 0;
+        while (true) {
+            let delay;
+            try {
+                const response = await fetch(url, {method: 'POST', body: chunk, credentials: 'same-origin'});
+                if (response.ok) break;
+                if (response.status === 429) { // server is busy, back off without giving up
+                    delay = (parseInt(response.headers.get('Retry-After')) || 1) * 1000;
+                } else if (response.status >= 500 || response.status === 404) {
+                    // 404: the chunk overtook the onDropFiles request announcing the file
+                    if (failures >= this.MAX_RETRIES) {
+                        this.interrupt(entry);
+                        return;
+                    }
+                    delay = this.backoff(failures++);
+                } else {
+                    throw new Error('Upload of ' + file.name + ' failed: ' + response.status);
+                }
+            } catch (error) {
+                if (!(error instanceof TypeError)) {
+                    this.fail(entry, error.message);
+                    return;
+                }
+                if (failures >= this.MAX_RETRIES) { // network error
+                    this.interrupt(entry);
+                    return;
+                }
+                delay = this.backoff(failures++);
+            }
+            await new Promise(resolve => setTimeout(resolve, delay));
+        }
+        if (entry.generation !== generation) return; // resumed meanwhile, the resume counts the chunk if missing
+        entry.pending--;
+        this.reportProgress(widget, entry);
+    },
+    fail: function(entry, error) {
+        if (entry.failed) return;
+        entry.failed = true;
+        delete this.interrupted[this.signature(entry.file)];
+        this.reportProgress(entry.widget, entry, error);
+    },
+    /**
+     * Stops uploading the chunks of the entry after a chunk ran out of retries, and resumes it later: when the
+     * browser is back online, when the file is dropped again, or after RESUME_DELAY.
+     */
+    interrupt: function(entry) {
+        if (entry.failed || entry.interrupted) return;
+        if (entry.resumes >= this.MAX_RESUMES) {
+            this.fail(entry, 'Upload of ' + entry.file.name + ' was interrupted too often');
+            return;
+        }
+        entry.interrupted = true;
+        this.interrupted[this.signature(entry.file)] = entry;
+        entry.resumeTimer = setTimeout(() => this.resume(entry), this.RESUME_DELAY);
+    },
+    /**
+     * Asks the server which chunks of the entry it is missing and uploads only those.
+     */
+    resume: async function(entry) {
+        if (!entry.interrupted) return;
+        clearTimeout(entry.resumeTimer);
+        delete this.interrupted[this.signature(entry.file)];
+        entry.interrupted = false;
+        entry.generation++;
+        entry.resumes++;
+        let status;
+        try {
+            const response = await fetch(entry.options.uploadUri + '?' + new URLSearchParams({
+                dtid: entry.widget.desktop.id,
+                fileId: entry.fileId
+            }), {credentials: 'same-origin'});
+            if (response.status >= 500) {
+                this.interrupt(entry);
+                return;
+            }
+            if (!response.ok) { // the server dropped the upload, e.g. 410 after the desktop was removed
+                this.fail(entry, 'Upload of ' + entry.file.name + ' cannot be resumed: ' + response.status);
+                return;
+            }
+            status = await response.json();
+        } catch (error) { // still offline
+            this.interrupt(entry);
+            return;
+        }
+        // without missing, no chunk has arrived yet
+        entry.indexes = status.missing || Array.from({length: entry.chunkCount}, (value, index) => index);
+        if (!entry.indexes.length) { // every chunk arrived, only acknowledgements were lost
+            entry.pending = 0;
+            this.reportProgress(entry.widget, entry);
+            return;
+        }
+        this.upload(entry.widget, [entry], entry.options);
+    },
+    signature: function(file) {
+        return file.name + '/' + file.size + '/' + file.lastModified;
+    },
+    backoff: function(failures) {
+        return Math.min(30000, 500 * Math.pow(2, failures));
+    },
+    reportProgress: function(widget, entry, error) {
+        const now = Date.now();
+        const done = error || entry.pending === 0;
+        if (!done && now - entry.lastReport < this.PROGRESS_INTERVAL) return;
+        entry.lastReport = now;
+        const data = {fileId: entry.fileId};
+        if (error) data.error = error;
+        zAu.send(new zk.Event(widget, this.UPLOAD_PROGRESS_EVENT, data));
+    },
+    newFileId: function() {
+        return Date.now().toString(36) + '-' + Math.random().toString(36).substring(2, 10);
+    },
+};
@@ -1,12 +1,17 @@
 window.GeolocationHelper = {
-    getCurrentPosition: function() {
+    watches: {}, // key: server watch id, value: navigator.geolocation watch id
+    shared: null, // the state of this tab in the shared watch
+
+    /**
+     * @param {Object} options - PositionOptions, or null for the defaults
+     * @param {string} uuid - the UUID of the widget receiving the result, or null for the desktop
+     * @param {boolean} binary - whether to pack positions in binary instead of JSON
+     */
+    getCurrentPosition: function(options, uuid, binary) {
+        // resolve the target now, each request keeps its own target
+        const target = this.getTarget(uuid);
         if (!navigator.geolocation) {
-            this.fireEvent({
-                error: JSON.stringify({
-                    code: 0,
-                    message: 'Geolocation API not available'
-                })
-            });
+            this.fireUnavailable(target);
             return;
         }
         /**
@@ -15,18 +20,130 @@ window.GeolocationHelper = {
          */
         navigator.geolocation.getCurrentPosition(
             (position) => {
-                this.fireEvent({
-                    position: JSON.stringify(position)
-                });
+                this.fireEvent(this.encodePosition(position, binary), target);
             },
             (error) => {
-                this.fireEvent({
-                    error: JSON.stringify(error)
-                });
+                this.fireEvent(this.encodeError(error, binary), target);
+            },
+            options || undefined
+        );
+    },
+    /**
+     * @param {string} watchId - the id generated by the server
+     * @param {Object} options - PositionOptions, or null for the defaults
+     * @param {string} uuid - the UUID of the widget receiving the results, or null for the desktop
+     * @param {boolean} binary - whether to pack positions in binary instead of JSON
+     */
+    watchPosition: function(watchId, options, uuid, binary) {
+        const target = this.getTarget(uuid);
+        if (!navigator.geolocation) {
+            this.fireUnavailable(target, watchId);
+            return;
+        }
+        this.clearWatch(watchId);
+        this.watches[watchId] = navigator.geolocation.watchPosition(
+            (position) => {
+                const data = this.encodePosition(position, binary);
+                data.watchId = watchId;
+                this.fireEvent(data, target);
+            },
+            (error) => {
+                const data = this.encodeError(error, binary);
+                data.watchId = watchId;
+                this.fireEvent(data, target);
+            },
+            options || undefined
+        );
+    },
+    clearWatch: function(watchId) {
+        if (watchId in this.watches) {
+            navigator.geolocation.clearWatch(this.watches[watchId]);
+            delete this.watches[watchId];
+        }
+    },
+    clearAllWatches: function() {
+        for (const watchId in this.watches) {
+            this.clearWatch(watchId);
+        }
+    },
+    /**
+     * Joins the watch shared by the tabs of this application. The tab holding the lock leads: it watches the
+     * position and sends each fix to the server once for the whole session, which delivers it to the other tabs.
+     * The lock is released when the leader stops sharing or closes, then a waiting tab takes over.
+     * @param {Object} options - PositionOptions, or null for the defaults
+     * @param {boolean} binary - whether to pack positions in binary instead of JSON
+     */
+    shareWatch: function(options, binary) {
+        if (this.shared) return;
+        const shared = this.shared = {options: options, binary: binary, watchId: null, release: null};
+        if (!navigator.geolocation) {
+            this.fireUnavailable(null);
+            return;
+        }
+        const name = 'browserkit-geolocation:' + zk.ajaxURI;
+        if (!navigator.locks) {
+            this.lead(shared); // every tab leads, the server drops duplicate fixes
+            return;
+        }
+        navigator.locks.request(name, () => new Promise((resolve) => {
+            if (this.shared !== shared) { // stopped while waiting for the lock
+                resolve();
+                return;
             }
+            shared.release = resolve;
+            this.lead(shared);
+        }));
+    },
+    lead: function(shared) {
+        shared.watchId = navigator.geolocation.watchPosition(
+            (position) => {
+                zAu.send(new zk.Event(zk.Desktop._dt, 'onSharedLocation', this.encodePosition(position, shared.binary)));
+            },
+            (error) => {
+                zAu.send(new zk.Event(zk.Desktop._dt, 'onSharedLocation', this.encodeError(error, shared.binary)));
+            },
+            shared.options || undefined
         );
     },
-    fireEvent: function(data) {
-        zAu.send(new zk.Event(zk.Desktop._dt, 'onGetLocation', data));
+    stopSharedWatch: function() {
+        const shared = this.shared;
+        if (!shared) return;
+        this.shared = null;
+        if (shared.watchId != null) navigator.geolocation.clearWatch(shared.watchId);
+        if (shared.release) shared.release(); // hand the lead to another tab
+    },
+    /**
+     * Packs the position into 8 little-endian doubles sent as base64 (88 chars): timestamp, latitude, longitude,
+     * accuracy, altitude, altitudeAccuracy, heading, speed; missing values are NaN. Otherwise sends it as JSON.
+     */
+    encodePosition: function(position, binary) {
+        if (!binary) {
+            return {position: JSON.stringify(position)};
+        }
+        const coords = position.coords;
+        const view = new DataView(new ArrayBuffer(64));
+        [position.timestamp, coords.latitude, coords.longitude, coords.accuracy, coords.altitude,
+            coords.altitudeAccuracy, coords.heading, coords.speed].forEach((value, i) => {
+            view.setFloat64(i * 8, value == null ? NaN : value, true);
+        });
+        return {packed: btoa(String.fromCharCode.apply(null, new Uint8Array(view.buffer)))};
+    },
+    encodeError: function(error, binary) {
+        return {error: binary ? {code: error.code, message: error.message} : JSON.stringify(error)};
+    },
+    getTarget: function(uuid) {
+        return (uuid && zk.Widget.$('#' + uuid)) || zk.Desktop._dt;
+    },
+    fireUnavailable: function(target, watchId) {
+        this.fireEvent({
+            error: JSON.stringify({
+                code: 0,
+                message: 'Geolocation API not available'
+            }),
+            watchId: watchId
+        }, target);
+    },
+    fireEvent: function(data, target) {
+        zAu.send(new zk.Event(target || zk.Desktop._dt, 'onGetLocation', data));
     },
 };
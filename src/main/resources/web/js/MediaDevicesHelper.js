@@ -0,0 +1,137 @@
+window.MediaDevicesHelper = {
+    MEDIA_STREAM_EVENT: 'onMediaStream',
+    captures: {}, // key: target widget uuid
+
+    /**
+     * Starts a camera stream, previews it in the widget's element and sends encoded frames while holding credits.
+     * @param {string} uuid - the UUID of the target widget
+     * @param {string} frameUri - the URI of the frame endpoint
+     * @param {Object} options - width, height, frameRate, mimeType, quality and the initial credits
+     */
+    start: function(uuid, frameUri, options) {
+        const widget = zk.Widget.$('#' + uuid);
+        if (!widget) return;
+        this.stop(uuid, true);
+        if (!navigator.mediaDevices || !navigator.mediaDevices.getUserMedia) {
+            this.fireEvent(widget, {state: 'error', errorName: 'NotSupportedError', errorMessage: 'MediaDevices API not available'});
+            return;
+        }
+        const capture = {
+            widget: widget,
+            frameUri: frameUri,
+            options: options,
+            credits: options.credits,
+            busy: false,
+            sequence: 0,
+            skipped: 0
+        };
+        this.captures[uuid] = capture;
+        navigator.mediaDevices.getUserMedia({video: {width: options.width, height: options.height}})
+            .then(stream => {
+                if (this.captures[uuid] !== capture) { // stopped while waiting for permission
+                    stream.getTracks().forEach(track => track.stop());
+                    return;
+                }
+                capture.stream = stream;
+                capture.video = this.createPreview(widget, stream);
+                capture.canvas = document.createElement('canvas');
+                capture.canvas.width = options.width;
+                capture.canvas.height = options.height;
+                const track = stream.getVideoTracks()[0];
+                if (window.ImageCapture && track) {
+                    capture.imageCapture = new ImageCapture(track);
+                }
+                capture.timer = setInterval(() => this.captureFrame(capture), 1000 / options.frameRate);
+                this.fireEvent(widget, {state: 'started'});
+            })
+            .catch(error => {
+                delete this.captures[uuid];
+                this.fireEvent(widget, {state: 'error', errorName: error.name, errorMessage: error.message});
+            });
+    },
+    createPreview: function(widget, stream) {
+        const video = document.createElement('video');
+        video.autoplay = true;
+        video.muted = true;
+        video.playsInline = true;
+        video.style.width = '100%';
+        video.srcObject = stream;
+        const node = widget.$n();
+        if (node) node.appendChild(video);
+        return video;
+    },
+    /**
+     * Sends one frame if a credit is left, otherwise skips it and asks the server for credits.
+     */
+    captureFrame: function(capture) {
+        if (capture.busy) {
+            capture.skipped++;
+            return;
+        }
+        capture.busy = true;
+        if (capture.credits <= 0) {
+            capture.skipped++;
+            this.request(capture, 'GET', null, {})
+                .finally(() => capture.busy = false);
+            return;
+        }
+        const timestamp = Date.now();
+        this.grabFrame(capture)
+            .then(blob => this.request(capture, 'POST', blob, {
+                seq: capture.sequence++,
+                ts: timestamp,
+                width: capture.options.width,
+                height: capture.options.height
+            }))
+            .catch(error => console.warn('MediaDevicesHelper: frame failed', error))
+            .finally(() => capture.busy = false);
+    },
+    grabFrame: function(capture) {
+        const context = capture.canvas.getContext('2d');
+        const {width, height, mimeType, quality} = capture.options;
+        const draw = capture.imageCapture
+            ? capture.imageCapture.grabFrame().then(bitmap => {
+                context.drawImage(bitmap, 0, 0, width, height);
+                bitmap.close();
+            }).catch(() => context.drawImage(capture.video, 0, 0, width, height))
+            : Promise.resolve(context.drawImage(capture.video, 0, 0, width, height));
+        return draw.then(() => new Promise(resolve => capture.canvas.toBlob(resolve, mimeType, quality)));
+    },
+    request: function(capture, method, body, params) {
+        params.dtid = capture.widget.desktop.id;
+        params.streamId = capture.widget.uuid;
+        const init = {method: method, credentials: 'same-origin'};
+        if (body) {
+            init.body = body;
+            init.headers = {'Content-Type': body.type};
+        }
+        return fetch(capture.frameUri + '?' + new URLSearchParams(params), init)
+            .then(response => {
+                if (response.status === 410) { // closed by the server
+                    this.stop(capture.widget.uuid);
+                    return;
+                }
+                return response.json().then(result => capture.credits = result.credits);
+            });
+    },
+    /**
+     * Stops the camera stream of the widget.
+     * @param {string} uuid - the UUID of the target widget
+     * @param {boolean} silent - true to not notify the server
+     */
+    stop: function(uuid, silent) {
+        const capture = this.captures[uuid];
+        if (!capture) return;
+        delete this.captures[uuid];
+        clearInterval(capture.timer);
+        if (capture.stream) capture.stream.getTracks().forEach(track => track.stop());
+        if (capture.video) capture.video.remove();
+        if (!silent) this.fireEvent(capture.widget, {state: 'stopped', skipped: capture.skipped});
+    },
+    stopAll: function() {
+        Object.keys(this.captures).forEach(uuid => this.stop(uuid, true));
+    },
+    fireEvent: function(widget, data) {
+        zAu.send(new zk.Event(widget, this.MEDIA_STREAM_EVENT, data));
+    },
+};
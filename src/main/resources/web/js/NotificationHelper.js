@@ -0,0 +1,43 @@
+window.NotificationHelper = {
+    NOTIFICATION_EVENT: 'onNotification',
+
+    requestPermission: function() {
+        if (!window.Notification) {
+            this.fireEvent({action: 'error', message: 'Notification API not available'});
+            return;
+        }
+        Notification.requestPermission()
+            .then(permission => this.fireEvent({action: 'permission', permission: permission}));
+    },
+    /**
+     * Shows notifications, a notification replaces the shown one with the same tag.
+     * @param {Array<Object>} notifications - objects with title and Notification options
+     */
+    showAll: function(notifications) {
+        notifications.forEach(options => this.show(options));
+    },
+    show: function(options) {
+        if (!window.Notification) {
+            this.fireEvent({action: 'error', tag: options.tag, message: 'Notification API not available'});
+            return;
+        }
+        if (Notification.permission !== 'granted') {
+            this.fireEvent({action: 'error', tag: options.tag, permission: Notification.permission,
+                message: 'Notification permission is ' + Notification.permission});
+            return;
+        }
+        /**
+         * https://developer.mozilla.org/en-US/docs/Web/API/Notification/Notification
+         */
+        const notification = new Notification(options.title, options);
+        notification.onclick = () => {
+            window.focus();
+            this.fireEvent({action: 'click', tag: options.tag, data: options.data});
+        };
+        notification.onclose = () => this.fireEvent({action: 'close', tag: options.tag, data: options.data});
+        notification.onerror = () => this.fireEvent({action: 'error', tag: options.tag, message: 'Failed to show notification'});
+    },
+    fireEvent: function(data) {
+        zAu.send(new zk.Event(zk.Desktop._dt, this.NOTIFICATION_EVENT, data));
+    },
+};
@@ -0,0 +1,124 @@
+window.SpeechHelper = {
+    SPEECH_EVENT: 'onSpeechResult',
+    sessions: {}, // key: target widget uuid
+
+    /**
+     * Starts a recognition whose results are sent to the widget.
+     * @param {string} uuid - the UUID of the target widget
+     * @param {Object} options - lang, continuous, interimResults, interimInterval
+     */
+    start: function(uuid, options) {
+        const widget = zk.Widget.$('#' + uuid);
+        if (!widget) return;
+        const Recognition = window.SpeechRecognition || window.webkitSpeechRecognition;
+        if (!Recognition) {
+            this.fireEvent(widget, {type: 'error', error: 'not-supported', message: 'Web Speech API not available'});
+            return;
+        }
+        this.abort(uuid);
+        const recognition = new Recognition();
+        if (options.lang) recognition.lang = options.lang;
+        recognition.continuous = options.continuous;
+        recognition.interimResults = options.interimResults;
+        const session = {
+            widget: widget,
+            recognition: recognition,
+            interimInterval: options.interimInterval,
+            finals: '', // the final part of the transcript
+            text: '', // the latest transcript
+            sent: '', // the transcript the server has
+            sentFinalLength: 0, // the length of the final part the server has, never changes again
+            lastSent: 0,
+            timer: null
+        };
+        this.sessions[uuid] = session;
+        recognition.onresult = (event) => {
+            let interim = '';
+            for (let i = event.resultIndex; i < event.results.length; i++) {
+                const result = event.results[i];
+                if (result.isFinal) {
+                    session.finals += result[0].transcript;
+                } else {
+                    interim += result[0].transcript;
+                }
+            }
+            this.update(session, session.finals + interim, interim === '');
+        };
+        recognition.onerror = (event) => {
+            this.fireEvent(widget, {type: 'error', error: event.error, message: event.message});
+        };
+        recognition.onend = () => {
+            if (session.text !== session.sent) this.flush(session, true);
+            if (this.sessions[uuid] === session) delete this.sessions[uuid];
+            this.fireEvent(widget, {type: 'end'});
+        };
+        recognition.start();
+    },
+    /**
+     * Sends final results at once and throttles interim ones.
+     */
+    update: function(session, text, isFinal) {
+        session.text = text;
+        if (isFinal) {
+            this.flush(session, true);
+            return;
+        }
+        const wait = session.lastSent + session.interimInterval - Date.now();
+        if (wait <= 0) {
+            this.flush(session, false);
+        } else if (!session.timer) {
+            session.timer = setTimeout(() => this.flush(session, false), wait);
+        }
+    },
+    /**
+     * Sends the change since the last update as the number of kept characters and the appended text.
+     */
+    flush: function(session, isFinal) {
+        clearTimeout(session.timer);
+        session.timer = null;
+        const text = session.text;
+        const sent = session.sent;
+        if (text === sent && !isFinal) return;
+        const max = Math.min(text.length, sent.length);
+        let keep = Math.min(session.sentFinalLength, max); // the final part is known to be unchanged
+        while (keep < max && text.charCodeAt(keep) === sent.charCodeAt(keep)) keep++;
+        this.fireEvent(session.widget, {
+            type: 'result',
+            base: sent.length,
+            keep: keep,
+            append: text.substring(keep),
+            final: isFinal
+        });
+        session.sent = text;
+        session.sentFinalLength = session.finals.length;
+        session.lastSent = Date.now();
+    },
+    /**
+     * Called by the server when its transcript is out of sync, sends the whole transcript again.
+     */
+    resync: function(uuid) {
+        const session = this.sessions[uuid];
+        if (!session) return;
+        session.sent = '';
+        session.sentFinalLength = 0;
+        this.flush(session, session.text === session.finals);
+    },
+    stop: function(uuid) {
+        const session = this.sessions[uuid];
+        if (session) session.recognition.stop();
+    },
+    abort: function(uuid) {
+        const session = this.sessions[uuid];
+        if (!session) return;
+        delete this.sessions[uuid];
+        clearTimeout(session.timer);
+        session.recognition.onend = null;
+        session.recognition.abort();
+    },
+    abortAll: function() {
+        Object.keys(this.sessions).forEach(uuid => this.abort(uuid));
+    },
+    fireEvent: function(widget, data) {
+        zAu.send(new zk.Event(widget, this.SPEECH_EVENT, data));
+    },
+};
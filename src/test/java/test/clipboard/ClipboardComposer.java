@@ -8,10 +8,13 @@ import org.zkoss.zkforge.clipboard.*;
 import org.zkoss.zul.Textbox;
 import test.BrowserFlagSetter;
 
+import java.io.IOException;
+
 /**
  * Demonstrates how to use the ClipboardHelper with AuService architecture.
  */
 public class ClipboardComposer extends SelectorComposer<Component> {
+    private static final int PREVIEW_LENGTH = 10_000;
     @Wire
     private Textbox pastingTarget;
 
@@ -31,11 +34,27 @@ public class ClipboardComposer extends SelectorComposer<Component> {
             if (!event.isSuccess()) System.err.println("Error: " + event.getResult().getError().getMessage());
             if (event.isTextResult()
                 && event.getResult().getAction() == ClipboardAction.READ) {
-                pastingTarget.setValue(event.getClipboardText().getText());
+                pastingTarget.setValue(preview(event.getClipboardText()));
             }
         });
     }
 
+    /**
+     * A large text arrives spooled to a file, only show its beginning instead of loading it all
+     */
+    private static String preview(ClipboardText text) throws IOException {
+        if (!text.isSpooled()) {
+            return text.getText();
+        }
+        try {
+            CharSequence chars = text.getCharSequence();
+            return chars.subSequence(0, Math.min(PREVIEW_LENGTH, chars.length()))
+                    + "\n... (" + text.getLength() + " chars in total)";
+        } finally {
+            text.release();
+        }
+    }
+
     @Listen("onClick = #read")
     public void read() {
         ClipboardHelper.readText();
@@ -0,0 +1,44 @@
+package test.dragdrop;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.select.SelectorComposer;
+import org.zkoss.zk.ui.select.annotation.*;
+import org.zkoss.zkforge.dragdrop.*;
+import org.zkoss.zul.*;
+
+public class DragDropComposer extends SelectorComposer<Component> {
+    @Wire
+    private Div dropArea;
+    @Wire
+    private Listbox fileListbox;
+    private ListModelList<String> model = new ListModelList<>();
+
+    @Override
+    public void doAfterCompose(Component comp) throws Exception {
+        super.doAfterCompose(comp);
+        DragDropHelper.init();
+        DragDropHelper.enableDrop(dropArea);
+        fileListbox.setModel(model);
+    }
+
+    @Listen(DropFilesEvent.EVENT_NAME + " = #dropArea")
+    public void handleDrop(DropFilesEvent event) {
+        event.getFiles().forEach(file -> model.add(file.getName() + " (" + file.getSize() + " bytes) dropped"));
+    }
+
+    @Listen(UploadProgressEvent.EVENT_NAME + " = #dropArea")
+    public void handleProgress(UploadProgressEvent event) {
+        if (!event.isSuccess()) {
+            model.add(event.getFileId() + " failed: " + event.getError());
+        } else if (event.isComplete()) {
+            model.add(event.getFileId() + " uploaded to " + event.getPath());
+        } else {
+            model.add(event.getFileId() + " " + event.getBytesReceived() + "/" + event.getSize());
+        }
+    }
+
+    @Listen("onClick = #dispose")
+    public void dispose() {
+        DragDropHelper.dispose();
+    }
+}
@@ -0,0 +1,60 @@
+package test.geolocation;
+
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.select.SelectorComposer;
+import org.zkoss.zk.ui.select.annotation.*;
+import org.zkoss.zkforge.geolocation.*;
+import org.zkoss.zul.*;
+
+import java.util.Map;
+
+/**
+ * Open the page in several browsers: each one publishes its position, all of them show every position.
+ */
+public class DispatchComposer extends SelectorComposer<Component> {
+    @Wire
+    private Listbox workerList;
+    private final ListModelMap<String, String> workers = new ListModelMap<>();
+
+    @Override
+    public void doAfterCompose(Component comp) throws Exception {
+        super.doAfterCompose(comp);
+        workerList.setModel(workers);
+        workerList.setItemRenderer((Listitem item, Map.Entry<String, String> entry, int index) ->
+                item.setLabel(entry.getKey() + ": " + entry.getValue()));
+        GeolocationHelper.init();
+        LocationHub.subscribe(workerList);
+    }
+
+    @Listen("onClick = #publish")
+    public void publish() {
+        GeolocationHelper.getCurrentPosition();
+    }
+
+    @Listen("onClick = #leave")
+    public void leave() {
+        LocationHub.remove(getUserId());
+    }
+
+    @Listen(GeolocationEvent.EVENT_NAME + " = #root")
+    public void handleLocation(GeolocationEvent event) {
+        if (event.isSuccess()) {
+            LocationHub.publish(getUserId(), event.getGeoLocationPosition());
+        }
+    }
+
+    @Listen(LocationSnapshotEvent.EVENT_NAME + " = #workerList")
+    public void handleSnapshot(LocationSnapshotEvent event) {
+        if (event.isFull()) {
+            workers.clear();
+        }
+        for (LocationFix fix : event.getFixes()) {
+            workers.put(fix.getUserId(), fix.getLatitude() + ", " + fix.getLongitude() + " ±" + fix.getAccuracy() + "m");
+        }
+        event.getRemovedUsers().forEach(workers::remove);
+    }
+
+    private String getUserId() {
+        return "session-" + Integer.toHexString(Sessions.getCurrent().hashCode());
+    }
+}
@@ -0,0 +1,55 @@
+package test.geolocation;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.select.SelectorComposer;
+import org.zkoss.zk.ui.select.annotation.*;
+import org.zkoss.zkforge.geolocation.*;
+import org.zkoss.zul.*;
+
+public class GeofenceComposer extends SelectorComposer<Component> {
+    // shared by all desktops
+    private static final GeofenceRegistry REGISTRY = new GeofenceRegistry();
+
+    @Wire
+    private Label positionLabel;
+    @Wire
+    private Listbox eventList;
+
+    @Override
+    public void doAfterCompose(Component comp) throws Exception {
+        super.doAfterCompose(comp);
+        GeolocationHelper.init();
+        GeolocationHelper.watchGeofences(REGISTRY, comp);
+    }
+
+    @Listen("onClick = #locate")
+    public void locate() {
+        GeolocationHelper.getCurrentPosition();
+    }
+
+    @Listen("onClick = #fenceHere")
+    public void fenceHere() {
+        GeolocationHelper.getCurrentPosition();
+        positionLabel.setAttribute("fenceNext", true);
+    }
+
+    @Listen(GeolocationEvent.EVENT_NAME + " = #root")
+    public void handleLocation(GeolocationEvent event) {
+        if (!event.isSuccess()) {
+            positionLabel.setValue("Location unavailable: " + event.getGeoLocationPositionError().getMessage());
+            return;
+        }
+        GeolocationCoordinates coords = event.getGeoLocationPosition().getCoords();
+        positionLabel.setValue(coords.getLatitude() + ", " + coords.getLongitude());
+        if (positionLabel.removeAttribute("fenceNext") != null) {
+            String id = "fence-" + REGISTRY.size();
+            REGISTRY.add(new CircleGeofence(id, coords.getLatitude(), coords.getLongitude(), 200));
+            eventList.appendItem("added " + id + " (200 m), locate again to enter it", null);
+        }
+    }
+
+    @Listen(GeofenceEvent.ENTER + " = #root; " + GeofenceEvent.EXIT + " = #root")
+    public void handleGeofence(GeofenceEvent event) {
+        eventList.appendItem((event.isEnter() ? "entered " : "left ") + event.getGeofence().getId(), null);
+    }
+}
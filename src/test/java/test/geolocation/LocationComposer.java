@@ -41,6 +41,17 @@ public class LocationComposer extends SelectorComposer {
     public void getLocation(){
         GeolocationHelper.getCurrentPosition();
     }
+    /**
+     * Open the page in several tabs and share the watch in each: only one tab watches the position.
+     */
+    @Listen("onClick = #shareWatch")
+    public void shareWatch(){
+        GeolocationHelper.watchSharedPosition(null, null);
+    }
+    @Listen("onClick = #stopSharing")
+    public void stopSharing(){
+        GeolocationHelper.clearSharedWatch();
+    }
     @Listen("onClick = #dispose")
     public void dispose(){
         GeolocationHelper.dispose();
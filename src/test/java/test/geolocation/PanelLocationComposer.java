@@ -0,0 +1,53 @@
+package test.geolocation;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.select.SelectorComposer;
+import org.zkoss.zk.ui.select.annotation.*;
+import org.zkoss.zkforge.geolocation.*;
+import org.zkoss.zul.*;
+
+/**
+ * One of several panels on a page, each receiving only its own geolocation events.
+ */
+public class PanelLocationComposer extends SelectorComposer<Component> {
+    @Wire
+    private Label positionLabel;
+    private String watchId;
+
+    @Override
+    public void doAfterCompose(Component comp) throws Exception {
+        super.doAfterCompose(comp);
+        GeolocationHelper.init();
+    }
+
+    @Listen("onClick = #locate")
+    public void locate() {
+        GeolocationHelper.getCurrentPositionTo(positionLabel);
+    }
+
+    @Listen("onClick = #watch")
+    public void watch() {
+        if (watchId == null) {
+            watchId = GeolocationHelper.watchPosition(positionLabel, null);
+        }
+    }
+
+    @Listen("onClick = #stopWatch")
+    public void stopWatch() {
+        if (watchId != null) {
+            GeolocationHelper.clearWatch(watchId);
+            watchId = null;
+        }
+    }
+
+    @Listen(GeolocationEvent.EVENT_NAME + " = #positionLabel")
+    public void handleLocation(GeolocationEvent event) {
+        String source = event.getWatchId() == null ? "request" : "watch " + event.getWatchId();
+        if (event.isSuccess()) {
+            GeolocationCoordinates coords = event.getGeoLocationPosition().getCoords();
+            positionLabel.setValue(source + ": " + coords.getLatitude() + ", " + coords.getLongitude());
+        } else {
+            positionLabel.setValue(source + ": " + event.getGeoLocationPositionError().getMessage());
+        }
+    }
+}
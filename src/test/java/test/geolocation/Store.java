@@ -9,7 +9,6 @@ public class Store {
     private String address;
     private double latitude;
     private double longitude;
-    private double distanceKm; // calculated distance from user
 
     public Store(String name, String address, double latitude, double longitude) {
         this.name = name;
@@ -34,18 +33,7 @@ public class Store {
         return longitude;
     }
 
-    public double getDistanceKm() {
-        return distanceKm;
-    }
-
-    public void setDistanceKm(double distanceKm) {
-        this.distanceKm = distanceKm;
-    }
-
-    /**
-     * Get formatted distance string for display
-     */
-    public String getDistanceDisplay() {
+    public static String formatDistance(double distanceKm) {
         if (distanceKm < 1) {
             return String.format("%.0f m", distanceKm * 1000);
         } else {
@@ -7,9 +7,12 @@ import org.zkoss.zk.ui.util.Clients;
 import org.zkoss.zkforge.geolocation.*;
 import org.zkoss.zul.*;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Store Locator demo showcasing GeolocationHelper API usage.
@@ -27,6 +30,11 @@ public class StoreLocatorComposer extends SelectorComposer<Component> {
     private Listbox storeListbox;
 
     private static List<Store> stores;
+    private static NearestIndex<Store> storeIndex;
+    private static GeoDistance storeDistances;
+    private static final double NEARBY_METERS = 10_000;
+    private static final ReverseGeocoder GEOCODER = createGeocoder();
+    private static final IpLocationDatabase IP_DATABASE = createIpDatabase();
     private GeolocationCoordinates userCoords;
 
     @Override
@@ -36,13 +44,15 @@ public class StoreLocatorComposer extends SelectorComposer<Component> {
         // Initialize sample stores (fictional coffee shops in San Francisco Bay Area)
         initializeSampleStores();
 
-        // Initialize GeolocationHelper
+        // Initialize GeolocationHelper, answering with an approximate position by IP address at once
         GeolocationHelper.init();
+        GeolocationHelper.setIpDatabase(IP_DATABASE);
         storeListbox.setItemRenderer((Listitem item, Store store, int index) -> {
             item.appendChild(new Listcell(String.valueOf(index + 1)));
             item.appendChild(new Listcell(store.getName()));
             item.appendChild(new Listcell(store.getAddress()));
-            item.appendChild(new Listcell(store.getDistanceDisplay()));
+            NearestListModel<?> model = (NearestListModel<?>) storeListbox.getModel();
+            item.appendChild(new Listcell(Store.formatDistance(model.getDistance(index) / 1000)));
         });
 
         statusLabel.setValue("Click 'Find Nearby Stores' to see stores sorted by distance");
@@ -61,6 +71,8 @@ public class StoreLocatorComposer extends SelectorComposer<Component> {
         stores.add(new Store("Oakland Brews", "555 Broadway, Oakland, CA", 37.8044, -122.2712));
         stores.add(new Store("South Bay Coffee Co", "888 First St, San Jose, CA", 37.3382, -121.8863));
         stores.add(new Store("Stanford Coffee Shop", "123 University Ave, Palo Alto, CA", 37.4419, -122.1430));
+        storeIndex = new NearestIndex<>(stores, Store::getLatitude, Store::getLongitude);
+        storeDistances = GeoDistance.of(stores, Store::getLatitude, Store::getLongitude);
     }
 
     @Listen("onClick = #findStoresBtn")
@@ -85,63 +97,66 @@ public class StoreLocatorComposer extends SelectorComposer<Component> {
 
         // Display user's location
         userLocationLabel.setValue(String.format(
-            "Your location: %.4f°, %.4f° (accuracy: %.0f m)",
+            (position.isCoarse() ? "Approximate location: " : "Your location: ") + "%.4f°, %.4f° (accuracy: %.0f m)",
             userCoords.getLatitude(),
             userCoords.getLongitude(),
             userCoords.getAccuracy()
-        ));
-
-        calculateDistances();
-
-        // Sort stores by distance
-        stores.sort(Comparator.comparingDouble(Store::getDistanceKm));
+        ) + getPlaceName());
 
         displayStores();
 
-        statusLabel.setValue("Found " + stores.size() + " stores nearby:");
+        statusLabel.setValue("Found " + stores.size() + " stores, " + countNearbyStores() + " within "
+                + Store.formatDistance(NEARBY_METERS / 1000) + ":");
     }
 
     /**
-     * Calculate the distance from user to each store using Haversine formula
+     * Count the stores within {@link #NEARBY_METERS}, one pass over all distances instead of a nearest-first walk
      */
-    private void calculateDistances() {
-        double userLat = userCoords.getLatitude();
-        double userLng = userCoords.getLongitude();
-
-        for (Store store : stores) {
-            double distance = calculateHaversineDistance(
-                userLat, userLng,
-                store.getLatitude(), store.getLongitude()
-            );
-            store.setDistanceKm(distance);
+    private int countNearbyStores() {
+        int count = 0;
+        for (double meters : storeDistances.distances(userCoords.getLatitude(), userCoords.getLongitude())) {
+            if (meters <= NEARBY_METERS) count++;
         }
+        return count;
     }
 
     /**
-     * Calculate the distance between two coordinates using Haversine formula
-     * @return distance in kilometers
+     * The nearest city within 20 km from a local gazetteer, cached by geohash cells of about 1.2 km
      */
-    private double calculateHaversineDistance(double lat1, double lng1, double lat2, double lng2) {
-        final double EARTH_RADIUS_KM = 6371.0;
-
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLng = Math.toRadians(lng2 - lng1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                   Math.sin(dLng / 2) * Math.sin(dLng / 2);
+    private static ReverseGeocoder createGeocoder() {
+        try (InputStream places = StoreLocatorComposer.class.getResourceAsStream("places.csv")) {
+            FileReverseGeocoder gazetteer = new FileReverseGeocoder(new InputStreamReader(places, StandardCharsets.UTF_8), 20_000);
+            return new CachingReverseGeocoder(gazetteer, 6, TimeUnit.HOURS.toMillis(1), 10_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    private static IpLocationDatabase createIpDatabase() {
+        try (InputStream ranges = StoreLocatorComposer.class.getResourceAsStream("ip-ranges.csv")) {
+            Path file = Files.createTempFile("ip-ranges", ".db");
+            file.toFile().deleteOnExit();
+            IpLocationDatabase.build(new InputStreamReader(ranges, StandardCharsets.UTF_8), file);
+            return new IpLocationDatabase(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        return EARTH_RADIUS_KM * c;
+    private String getPlaceName() {
+        try {
+            Place place = GEOCODER.reverse(userCoords.getLatitude(), userCoords.getLongitude());
+            return place == null ? "" : " near " + place.getName() + ", " + place.getRegion();
+        } catch (IOException e) {
+            return "";
+        }
     }
 
     /**
-     * Display sorted stores in the listbox
+     * Display the stores nearest first, the listbox only orders the rows it renders
      */
     private void displayStores() {
-        ListModelList<Store> model = new ListModelList<>(stores);
-        storeListbox.setModel(model);
+        storeListbox.setModel(storeIndex.nearest(userCoords.getLatitude(), userCoords.getLongitude()));
     }
 
     private void handleLocationError(GeolocationPositionError error) {
@@ -0,0 +1,49 @@
+package test.mediadevices;
+
+import org.zkoss.zk.ui.*;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.select.SelectorComposer;
+import org.zkoss.zk.ui.select.annotation.*;
+import org.zkoss.zkforge.mediadevices.*;
+import org.zkoss.zul.*;
+
+/**
+ * Captures webcam frames and shows the size of the latest one. A real scanner would decode the frame in the processor.
+ */
+public class FrameCaptureComposer extends SelectorComposer<Component> {
+    @Wire
+    private Div preview;
+    @Wire
+    private Label statusLabel;
+
+    @Override
+    public void doAfterCompose(Component comp) throws Exception {
+        super.doAfterCompose(comp);
+        MediaDevicesHelper.init();
+        comp.getDesktop().enableServerPush(true);
+    }
+
+    @Listen("onClick = #start")
+    public void start() {
+        Desktop desktop = preview.getDesktop();
+        MediaDevicesHelper.startCapture(preview, new CaptureOptions(), frame -> {
+            String status = "frame #" + frame.getSequence() + ": " + frame.getData().remaining() + " bytes";
+            // runs off the event thread, update the UI with server push
+            Executions.schedule(desktop, event -> statusLabel.setValue(status), new Event("onFrame"));
+        });
+    }
+
+    @Listen("onClick = #stop")
+    public void stop() {
+        MediaDevicesHelper.stopCapture(preview);
+    }
+
+    @Listen(MediaStreamEvent.EVENT_NAME + " = #preview")
+    public void handleStream(MediaStreamEvent event) {
+        if (event.isSuccess()) {
+            statusLabel.setValue("stream " + event.getState());
+        } else {
+            statusLabel.setValue(event.getErrorName() + ": " + event.getErrorMessage());
+        }
+    }
+}
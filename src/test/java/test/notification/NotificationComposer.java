@@ -0,0 +1,53 @@
+package test.notification;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.select.SelectorComposer;
+import org.zkoss.zk.ui.select.annotation.*;
+import org.zkoss.zkforge.notification.*;
+import org.zkoss.zul.Label;
+
+/**
+ * Open this page in several tabs, then click "broadcast" in one of them: every tab shows the notification.
+ */
+public class NotificationComposer extends SelectorComposer<Component> {
+    public static final String TOPIC = "demo";
+    @Wire
+    private Label statusLabel;
+    private int count;
+
+    @Override
+    public void doAfterCompose(Component comp) throws Exception {
+        super.doAfterCompose(comp);
+        NotificationHelper.init();
+        NotificationHelper.subscribe(TOPIC);
+    }
+
+    @Listen("onClick = #permission")
+    public void requestPermission() {
+        NotificationHelper.requestPermission();
+    }
+
+    @Listen("onClick = #show")
+    public void show() {
+        BrowserNotification notification = new BrowserNotification("Hello from this tab");
+        notification.setBody("shown on the current desktop only");
+        NotificationHelper.show(notification);
+    }
+
+    @Listen("onClick = #broadcast")
+    public void broadcast() {
+        BrowserNotification notification = new BrowserNotification("Broadcast #" + (++count));
+        notification.setBody("sent to all desktops subscribed to '" + TOPIC + "'");
+        notification.setTag("demo-broadcast"); // repeated broadcasts replace each other
+        notification.setData(String.valueOf(count));
+        int desktops = NotificationHub.broadcastToTopic(TOPIC, notification);
+        statusLabel.setValue("queued for " + desktops + " desktops");
+    }
+
+    @Listen(NotificationEvent.EVENT_NAME + " = #root")
+    public void handleNotification(NotificationEvent event) {
+        statusLabel.setValue(event.getAction() + " " + (event.getPermission() == null ? "" : event.getPermission())
+                + (event.getData() == null ? "" : " data=" + event.getData())
+                + (event.getMessage() == null ? "" : " " + event.getMessage()));
+    }
+}
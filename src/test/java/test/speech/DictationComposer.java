@@ -0,0 +1,56 @@
+package test.speech;
+
+import org.zkoss.zk.ui.Component;
+import org.zkoss.zk.ui.select.SelectorComposer;
+import org.zkoss.zk.ui.select.annotation.*;
+import org.zkoss.zkforge.speech.*;
+import org.zkoss.zul.*;
+
+public class DictationComposer extends SelectorComposer<Component> {
+    @Wire
+    private Textbox transcript;
+    @Wire
+    private Label statusLabel;
+    @Wire
+    private Label interim;
+
+    @Override
+    public void doAfterCompose(Component comp) throws Exception {
+        super.doAfterCompose(comp);
+        SpeechHelper.init();
+    }
+
+    @Listen("onClick = #start")
+    public void start() {
+        RecognitionOptions options = new RecognitionOptions();
+        options.setLang("en-US");
+        SpeechHelper.startRecognition(transcript, options);
+        statusLabel.setValue("listening...");
+    }
+
+    @Listen("onClick = #stop")
+    public void stop() {
+        SpeechHelper.stopRecognition(transcript);
+    }
+
+    @Listen(SpeechEvent.EVENT_NAME + " = #transcript")
+    public void handleSpeech(SpeechEvent event) {
+        if (!event.isSuccess()) {
+            statusLabel.setValue("error: " + event.getError());
+        } else if (SpeechEvent.END.equals(event.getType())) {
+            statusLabel.setValue("stopped");
+        } else {
+            CharSequence text = event.getTranscript();
+            if (event.isFinal()) {
+                // the whole value is sent to the browser, so only once per final result
+                transcript.setValue(text.toString());
+                interim.setValue("");
+            } else {
+                // only the part after the textbox's value, which is still final
+                int finalLength = Math.min(transcript.getValue().length(), event.getKeep());
+                interim.setValue(text.subSequence(finalLength, text.length()).toString());
+            }
+            statusLabel.setValue((event.isFinal() ? "final" : "interim") + ", +" + event.getAppended().length() + " chars");
+        }
+    }
+}